@@ -0,0 +1,101 @@
+package telran.library.benchmarks;
+
+import telran.library.entities.Book;
+import telran.library.entities.Reader;
+import telran.library.entities.enums.BooksReturnCode;
+import telran.library.entities.models.LibraryMaps;
+import telran.library.entities.models.LibrarySnapshot;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Аналитика Sprint 4 по снимку: последовательно и в ForkJoinPool
+ * на 1, 2, 4 ... потоках. Время - лучшее из ROUNDS прогонов,
+ * каждый параллельный результат сверяется с последовательным.
+ * Запуск: java -Xmx8g telran.library.benchmarks.AnalyticsBenchmark [picks] [maxThreads]
+ */
+public class AnalyticsBenchmark {
+
+    static final int BOOKS = 100_000;
+    static final int READERS = 200_000;
+    static final int DAYS = 3_650;
+    static final int ROUNDS = 5;
+    static final long FIRST_ISBN = 1_000_000_000L;
+    static final LocalDate START = LocalDate.of(2015, 1, 1);
+    static final LocalDate END = START.plusDays(DAYS);
+
+    public static void main(String[] args) {
+        int picks = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+
+        LibrarySnapshot snapshot = createLibrary(picks).snapshot();
+        Map<String, Function<LibrarySnapshot, Object>> queries = new LinkedHashMap<>();
+        queries.put("delayed", LibrarySnapshot::getReadersDelayedBooks);
+        queries.put("delaying", s -> s.getReadersDelayingBooks(END));
+        queries.put("popularBooks", s -> s.getMostPopularBooks(START, END, 20, 60));
+        queries.put("activeReaders", s -> s.getMostActiveReaders(START, END));
+
+        System.out.printf("records: %,d, cores: %d%n", snapshot.size(),
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-14s %8s %10s %8s%n", "query", "threads", "ms", "speedup");
+        for (Map.Entry<String, Function<LibrarySnapshot, Object>> query : queries.entrySet()) {
+            Object expected = query.getValue().apply(snapshot);
+            long sequential = measure(snapshot, query.getValue());
+            report(query.getKey(), "seq", sequential, sequential);
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    LibrarySnapshot parallel = snapshot.parallel(pool);
+                    if (!expected.equals(query.getValue().apply(parallel)))
+                        throw new IllegalStateException(query.getKey() + ": parallel result differs");
+                    report(query.getKey(), String.valueOf(threads),
+                            measure(parallel, query.getValue()), sequential);
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+
+    //Случайные выдачи по дням, каждая пятая возвращается с задержкой
+    private static LibraryMaps createLibrary(int picks) {
+        LibraryMaps library = new LibraryMaps();
+        List<Book> books = new ArrayList<>(BOOKS);
+        for (int i = 0; i < BOOKS; i++)
+            books.add(new Book(FIRST_ISBN + i, "author" + i % 10_000, "title", 1_000, 14));
+        library.addBookItems(books);
+        List<Reader> readers = new ArrayList<>(READERS);
+        for (int i = 0; i < READERS; i++)
+            readers.add(new Reader(i, "name", "phone", LocalDate.of(1940 + i % 70, 1, 1)));
+        library.addReaders(readers);
+
+        Random random = new Random(1);
+        for (int i = 0; i < picks; i++) {
+            long isbn = FIRST_ISBN + random.nextInt(BOOKS);
+            int readerId = random.nextInt(READERS);
+            LocalDate day = START.plusDays((long) i * DAYS / picks);
+            if (library.pickBook(isbn, readerId, day) == BooksReturnCode.OK && random.nextInt(5) > 0)
+                library.returnBook(isbn, readerId, day.plusDays(random.nextInt(30)));
+        }
+        return library;
+    }
+
+    private static long measure(LibrarySnapshot snapshot, Function<LibrarySnapshot, Object> query) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            query.apply(snapshot);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void report(String query, String threads, long nanos, long sequentialNanos) {
+        System.out.printf("%-14s %8s %10.1f %8.2f%n", query, threads, nanos / 1e6,
+                (double) sequentialNanos / nanos);
+    }
+}
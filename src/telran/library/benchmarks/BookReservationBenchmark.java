@@ -0,0 +1,110 @@
+package telran.library.benchmarks;
+
+import telran.library.entities.Book;
+import telran.library.entities.Reader;
+import telran.library.entities.models.ConcurrentLibrary;
+import telran.library.entities.models.ILibrary;
+import telran.library.entities.models.LibraryMaps;
+
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Конкуренция за одну "горячую" книгу: много потоков выдают и возвращают
+ * экземпляры одного ISBN.
+ * Сравнивает глобальный замок вокруг LibraryMaps (как сейчас на фронт-деске)
+ * с неблокирующей выдачей в ConcurrentLibrary и с голыми CAS-счетчиками Book.
+ * Запуск: java telran.library.benchmarks.BookReservationBenchmark [threads] [seconds]
+ */
+public class BookReservationBenchmark {
+
+    static final long HOT_ISBN = 1_000_000_001L;
+    static final int AMOUNT = 16;
+    static final int READERS_PER_THREAD = 64;
+    static final LocalDate PICK_DATE = LocalDate.of(2024, 1, 10);
+    static final LocalDate RETURN_DATE = LocalDate.of(2024, 1, 12);
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        System.out.printf("%-24s %8s %16s%n", "mode", "threads", "ops/sec");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            report("book CAS counters", threads, runCounters(threads, seconds));
+            report("LibraryMaps + lock", threads, runLibrary(new LibraryMaps(), true, threads, seconds));
+            report("ConcurrentLibrary", threads, runLibrary(new ConcurrentLibrary(), false, threads, seconds));
+        }
+    }
+
+    private static void report(String mode, int threads, double opsPerSecond) {
+        System.out.printf("%-24s %8d %,16.0f%n", mode, threads, opsPerSecond);
+    }
+
+    private static double runCounters(int threads, int seconds) throws InterruptedException {
+        Book book = new Book(HOT_ISBN, "author", "title", AMOUNT, 10);
+        return measure(threads, seconds, t -> {
+            if (book.reserveExemplar())
+                book.releaseExemplar();
+        });
+    }
+
+    private static double runLibrary(ILibrary library, boolean globalLock,
+                                     int threads, int seconds) throws InterruptedException {
+        library.addBookItem(new Book(HOT_ISBN, "author", "title", AMOUNT, 10));
+        for (int id = 1; id <= threads * READERS_PER_THREAD; id++)
+            library.addReader(new Reader(id, "name", "phone", LocalDate.of(1990, 1, 1)));
+
+        int[] next = new int[threads];
+        return measure(threads, seconds, t -> {
+            int readerId = t * READERS_PER_THREAD + 1 + (next[t]++ % READERS_PER_THREAD);
+            if (globalLock) {
+                synchronized (library) {
+                    library.pickBook(HOT_ISBN, readerId, PICK_DATE);
+                }
+                synchronized (library) {
+                    library.returnBook(HOT_ISBN, readerId, RETURN_DATE);
+                }
+            } else {
+                library.pickBook(HOT_ISBN, readerId, PICK_DATE);
+                library.returnBook(HOT_ISBN, readerId, RETURN_DATE);
+            }
+        });
+    }
+
+    private static double measure(int threads, int seconds, Operation operation)
+            throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int threadNumber = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long count = 0;
+                while (System.nanoTime() < deadline[0]) {
+                    operation.run(threadNumber);
+                    count++;
+                }
+                ops.add(count);
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        deadline[0] = begin + seconds * 1_000_000_000L;
+        start.countDown();
+        for (Thread worker : workers)
+            worker.join();
+        return ops.sum() * 1e9 / (System.nanoTime() - begin);
+    }
+
+    private interface Operation {
+        void run(int threadNumber);
+    }
+}
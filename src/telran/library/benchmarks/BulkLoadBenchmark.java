@@ -0,0 +1,61 @@
+package telran.library.benchmarks;
+
+import telran.library.entities.BatchResult;
+import telran.library.entities.Book;
+import telran.library.entities.Reader;
+import telran.library.entities.models.LibraryMaps;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Начальная загрузка каталога: поэлементные addBookItem/addReader
+ * против пакетных addBookItems/addReaders.
+ * Запуск: java -Xmx8g telran.library.benchmarks.BulkLoadBenchmark [books] [readers]
+ */
+public class BulkLoadBenchmark {
+
+    static final int AUTHORS = 100_000;
+    static final LocalDate BIRTH_DATE = LocalDate.of(1990, 1, 1);
+
+    public static void main(String[] args) {
+        int booksCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int readersCount = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+
+        List<Book> books = new ArrayList<>(booksCount);
+        for (int i = 0; i < booksCount; i++)
+            books.add(new Book(1_000_000_000L + i, "author" + i % AUTHORS, "title", 1, 10));
+        List<Reader> readers = new ArrayList<>(readersCount);
+        for (int i = 0; i < readersCount; i++)
+            readers.add(new Reader(i, "name", "phone", BIRTH_DATE));
+
+        System.out.printf("books: %,d, readers: %,d%n", booksCount, readersCount);
+        System.out.printf("%-12s %14s %14s%n", "mode", "books, ms", "readers, ms");
+        for (int round = 0; round < 2; round++) {
+            LibraryMaps library = new LibraryMaps();
+            long start = System.nanoTime();
+            for (Book book : books)
+                library.addBookItem(book);
+            long booksTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (Reader reader : readers)
+                library.addReader(reader);
+            report("one by one", booksTime, System.nanoTime() - start);
+
+            library = new LibraryMaps();
+            start = System.nanoTime();
+            BatchResult booksRes = library.addBookItems(books);
+            booksTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            BatchResult readersRes = library.addReaders(readers);
+            report("batch", booksTime, System.nanoTime() - start);
+            if (!booksRes.isAllOk() || !readersRes.isAllOk())
+                throw new IllegalStateException("batch load failed");
+        }
+    }
+
+    private static void report(String mode, long booksNanos, long readersNanos) {
+        System.out.printf("%-12s %14d %14d%n", mode, booksNanos / 1_000_000, readersNanos / 1_000_000);
+    }
+}
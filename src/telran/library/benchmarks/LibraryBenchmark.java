@@ -0,0 +1,315 @@
+package telran.library.benchmarks;
+
+import telran.library.entities.Book;
+import telran.library.entities.Reader;
+import telran.library.entities.enums.BooksReturnCode;
+import telran.library.entities.models.*;
+import telran.utils.LatencyHistogram;
+import telran.utils.ZipfSampler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Замеры каждой операции ILibrary (Sprint 1-4) на нескольких объемах истории выдач.
+ * Популярность книг и активность читателей распределены по Ципфу.
+ * Для каждой операции: пропускная способность, перцентили задержки
+ * и выделение памяти на операцию (по счетчику выделений текущего потока).
+ * Строки CSV можно сохранять и сравнивать между версиями и реализациями.
+ * Для контроля регрессий - те же операции под JMH: LibraryJmhBenchmark (gradle jmh).
+ * Запуск: java -Xmx12g telran.library.benchmarks.LibraryBenchmark
+ *         [records,...] [millisPerOperation] [maps|concurrent|mapped] [result.csv]
+ */
+public class LibraryBenchmark {
+
+    static final double BOOK_SKEW = 1.1;
+    static final double READER_SKEW = 0.8;
+    static final int RECORDS_PER_BOOK = 50;
+    static final int RECORDS_PER_READER = 20;
+    static final int BOOKS_PER_AUTHOR = 20;
+    static final int MIN_ENTITIES = 1_000;
+    static final int RETURNED_PERCENT = 95;
+    static final int AMOUNT = 1_000_000;
+    static final int PICK_PERIOD = 14;
+    static final long FIRST_ISBN = 1_000_000_000L;
+    static final LocalDate START = LocalDate.of(2015, 1, 1);
+    static final int HISTORY_DAYS = 3 * 365;
+    static final LocalDate TODAY = START.plusDays(HISTORY_DAYS);
+    static final LocalDate BIRTH_DATE = LocalDate.of(1970, 1, 1);
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        int[] scales = Arrays.stream((args.length > 0 ? args[0] : "10000,1000000,10000000").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 1_000;
+        String implementation = args.length > 2 ? args[2] : "maps";
+
+        try (PrintStream csv = args.length > 3 ? new PrintStream(args[3]) : null) {
+            if (csv != null)
+                csv.println("implementation,records,operation,ops,opsPerSec,p50Nanos,p99Nanos,p999Nanos,maxNanos,bytesPerOp");
+            for (int records : scales) {
+                ILibrary library = createLibrary(implementation);
+                try {
+                    Fixture fixture = new Fixture(library, records);
+                    System.out.printf("%n%s, pick records: %,d, books: %,d, readers: %,d%n",
+                            implementation, records, fixture.booksCount, fixture.readersCount);
+                    System.out.printf("%-30s %12s %10s %10s %10s %12s %10s%n",
+                            "operation", "ops/sec", "p50, ns", "p99, ns", "p99.9, ns", "max, ns", "B/op");
+                    for (Result result : fixture.run(millis)) {
+                        result.print();
+                        if (csv != null)
+                            result.printCsv(csv, implementation, records);
+                    }
+                } finally {
+                    if (library instanceof LibraryMaps maps && maps.getStore() instanceof Closeable store)
+                        store.close();
+                }
+            }
+        }
+    }
+
+    static ILibrary createLibrary(String implementation) throws IOException {
+        return switch (implementation) {
+            case "maps" -> new LibraryMaps();
+            case "concurrent" -> new ConcurrentLibrary();
+            case "mapped" -> {
+                Path file = Files.createTempFile("picks", ".rows");
+                file.toFile().deleteOnExit();
+                yield new LibraryMaps(new MappedPickRecordStore(file.toString()));
+            }
+            default -> throw new IllegalArgumentException("unknown implementation " + implementation);
+        };
+    }
+
+    private interface Operation {
+        Object run(int iteration);
+    }
+
+    private static class Result {
+        final String name;
+        final long ops;
+        final double opsPerSecond;
+        final LatencyHistogram latency;
+        final double bytesPerOp;
+
+        Result(String name, long ops, double opsPerSecond, LatencyHistogram latency, double bytesPerOp) {
+            this.name = name;
+            this.ops = ops;
+            this.opsPerSecond = opsPerSecond;
+            this.latency = latency;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        void print() {
+            System.out.printf("%-30s %,12.0f %,10d %,10d %,10d %,12d %,10.0f%n", name, opsPerSecond,
+                    latency.getPercentile(50), latency.getPercentile(99), latency.getPercentile(99.9),
+                    latency.getMax(), bytesPerOp);
+        }
+
+        void printCsv(PrintStream csv, String implementation, int records) {
+            csv.printf(Locale.ROOT, "%s,%d,%s,%d,%.1f,%d,%d,%d,%d,%.1f%n", implementation, records, name, ops,
+                    opsPerSecond, latency.getPercentile(50), latency.getPercentile(99),
+                    latency.getPercentile(99.9), latency.getMax(), bytesPerOp);
+        }
+    }
+
+    //Библиотека с историей выдач и генераторы аргументов операций; общая с LibraryJmhBenchmark
+    static class Fixture {
+        final ILibrary library;
+        final int booksCount;
+        final int readersCount;
+        final int authorsCount;
+        final ZipfSampler bookRanks;
+        final ZipfSampler readerRanks;
+        final Random random = new Random(1);
+
+        //Выдачи, сделанные замером pickBook, для замера returnBook
+        long[] pickedIsbns = new long[1024];
+        int[] pickedReaders = new int[1024];
+        int picked;
+        //Последний результат сохраняется, чтобы JIT не выбросил вызов
+        Object last;
+
+        Fixture(ILibrary library, int records) {
+            this.library = library;
+            booksCount = Math.max(MIN_ENTITIES, records / RECORDS_PER_BOOK);
+            readersCount = Math.max(MIN_ENTITIES, records / RECORDS_PER_READER);
+            authorsCount = booksCount / BOOKS_PER_AUTHOR;
+            bookRanks = new ZipfSampler(booksCount, BOOK_SKEW);
+            readerRanks = new ZipfSampler(readersCount, READER_SKEW);
+
+            List<Book> books = new ArrayList<>(booksCount);
+            for (int rank = 0; rank < booksCount; rank++)
+                books.add(book(rank));
+            library.addBookItems(books);
+            library.addReaders(readers());
+
+            for (int i = 0; i < records; i++) {
+                LocalDate pickDate = START.plusDays((long) i * HISTORY_DAYS / records);
+                long isbn = isbn(bookRanks.next(random));
+                int readerId = readerId(readerRanks.next(random));
+                if (library.pickBook(isbn, readerId, pickDate) == BooksReturnCode.OK
+                        && random.nextInt(100) < RETURNED_PERCENT)
+                    library.returnBook(isbn, readerId, pickDate.plusDays(1 + random.nextInt(2 * PICK_PERIOD)));
+            }
+        }
+
+        List<Reader> readers() {
+            List<Reader> readers = new ArrayList<>(readersCount);
+            for (int rank = 0; rank < readersCount; rank++)
+                readers.add(new Reader(readerId(rank), "name" + rank, "phone", BIRTH_DATE.plusDays(rank % 20_000)));
+            return readers;
+        }
+
+        Book book(int rank) {
+            return new Book(isbn(rank), "author" + rank % Math.max(1, authorsCount),
+                    "title" + rank, AMOUNT, PICK_PERIOD);
+        }
+
+        long isbn(int rank) {
+            return FIRST_ISBN + rank;
+        }
+
+        int readerId(int rank) {
+            return rank + 1;
+        }
+
+        long randomIsbn() {
+            return isbn(bookRanks.next(random));
+        }
+
+        int randomReader() {
+            return readerId(readerRanks.next(random));
+        }
+
+        LocalDate randomDay() {
+            return START.plusDays(random.nextInt(HISTORY_DAYS));
+        }
+
+        //Сначала чтение, потом изменяющие операции, удаление - последним
+        List<Result> run(long millis) {
+            List<Result> res = new ArrayList<>();
+            int heavy = 200;
+            int light = 10_000_000;
+
+            res.add(measure("getReader", light, millis, i -> library.getReader(randomReader())));
+            res.add(measure("getBookItem", light, millis, i -> library.getBookItem(randomIsbn())));
+            res.add(measure("getBooksPickedByReader", light, millis,
+                    i -> library.getBooksPickedByReader(randomReader())));
+            res.add(measure("getReaderOpenLoans", light, millis,
+                    i -> library.getReaderOpenLoans(randomReader())));
+            res.add(measure("getReadersPickedBook", light, millis,
+                    i -> library.getReadersPickedBook(randomIsbn())));
+            res.add(measure("getBooksAuthor", light, millis,
+                    i -> library.getBooksAuthor("author" + bookRanks.next(random) % Math.max(1, authorsCount))));
+            res.add(measure("getAvailableBooks", heavy, millis, i -> library.getAvailableBooks()));
+            res.add(measure("findBooksByToken", light, millis,
+                    i -> library.findBooksByToken("title" + bookRanks.next(random))));
+            res.add(measure("findBooksByPrefix", light, millis,
+                    i -> library.findBooksByPrefix("author" + bookRanks.next(random) % Math.max(1, authorsCount)
+                            + " tit", 10)));
+            res.add(measure("getPickedRecordsAtDates(7d)", light, millis, i -> {
+                LocalDate from = randomDay();
+                return library.getPickedRecordsAtDates(from, from.plusDays(7));
+            }));
+            res.add(measure("streamPickedRecordsAtDates(7d)", light, millis, i -> {
+                LocalDate from = randomDay();
+                return library.streamPickedRecordsAtDates(from, from.plusDays(7)).count();
+            }));
+            res.add(measure("forEachPickedRecord(7d)", light, millis, i -> {
+                LocalDate from = randomDay();
+                long[] count = new long[1];
+                library.forEachPickedRecord(from, from.plusDays(7), r -> count[0]++);
+                return count[0];
+            }));
+            res.add(measure("getReadersDelayingBooks", heavy, millis,
+                    i -> library.getReadersDelayingBooks(TODAY)));
+            res.add(measure("getReadersDelayedBooks", heavy, millis,
+                    i -> library.getReadersDelayedBooks()));
+            res.add(measure("getMostPopularBooks(30d)", heavy, millis, i -> {
+                LocalDate from = randomDay();
+                return library.getMostPopularBooks(from, from.plusDays(30), 20, 40);
+            }));
+            res.add(measure("getMostPopularAuthors", light, millis, i -> library.getMostPopularAuthors()));
+            res.add(measure("getTopAuthors(10)", light, millis, i -> library.getTopAuthors(10)));
+            res.add(measure("getMostActiveReaders(30d)", heavy, millis, i -> {
+                LocalDate from = randomDay();
+                return library.getMostActiveReaders(from, from.plusDays(30));
+            }));
+
+            res.add(measure("pickBook", light, millis, i -> {
+                long isbn = randomIsbn();
+                int readerId = randomReader();
+                BooksReturnCode code = library.pickBook(isbn, readerId, TODAY);
+                if (code == BooksReturnCode.OK)
+                    rememberPick(isbn, readerId);
+                return code;
+            }));
+            //Возвращаются ровно те книги, что выдал замер pickBook
+            res.add(measure("returnBook", picked, millis,
+                    i -> library.returnBook(pickedIsbns[i], pickedReaders[i], TODAY.plusDays(3))));
+            res.add(measure("addBookItem", light, millis, i -> library.addBookItem(book(booksCount + i))));
+            res.add(measure("addReader", light, millis,
+                    i -> library.addReader(new Reader(readerId(readersCount + i), "name", "phone", BIRTH_DATE))));
+            res.add(measure("addBookExemplars", light, millis, i -> library.addBookExemplars(randomIsbn(), 1, TODAY)));
+            //Удаляются самые непопулярные книги и авторы из хвоста распределения
+            res.add(measure("removeBook", booksCount / 10, millis,
+                    i -> library.removeBook(isbn(booksCount - 1 - i))));
+            res.add(measure("removeAuthor", Math.max(1, authorsCount / 10), millis,
+                    i -> library.removeAuthor("author" + (authorsCount - 1 - i))));
+            return res;
+        }
+
+        void rememberPick(long isbn, int readerId) {
+            if (picked == pickedIsbns.length) {
+                pickedIsbns = Arrays.copyOf(pickedIsbns, picked * 2);
+                pickedReaders = Arrays.copyOf(pickedReaders, picked * 2);
+            }
+            pickedIsbns[picked] = isbn;
+            pickedReaders[picked++] = readerId;
+        }
+
+        //Прогрев - половина времени, затем замер; номер итерации сквозной
+        Result measure(String name, int maxOps, long millis, Operation operation) {
+            int iteration = 0;
+            long warmupEnd = System.nanoTime() + millis * 500_000;
+            while (iteration < maxOps / 2 && System.nanoTime() < warmupEnd)
+                consume(operation.run(iteration++));
+
+            LatencyHistogram latency = new LatencyHistogram();
+            long allocated = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            long end = start + millis * 1_000_000;
+            long ops = 0;
+            long now = start;
+            while (iteration < maxOps && now < end) {
+                long opStart = System.nanoTime();
+                consume(operation.run(iteration++));
+                now = System.nanoTime();
+                latency.record(now - opStart);
+                ops++;
+            }
+            long elapsed = Math.max(1, now - start);
+            double bytesPerOp = ops == 0 ? 0
+                    : (double) (THREADS.getCurrentThreadAllocatedBytes() - allocated) / ops;
+            return new Result(name, ops, ops * 1e9 / elapsed, latency, bytesPerOp);
+        }
+
+        void consume(Object result) {
+            last = result;
+        }
+    }
+}
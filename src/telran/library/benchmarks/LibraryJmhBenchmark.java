@@ -0,0 +1,217 @@
+package telran.library.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import telran.library.entities.Book;
+import telran.library.entities.Reader;
+import telran.library.entities.enums.BooksReturnCode;
+import telran.library.entities.models.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Те же операции, что в LibraryBenchmark, под JMH: прогрев и замер по итерациям,
+ * отдельная JVM на каждый набор параметров. С профайлером gc (gradle jmh)
+ * к каждой операции добавляется скорость выделения памяти.
+ * Изменяющие операции замеряются парами (выдача и возврат, добавление и удаление),
+ * чтобы библиотека не менялась от итерации к итерации. Читателя удалить нельзя,
+ * поэтому addReader пишет в отдельную таблицу читателей, пересоздаваемую перед каждой итерацией.
+ * История в 10 млн выдач требует большой кучи, отсюда -Xmx12g.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class LibraryJmhBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    int records;
+
+    @Param({"maps"})
+    String implementation;
+
+    private ILibrary library;
+    private LibraryBenchmark.Fixture fixture;
+    private long nextIsbn;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        library = LibraryBenchmark.createLibrary(implementation);
+        fixture = new LibraryBenchmark.Fixture(library, records);
+        nextIsbn = fixture.isbn(fixture.booksCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        close(library);
+    }
+
+    private static void close(ILibrary library) throws IOException {
+        if (library instanceof LibraryMaps && ((LibraryMaps) library).getStore() instanceof Closeable)
+            ((Closeable) ((LibraryMaps) library).getStore()).close();
+    }
+
+    //Столько же читателей, сколько в основной библиотеке; каждая итерация
+    // начинает с этого размера, а не с выросшей за прошлые итерации таблицы
+    @State(Scope.Benchmark)
+    public static class ReaderTable {
+        ILibrary library;
+        int nextReader;
+
+        @Setup(Level.Iteration)
+        public void setUp(LibraryJmhBenchmark benchmark) throws IOException {
+            library = LibraryBenchmark.createLibrary(benchmark.implementation);
+            library.addReaders(benchmark.fixture.readers());
+            nextReader = benchmark.fixture.readerId(benchmark.fixture.readersCount);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            close(library);
+        }
+    }
+
+    private String randomAuthor() {
+        return "author" + fixture.bookRanks.next(fixture.random) % Math.max(1, fixture.authorsCount);
+    }
+
+    //Sprint 1
+    @Benchmark
+    public Reader getReader() {
+        return library.getReader(fixture.randomReader());
+    }
+
+    @Benchmark
+    public Book getBookItem() {
+        return library.getBookItem(fixture.randomIsbn());
+    }
+
+    @Benchmark
+    public BooksReturnCode addReader(ReaderTable readers) {
+        return readers.library.addReader(new Reader(readers.nextReader++, "name", "phone", LibraryBenchmark.BIRTH_DATE));
+    }
+
+    @Benchmark
+    public BooksReturnCode addBookExemplars() {
+        return library.addBookExemplars(fixture.randomIsbn(), 1, LibraryBenchmark.TODAY);
+    }
+
+    //Sprint 2
+    @Benchmark
+    public Object getBooksPickedByReader() {
+        return library.getBooksPickedByReader(fixture.randomReader());
+    }
+
+    @Benchmark
+    public Object getReaderOpenLoans() {
+        return library.getReaderOpenLoans(fixture.randomReader());
+    }
+
+    @Benchmark
+    public Object getReadersPickedBook() {
+        return library.getReadersPickedBook(fixture.randomIsbn());
+    }
+
+    @Benchmark
+    public Object getBooksAuthor() {
+        return library.getBooksAuthor(randomAuthor());
+    }
+
+    @Benchmark
+    public Object getAvailableBooks() {
+        return library.getAvailableBooks();
+    }
+
+    @Benchmark
+    public Object findBooksByToken() {
+        return library.findBooksByToken("title" + fixture.bookRanks.next(fixture.random));
+    }
+
+    @Benchmark
+    public Object findBooksByPrefix() {
+        return library.findBooksByPrefix(randomAuthor() + " tit", 10);
+    }
+
+    @Benchmark
+    public Object getPickedRecordsAtDates7d() {
+        LocalDate from = fixture.randomDay();
+        return library.getPickedRecordsAtDates(from, from.plusDays(7));
+    }
+
+    @Benchmark
+    public long streamPickedRecordsAtDates7d() {
+        LocalDate from = fixture.randomDay();
+        return library.streamPickedRecordsAtDates(from, from.plusDays(7)).count();
+    }
+
+    @Benchmark
+    public long forEachPickedRecord7d() {
+        LocalDate from = fixture.randomDay();
+        long[] count = new long[1];
+        library.forEachPickedRecord(from, from.plusDays(7), r -> count[0]++);
+        return count[0];
+    }
+
+    //Выдача и возврат той же книги
+    @Benchmark
+    public Object pickAndReturnBook() {
+        long isbn = fixture.randomIsbn();
+        int readerId = fixture.randomReader();
+        BooksReturnCode code = library.pickBook(isbn, readerId, LibraryBenchmark.TODAY);
+        return code == BooksReturnCode.OK ?
+                library.returnBook(isbn, readerId, LibraryBenchmark.TODAY.plusDays(3)) : code;
+    }
+
+    //Sprint 3: новая книга без истории добавляется и сразу удаляется
+    @Benchmark
+    public Object addAndRemoveBook() {
+        Book book = new Book(nextIsbn++, "jmh-author", "title", LibraryBenchmark.AMOUNT,
+                LibraryBenchmark.PICK_PERIOD);
+        library.addBookItem(book);
+        return library.removeBook(book.getIsbn());
+    }
+
+    @Benchmark
+    public Object addAndRemoveAuthor() {
+        library.addBookItem(new Book(nextIsbn++, "jmh-author", "title", LibraryBenchmark.AMOUNT,
+                LibraryBenchmark.PICK_PERIOD));
+        return library.removeAuthor("jmh-author");
+    }
+
+    //Sprint 4
+    @Benchmark
+    public Object getReadersDelayingBooks() {
+        return library.getReadersDelayingBooks(LibraryBenchmark.TODAY);
+    }
+
+    @Benchmark
+    public Object getReadersDelayedBooks() {
+        return library.getReadersDelayedBooks();
+    }
+
+    @Benchmark
+    public Object getMostPopularBooks30d() {
+        LocalDate from = fixture.randomDay();
+        return library.getMostPopularBooks(from, from.plusDays(30), 20, 40);
+    }
+
+    @Benchmark
+    public Object getMostPopularAuthors() {
+        return library.getMostPopularAuthors();
+    }
+
+    @Benchmark
+    public Object getTopAuthors10() {
+        return library.getTopAuthors(10);
+    }
+
+    @Benchmark
+    public Object getMostActiveReaders30d() {
+        LocalDate from = fixture.randomDay();
+        return library.getMostActiveReaders(from, from.plusDays(30));
+    }
+}
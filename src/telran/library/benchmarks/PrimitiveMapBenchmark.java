@@ -0,0 +1,107 @@
+package telran.library.benchmarks;
+
+import telran.library.entities.Book;
+import telran.library.entities.Reader;
+import telran.utils.IntMap;
+import telran.utils.LongMap;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Индексы книг и читателей на HashMap с упакованными ключами против
+ * LongMap/IntMap: занимаемая память (без самих Book/Reader) и скорость
+ * случайного поиска по ключу.
+ * Запуск: java -Xmx8g telran.library.benchmarks.PrimitiveMapBenchmark [books] [readers]
+ */
+public class PrimitiveMapBenchmark {
+
+    static final long FIRST_ISBN = 1_000_000_000L;
+    static final int LOOKUPS = 20_000_000;
+    static final LocalDate BIRTH_DATE = LocalDate.of(1990, 1, 1);
+
+    public static void main(String[] args) {
+        int booksCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int readersCount = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+
+        Book[] books = new Book[booksCount];
+        for (int i = 0; i < booksCount; i++)
+            books[i] = new Book(FIRST_ISBN + i * 7L, "author", "title", 1, 10);
+        Reader[] readers = new Reader[readersCount];
+        for (int i = 0; i < readersCount; i++)
+            readers[i] = new Reader(i * 3, "name", "phone", BIRTH_DATE);
+
+        System.out.printf("books: %,d, readers: %,d%n", booksCount, readersCount);
+        System.out.printf("%-28s %16s %12s%n", "index", "footprint, MB", "ns/lookup");
+
+        measure("HashMap<Long, Book>", booksCount, () -> {
+            Map<Long, Book> map = new HashMap<>();
+            for (Book book : books)
+                map.put(book.getIsbn(), book);
+            return map;
+        }, map -> i -> map.get(FIRST_ISBN + i * 7L) != null);
+        measure("LongMap<Book>", booksCount, () -> {
+            LongMap<Book> map = new LongMap<>();
+            for (Book book : books)
+                map.put(book.getIsbn(), book);
+            return map;
+        }, map -> i -> map.get(FIRST_ISBN + i * 7L) != null);
+        measure("HashMap<Integer, Reader>", readersCount, () -> {
+            Map<Integer, Reader> map = new HashMap<>();
+            for (Reader reader : readers)
+                map.put(reader.getReaderId(), reader);
+            return map;
+        }, map -> i -> map.get(i * 3) != null);
+        measure("IntMap<Reader>", readersCount, () -> {
+            IntMap<Reader> map = new IntMap<>();
+            for (Reader reader : readers)
+                map.put(reader.getReaderId(), reader);
+            return map;
+        }, map -> i -> map.get(i * 3) != null);
+    }
+
+    //Индекс живет только внутри замера, следующий начинается с чистой кучи
+    private static <T> void measure(String name, int size, Supplier<T> builder,
+                                    Function<T, IntPredicate> lookup) {
+        long used = usedMemory();
+        T index = builder.get();
+        long footprint = usedMemory() - used;
+        report(name, footprint, lookups(size, lookup.apply(index)));
+    }
+
+    private static void report(String index, long bytes, double nsPerLookup) {
+        System.out.printf("%-28s %16.1f %12.1f%n", index, bytes / (1024.0 * 1024), nsPerLookup);
+    }
+
+    //Случайные существующие ключи; первый проход - прогрев
+    private static double lookups(int size, IntPredicate lookup) {
+        Random random = new Random(1);
+        int[] indexes = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++)
+            indexes[i] = random.nextInt(size);
+        long found = 0;
+        long elapsed = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            long start = System.nanoTime();
+            for (int index : indexes)
+                if (lookup.test(index))
+                    found++;
+            elapsed = System.nanoTime() - start;
+        }
+        if (found != 2L * LOOKUPS)
+            throw new IllegalStateException("missing keys: " + (2L * LOOKUPS - found));
+        return (double) elapsed / LOOKUPS;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
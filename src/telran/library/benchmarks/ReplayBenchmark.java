@@ -0,0 +1,44 @@
+package telran.library.benchmarks;
+
+import telran.library.entities.models.ConcurrentLibrary;
+import telran.library.entities.models.ILibrary;
+import telran.library.entities.models.LibraryMaps;
+import telran.library.workload.ReplayDriver;
+import telran.library.workload.ReplayReport;
+import telran.library.workload.WorkloadGenerator;
+
+/**
+ * Проигрывание синтетической нагрузки на выбранной реализации ILibrary.
+ * LibraryMaps не потокобезопасна и проигрывается в одном потоке.
+ * Запуск: java telran.library.benchmarks.ReplayBenchmark
+ *         [maps|concurrent] [threads] [days] [seed] [books] [readers] [picksPerDay]
+ */
+public class ReplayBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        String implementation = args.length > 0 ? args[0] : "concurrent";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int days = args.length > 2 ? Integer.parseInt(args[2]) : 3 * 365;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        int books = args.length > 4 ? Integer.parseInt(args[4]) : 100_000;
+        int readers = args.length > 5 ? Integer.parseInt(args[5]) : 200_000;
+        int picksPerDay = args.length > 6 ? Integer.parseInt(args[6]) : 5_000;
+
+        ILibrary library = switch (implementation) {
+            case "maps" -> new LibraryMaps();
+            case "concurrent" -> new ConcurrentLibrary();
+            default -> throw new IllegalArgumentException("unknown implementation " + implementation);
+        };
+        if (library instanceof LibraryMaps && threads > 1)
+            throw new IllegalArgumentException("LibraryMaps is not thread-safe, use 1 thread");
+
+        WorkloadGenerator generator = new WorkloadGenerator(seed, books, readers, days, picksPerDay);
+        library.addBookItems(generator.getBooks());
+        library.addReaders(generator.getReaders());
+
+        System.out.printf("%s, threads: %d, days: %d, seed: %d, books: %,d, readers: %,d, picks/day: %,d%n",
+                implementation, threads, days, seed, books, readers, picksPerDay);
+        ReplayReport report = new ReplayDriver(library, threads).replay(generator);
+        report.print(System.out);
+    }
+}
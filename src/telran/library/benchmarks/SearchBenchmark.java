@@ -0,0 +1,109 @@
+package telran.library.benchmarks;
+
+import telran.library.entities.Book;
+import telran.library.entities.models.LibraryMaps;
+import telran.utils.LatencyHistogram;
+import telran.utils.TokenIndex;
+import telran.utils.ZipfSampler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Поиск по каталогу: findBooksByToken и findBooksByPrefix против линейного
+ * перебора названий. Слова названий берутся из словаря по Ципфу,
+ * поэтому есть и частые слова с миллионами книг, и редкие.
+ * Запуск: java -Xmx16g telran.library.benchmarks.SearchBenchmark [books] [queries]
+ */
+public class SearchBenchmark {
+
+    static final int VOCABULARY = 50_000;
+    static final double WORD_SKEW = 1.0;
+    static final int AUTHORS = 200_000;
+    static final int SCAN_QUERIES = 5;
+    static final int PREFIX_LIMIT = 10;
+    static final long FIRST_ISBN = 1_000_000_000L;
+
+    public static void main(String[] args) {
+        int booksCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+
+        Random random = new Random(1);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++)
+            words[i] = word(random);
+        ZipfSampler wordRanks = new ZipfSampler(VOCABULARY, WORD_SKEW);
+
+        List<Book> books = new ArrayList<>(booksCount);
+        for (int i = 0; i < booksCount; i++) {
+            StringBuilder title = new StringBuilder(words[wordRanks.next(random)]);
+            for (int w = random.nextInt(4); w >= 0; w--)
+                title.append(' ').append(words[wordRanks.next(random)]);
+            books.add(new Book(FIRST_ISBN + i, "Author" + i % AUTHORS + " " + words[i % VOCABULARY],
+                    title.toString(), 1, 10));
+        }
+
+        System.gc();
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        LibraryMaps library = new LibraryMaps();
+        library.addBookItems(books);
+        System.out.printf("books: %,d, load with index: %,d ms%n", booksCount,
+                (System.nanoTime() - start) / 1_000_000);
+        System.gc();
+        System.out.printf("library heap: %,d MB%n", (usedHeap() - heapBefore) >> 20);
+
+        System.out.printf("%-22s %10s %10s %10s %12s%n", "query", "p50, us", "p99, us", "max, us", "avg results");
+        measure("token (any word)", queries, i -> library.findBooksByToken(words[wordRanks.next(random)]));
+        measure("token (rare word)", queries,
+                i -> library.findBooksByToken(words[VOCABULARY / 2 + random.nextInt(VOCABULARY / 2)]));
+        measure("two tokens", queries, i -> library.findBooksByToken(
+                words[wordRanks.next(random)] + " " + words[wordRanks.next(random)]));
+        for (int length = 1; length <= 4; length++) {
+            int prefixLength = length;
+            measure("prefix " + length + " chars", queries, i -> {
+                String word = words[wordRanks.next(random)];
+                return library.findBooksByPrefix(word.substring(0, Math.min(prefixLength, word.length())),
+                        PREFIX_LIMIT);
+            });
+        }
+        measure("author + prefix", queries, i -> library.findBooksByPrefix(
+                "author" + random.nextInt(AUTHORS) + " " + words[wordRanks.next(random)].charAt(0), PREFIX_LIMIT));
+
+        //Как было до индекса: перебор всех книг и сравнение слов названия
+        measure("linear scan (token)", SCAN_QUERIES, i -> {
+            String token = words[VOCABULARY / 2 + random.nextInt(VOCABULARY / 2)];
+            return books.stream()
+                    .filter(b -> TokenIndex.tokens(b.getTitle()).contains(token))
+                    .toList();
+        });
+    }
+
+    //Слово из 3-10 латинских букв
+    private static String word(Random random) {
+        char[] chars = new char[3 + random.nextInt(8)];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = (char) ('a' + random.nextInt(26));
+        return new String(chars);
+    }
+
+    private static void measure(String name, int count, IntFunction<List<Book>> query) {
+        LatencyHistogram latency = new LatencyHistogram();
+        long results = 0;
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            results += query.apply(i).size();
+            latency.record(System.nanoTime() - start);
+        }
+        System.out.printf("%-22s %10.1f %10.1f %10.1f %12.1f%n", name,
+                latency.getPercentile(50) / 1e3, latency.getPercentile(99) / 1e3,
+                latency.getMax() / 1e3, (double) results / count);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
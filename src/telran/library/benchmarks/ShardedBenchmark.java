@@ -0,0 +1,110 @@
+package telran.library.benchmarks;
+
+import telran.library.entities.Book;
+import telran.library.entities.Reader;
+import telran.library.entities.models.ILibrary;
+import telran.library.entities.models.LibraryMaps;
+import telran.library.entities.models.ShardedLibrary;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пропускная способность записи при разбиении по isbn: потоки выдают и возвращают
+ * случайные книги большого каталога.
+ * Сравнивает глобальный замок вокруг LibraryMaps с ShardedLibrary, где секций
+ * столько же, сколько потоков. Рост должен быть почти линейным, пока потоков
+ * не больше ядер; на одном ядре секции только добавляют переключения потоков.
+ * Запуск: java telran.library.benchmarks.ShardedBenchmark [threads] [seconds]
+ */
+public class ShardedBenchmark {
+
+    static final int BOOKS = 100_000;
+    static final long FIRST_ISBN = 1_000_000_000L;
+    static final int READERS_PER_THREAD = 64;
+    static final LocalDate PICK_DATE = LocalDate.of(2024, 1, 10);
+    static final LocalDate RETURN_DATE = LocalDate.of(2024, 1, 12);
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        System.out.printf("%-24s %8s %16s%n", "mode", "threads", "ops/sec");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            report("LibraryMaps + lock", threads, run(new LibraryMaps(), true, threads, seconds));
+            try (ShardedLibrary library = new ShardedLibrary(threads)) {
+                report("ShardedLibrary", threads, run(library, false, threads, seconds));
+            }
+        }
+    }
+
+    private static void report(String mode, int threads, double opsPerSecond) {
+        System.out.printf("%-24s %8d %,16.0f%n", mode, threads, opsPerSecond);
+    }
+
+    private static double run(ILibrary library, boolean globalLock,
+                              int threads, int seconds) throws InterruptedException {
+        for (int i = 0; i < BOOKS; i++)
+            library.addBookItem(new Book(FIRST_ISBN + i, "author" + i % 1000, "title", 16, 10));
+        for (int id = 1; id <= threads * READERS_PER_THREAD; id++)
+            library.addReader(new Reader(id, "name", "phone", LocalDate.of(1990, 1, 1)));
+
+        Random[] randoms = new Random[threads];
+        int[] next = new int[threads];
+        for (int t = 0; t < threads; t++)
+            randoms[t] = new Random(t);
+        return measure(threads, seconds, t -> {
+            long isbn = FIRST_ISBN + randoms[t].nextInt(BOOKS);
+            int readerId = t * READERS_PER_THREAD + 1 + (next[t]++ % READERS_PER_THREAD);
+            if (globalLock) {
+                synchronized (library) {
+                    library.pickBook(isbn, readerId, PICK_DATE);
+                }
+                synchronized (library) {
+                    library.returnBook(isbn, readerId, RETURN_DATE);
+                }
+            } else {
+                library.pickBook(isbn, readerId, PICK_DATE);
+                library.returnBook(isbn, readerId, RETURN_DATE);
+            }
+        });
+    }
+
+    private static double measure(int threads, int seconds, Operation operation)
+            throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int threadNumber = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long count = 0;
+                while (System.nanoTime() < deadline[0]) {
+                    operation.run(threadNumber);
+                    count++;
+                }
+                ops.add(count);
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        deadline[0] = begin + seconds * 1_000_000_000L;
+        start.countDown();
+        for (Thread worker : workers)
+            worker.join();
+        return ops.sum() * 1e9 / (System.nanoTime() - begin);
+    }
+
+    private interface Operation {
+        void run(int threadNumber);
+    }
+}
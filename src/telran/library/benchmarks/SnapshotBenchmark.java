@@ -0,0 +1,85 @@
+package telran.library.benchmarks;
+
+import telran.library.entities.Book;
+import telran.library.entities.Reader;
+import telran.library.entities.models.LibraryMaps;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Сравнение бинарного снимка LibraryMaps.save/load с ObjectOutputStream
+ * всего графа объектов: время записи, время чтения и размер файла.
+ * Запуск: java -Xmx4g telran.library.benchmarks.SnapshotBenchmark [pickRecords]
+ */
+public class SnapshotBenchmark {
+
+    static final int BOOKS = 20_000;
+    static final int READERS = 100_000;
+    static final LocalDate START = LocalDate.of(2015, 1, 1);
+
+    public static void main(String[] args) throws Exception {
+        int pickRecords = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        LibraryMaps library = createLibrary(pickRecords);
+        Path binary = Files.createTempFile("library", ".snapshot");
+        Path serialized = Files.createTempFile("library", ".ser");
+        try {
+            long start = System.nanoTime();
+            library.save(binary.toString());
+            long binarySave = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            LibraryMaps restored = LibraryMaps.load(binary.toString());
+            long binaryLoad = System.nanoTime() - start;
+            if (restored == null)
+                throw new IllegalStateException("snapshot was not restored");
+
+            start = System.nanoTime();
+            try (ObjectOutputStream output = new ObjectOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(serialized.toFile())))) {
+                output.writeObject(library);
+            }
+            long javaSave = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            try (ObjectInputStream input = new ObjectInputStream(
+                    new BufferedInputStream(new FileInputStream(serialized.toFile())))) {
+                input.readObject();
+            }
+            long javaLoad = System.nanoTime() - start;
+
+            System.out.printf("pick records: %,d%n", pickRecords);
+            System.out.printf("%-20s %12s %12s %14s%n", "format", "save, ms", "load, ms", "size, bytes");
+            System.out.printf("%-20s %12d %12d %,14d%n", "binary snapshot",
+                    binarySave / 1_000_000, binaryLoad / 1_000_000, Files.size(binary));
+            System.out.printf("%-20s %12d %12d %,14d%n", "ObjectOutputStream",
+                    javaSave / 1_000_000, javaLoad / 1_000_000, Files.size(serialized));
+        } finally {
+            Files.deleteIfExists(binary);
+            Files.deleteIfExists(serialized);
+        }
+    }
+
+    //Каждая выдача возвращается на следующий шаг, поэтому в истории pickRecords записей
+    static LibraryMaps createLibrary(int pickRecords) {
+        LibraryMaps library = new LibraryMaps();
+        for (int i = 1; i <= BOOKS; i++)
+            library.addBookItem(new Book(i, "author" + i % 2_000, "title" + i, 50, 14));
+        Random random = new Random(1);
+        for (int id = 1; id <= READERS; id++)
+            library.addReader(new Reader(id, "name" + id, "05" + id,
+                    LocalDate.of(1950 + random.nextInt(60), 1 + random.nextInt(12), 1)));
+
+        for (int i = 0; i < pickRecords; i++) {
+            long isbn = 1 + random.nextInt(BOOKS);
+            int readerId = 1 + random.nextInt(READERS);
+            LocalDate pickDate = START.plusDays(i / 500);
+            library.pickBook(isbn, readerId, pickDate);
+            library.returnBook(isbn, readerId, pickDate.plusDays(random.nextInt(30)));
+        }
+        return library;
+    }
+}
@@ -0,0 +1,60 @@
+package telran.library.entities;
+
+import telran.library.entities.enums.BooksReturnCode;
+
+import java.util.Arrays;
+
+//Коды результата пакетной операции: один байт на элемент, в порядке элементов пакета
+public class BatchResult {
+
+    private static final BooksReturnCode[] CODES = BooksReturnCode.values();
+
+    private final byte[] codes;
+
+    public BatchResult(int size) {
+        codes = new byte[size];
+    }
+
+    public void set(int index, BooksReturnCode code) {
+        codes[index] = (byte) code.ordinal();
+    }
+
+    public BooksReturnCode get(int index) {
+        return CODES[codes[index]];
+    }
+
+    public int size() {
+        return codes.length;
+    }
+
+    public int count(BooksReturnCode code) {
+        int res = 0;
+        for (byte c : codes)
+            if (c == code.ordinal()) res++;
+        return res;
+    }
+
+    public boolean isAllOk() {
+        return count(BooksReturnCode.OK) == codes.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass()) return false;
+        BatchResult that = (BatchResult) o;
+        return Arrays.equals(codes, that.codes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(codes);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder res = new StringBuilder("BatchResult{");
+        for (int i = 0; i < codes.length; i++)
+            res.append(i == 0 ? "" : ", ").append(get(i));
+        return res.append('}').toString();
+    }
+}
@@ -2,16 +2,25 @@ package telran.library.entities;
 
 import java.io.Serializable;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 public class Book implements Serializable {
 
     private long isbn;
     private String title;
     private String author;
-    private int amount;
-    private int amountInUse;
+    //amount (старшие 32 бита), флаг броней (бит 31) и amountInUse (младшие 31 бит)
+    // в одном слове, чтобы проверка наличия и выдача экземпляра были одним CAS
+    private volatile long exemplars;
     private int pickPeriod;
 
+    //На книгу есть брони: экземпляры выдаются только под замком броней библиотеки
+    private static final long HELD = 1L << 31;
+    private static final long IN_USE_MASK = HELD - 1;
+
+    private static final AtomicLongFieldUpdater<Book> EXEMPLARS =
+            AtomicLongFieldUpdater.newUpdater(Book.class, "exemplars");
+
     public Book() {
     }
 
@@ -22,13 +31,33 @@ public class Book implements Serializable {
         this.author = author;
         this.title = title;
         if(amount >= 0)
-            this.amount = amount;
+            this.exemplars = pack(amount, 0);
         if(pickPeriod > 0)
             this.pickPeriod = pickPeriod;
     }
 
+    private static long pack(int amount, int amountInUse) {
+        return ((long) amount << 32) | (amountInUse & IN_USE_MASK);
+    }
+
+    //Как pack, флаг броней берется из current
+    private static long pack(int amount, int amountInUse, long current) {
+        return pack(amount, amountInUse) | (current & HELD);
+    }
+
+    private static int amount(long exemplars) {
+        return (int) (exemplars >> 32);
+    }
+
+    private static int amountInUse(long exemplars) {
+        return (int) (exemplars & IN_USE_MASK);
+    }
+
     public void setAmountInUse(int amountInUse) {
-        this.amountInUse = amountInUse;
+        long current;
+        do {
+            current = exemplars;
+        } while (!EXEMPLARS.compareAndSet(this, current, pack(amount(current), amountInUse, current)));
     }
 
     public void setPickPeriod(int pickPeriod) {
@@ -38,7 +67,81 @@ public class Book implements Serializable {
 
     public void setAmount(int amount) {
        // if(amount >= 0)
-            this.amount = amount;
+        long current;
+        do {
+            current = exemplars;
+        } while (!EXEMPLARS.compareAndSet(this, current, pack(amount, amountInUse(current), current)));
+    }
+
+    //Атомарно добавляет экземпляры (amount может быть отрицательным)
+    public void addAmount(int amount) {
+        long current;
+        do {
+            current = exemplars;
+        } while (!EXEMPLARS.compareAndSet(this, current,
+                pack(amount(current) + amount, amountInUse(current), current)));
+    }
+
+    //Атомарно выдает экземпляр, если книга не помечена на удаление,
+    // на нее нет броней и есть свободные экземпляры
+    public boolean reserveExemplar() {
+        return reserveExemplar(false);
+    }
+
+    //То же и у книги с бронями: очередь проверяет вызывающий под замком броней
+    public boolean reserveHeldExemplar() {
+        return reserveExemplar(true);
+    }
+
+    private boolean reserveExemplar(boolean held) {
+        long current;
+        do {
+            current = exemplars;
+            if (amount(current) < 0 || amountInUse(current) >= amount(current)
+                    || !held && (current & HELD) != 0)
+                return false;
+        } while (!EXEMPLARS.compareAndSet(this, current,
+                pack(amount(current), amountInUse(current) + 1, current)));
+        return true;
+    }
+
+    //Атомарно возвращает экземпляр. true - книга помечена на удаление
+    // и это был последний экземпляр на руках, ее можно удалять
+    public boolean releaseExemplar() {
+        long current;
+        long updated;
+        do {
+            current = exemplars;
+            updated = pack(amount(current), amountInUse(current) - 1, current);
+        } while (!EXEMPLARS.compareAndSet(this, current, updated));
+        return amount(updated) < 0 && amountInUse(updated) <= 0;
+    }
+
+    //Атомарно помечает книгу на удаление (amount = -1).
+    // Возвращает количество экземпляров на руках в момент пометки
+    // или -1, если книга уже была помечена
+    public int markForRemoval() {
+        long current;
+        do {
+            current = exemplars;
+            if (amount(current) < 0)
+                return -1;
+        } while (!EXEMPLARS.compareAndSet(this, current, pack(-1, amountInUse(current), current)));
+        return amountInUse(current);
+    }
+
+    //Атомарно ставит или снимает флаг броней. Пока флаг стоит, reserveExemplar
+    // не выдает экземпляры, и выдача идет через очередь броней
+    public void setHeld(boolean held) {
+        long current;
+        do {
+            current = exemplars;
+        } while (!EXEMPLARS.compareAndSet(this, current,
+                held ? current | HELD : current & ~HELD));
+    }
+
+    public boolean isHeld() {
+        return (exemplars & HELD) != 0;
     }
 
     public long getIsbn() {
@@ -54,11 +157,11 @@ public class Book implements Serializable {
     }
 
     public int getAmount() {
-        return amount;
+        return amount(exemplars);
     }
 
     public int getAmountInUse() {
-        return amountInUse;
+        return amountInUse(exemplars);
     }
 
     public int getPickPeriod() {
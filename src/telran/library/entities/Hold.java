@@ -0,0 +1,83 @@
+package telran.library.entities;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+//Бронь читателя на книгу. Пока readyDate == null, читатель ждет в очереди,
+// после - экземпляр отложен для него до expireDate включительно
+public class Hold implements Serializable {
+    private long isbn;
+    private int readerId;
+    private LocalDate holdDate;
+    private int priority;
+    private LocalDate readyDate;
+    private LocalDate expireDate;
+
+    public Hold() {
+    }
+
+    public Hold(long isbn, int readerId, LocalDate holdDate, int priority,
+                LocalDate readyDate, LocalDate expireDate) {
+        this.isbn = isbn;
+        this.readerId = readerId;
+        this.holdDate = holdDate;
+        this.priority = priority;
+        this.readyDate = readyDate;
+        this.expireDate = expireDate;
+    }
+
+    public long getIsbn() {
+        return isbn;
+    }
+
+    public int getReaderId() {
+        return readerId;
+    }
+
+    public LocalDate getHoldDate() {
+        return holdDate;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public LocalDate getReadyDate() {
+        return readyDate;
+    }
+
+    public LocalDate getExpireDate() {
+        return expireDate;
+    }
+
+    public boolean isReady() {
+        return readyDate != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass()) return false;
+        Hold hold = (Hold) o;
+        return isbn == hold.isbn && readerId == hold.readerId && priority == hold.priority
+                && Objects.equals(holdDate, hold.holdDate) && Objects.equals(readyDate, hold.readyDate)
+                && Objects.equals(expireDate, hold.expireDate);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(isbn, readerId, holdDate);
+    }
+
+    @Override
+    public String toString() {
+        return "Hold{" +
+                "isbn=" + isbn +
+                ", readerId=" + readerId +
+                ", holdDate=" + holdDate +
+                ", priority=" + priority +
+                ", readyDate=" + readyDate +
+                ", expireDate=" + expireDate +
+                '}';
+    }
+}
@@ -11,6 +11,9 @@ public enum BooksReturnCode {
     PICK_PERIOD_LESS_MIN,
     PICK_PERIOD_GRATER_MAX,
     NO_READER, // addBookItem: pickPeriod вне [min,max]
-    READER_READS_IT
+    READER_READS_IT,
+    HOLD_EXISTS,                      // placeHold: у читателя уже есть бронь на книгу
+    NO_HOLD,                          // cancelHold: брони нет
+    BOOKS_EXEMPLARS_AVAILABLE         // placeHold: есть свободный экземпляр, бронь не нужна
 
 }
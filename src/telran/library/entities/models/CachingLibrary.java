@@ -0,0 +1,416 @@
+package telran.library.entities.models;
+
+import telran.library.entities.*;
+import telran.library.entities.enums.BooksReturnCode;
+
+import static telran.library.entities.enums.BooksReturnCode.*;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Обертка ILibrary с кешем результатов частых запросов: getBooksAuthor,
+ * getReadersPickedBook, getBooksPickedByReader и getMostPopularAuthors.
+ * Ключ - метод и аргумент, при превышении capacity вытесняется давно не читанная
+ * запись (LRU). Изменяющие операции удаляют только записи затронутых автора,
+ * isbn и читателей. Если во время запроса что-то изменилось, результат
+ * в кеш не кладется, поэтому устаревший список в кеше не остается.
+ * Закешированные списки неизменяемые. Счетчики доступны через JMX (register).
+ */
+public class CachingLibrary implements ILibrary, CachingLibraryMXBean {
+
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    private final ILibrary library;
+    private final int capacity;
+    private final transient Map<Key, List<?>> cache;
+    //Растет при каждой инвалидации; запрос сравнивает его до и после вычисления
+    private transient long version;
+    private transient long hits;
+    private transient long misses;
+    private transient long evictions;
+    private transient long invalidations;
+
+    public CachingLibrary(ILibrary library) {
+        this(library, DEFAULT_CAPACITY);
+    }
+
+    public CachingLibrary(ILibrary library, int capacity) {
+        this.library = library;
+        this.capacity = Math.max(1, capacity);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<?>> eldest) {
+                if (size() <= CachingLibrary.this.capacity)
+                    return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    public ILibrary getLibrary() {
+        return library;
+    }
+
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("telran.library:type=CachingLibrary,name=" + name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    //Ключ кеша: метод и его единственный аргумент (null для запросов без аргументов)
+    private static class Key {
+        private final LibraryMethod method;
+        private final Object argument;
+
+        Key(LibraryMethod method, Object argument) {
+            this.method = method;
+            this.argument = argument;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return method == key.method && Objects.equals(argument, key.argument);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * method.hashCode() + Objects.hashCode(argument);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> cached(LibraryMethod method, Object argument, Supplier<List<T>> query) {
+        Key key = new Key(method, argument);
+        long startVersion;
+        synchronized (cache) {
+            List<?> res = cache.get(key);
+            if (res != null) {
+                hits++;
+                return (List<T>) res;
+            }
+            misses++;
+            startVersion = version;
+        }
+        //Вычисление вне замка: запросы к разным ключам не ждут друг друга
+        List<T> res = Collections.unmodifiableList(new ArrayList<>(query.get()));
+        synchronized (cache) {
+            if (version == startVersion)
+                cache.put(key, res);
+        }
+        return res;
+    }
+
+    private void invalidate(Collection<Key> keys) {
+        synchronized (cache) {
+            version++;
+            for (Key key : keys)
+                if (cache.remove(key) != null)
+                    invalidations++;
+        }
+    }
+
+    private static Key authorKey(String author) {
+        return new Key(LibraryMethod.GET_BOOKS_AUTHOR, author);
+    }
+
+    //Выдача меняет наличие книги, ее читателей, книги читателя и рейтинг авторов
+    // (книгу могли уже удалить в другом потоке - тогда ее автора чистит удаление)
+    private void invalidatePick(long isbn, int readerId, Book book) {
+        List<Key> keys = new ArrayList<>(List.of(
+                new Key(LibraryMethod.GET_READERS_PICKED_BOOK, isbn),
+                new Key(LibraryMethod.GET_BOOKS_PICKED_BY_READER, readerId),
+                new Key(LibraryMethod.GET_MOST_POPULAR_AUTHORS, null)));
+        if (book != null)
+            keys.add(authorKey(book.getAuthor()));
+        invalidate(keys);
+    }
+
+    //Возврат и пометка на удаление меняют только наличие (записи автора),
+    // фактическое удаление (есть записи) - еще и выдачи книги и ее читателей
+    private void invalidateBook(RemovedBookData data) {
+        Book book = data == null ? null : data.getBook();
+        if (book == null)
+            return;
+        List<Key> keys = new ArrayList<>();
+        keys.add(authorKey(book.getAuthor()));
+        if (data.getRecords() != null) {
+            keys.add(new Key(LibraryMethod.GET_READERS_PICKED_BOOK, book.getIsbn()));
+            keys.add(new Key(LibraryMethod.GET_MOST_POPULAR_AUTHORS, null));
+            for (PickRecord record : data.getRecords())
+                keys.add(new Key(LibraryMethod.GET_BOOKS_PICKED_BY_READER, record.getReaderId()));
+        }
+        invalidate(keys);
+    }
+
+    @Override
+    public long getHits() {
+        synchronized (cache) {
+            return hits;
+        }
+    }
+
+    @Override
+    public long getMisses() {
+        synchronized (cache) {
+            return misses;
+        }
+    }
+
+    @Override
+    public long getEvictions() {
+        synchronized (cache) {
+            return evictions;
+        }
+    }
+
+    @Override
+    public long getInvalidations() {
+        synchronized (cache) {
+            return invalidations;
+        }
+    }
+
+    @Override
+    public int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    //Sprint 1
+    @Override
+    public BooksReturnCode addBookItem(Book book) {
+        BooksReturnCode res = library.addBookItem(book);
+        if (res == OK)
+            invalidate(List.of(authorKey(book.getAuthor())));
+        return res;
+    }
+
+    @Override
+    public BatchResult addBookItems(Collection<Book> books) {
+        BatchResult res = library.addBookItems(books);
+        List<Key> keys = new ArrayList<>();
+        int i = 0;
+        for (Book book : books)
+            if (res.get(i++) == OK)
+                keys.add(authorKey(book.getAuthor()));
+        if (!keys.isEmpty())
+            invalidate(keys);
+        return res;
+    }
+
+    @Override
+    public BooksReturnCode addReader(Reader reader) {
+        return library.addReader(reader);
+    }
+
+    @Override
+    public BatchResult addReaders(Collection<Reader> readers) {
+        return library.addReaders(readers);
+    }
+
+    @Override
+    public BooksReturnCode addBookExemplars(long isbn, int amount, LocalDate date) {
+        BooksReturnCode res = library.addBookExemplars(isbn, amount, date);
+        Book book = library.getBookItem(isbn);
+        if (res == OK && book != null)
+            invalidate(List.of(authorKey(book.getAuthor())));
+        return res;
+    }
+
+    @Override
+    public Reader getReader(int readerId) {
+        return library.getReader(readerId);
+    }
+
+    @Override
+    public Book getBookItem(long isbn) {
+        return library.getBookItem(isbn);
+    }
+
+    //Sprint 2
+    @Override
+    public BooksReturnCode pickBook(long isbn, int readerId, LocalDate pickDate) {
+        BooksReturnCode res = library.pickBook(isbn, readerId, pickDate);
+        if (res == OK)
+            invalidatePick(isbn, readerId, library.getBookItem(isbn));
+        return res;
+    }
+
+    @Override
+    public BatchResult pickBooks(int readerId, List<Long> isbns, LocalDate pickDate) {
+        BatchResult res = library.pickBooks(readerId, isbns, pickDate);
+        for (int i = 0; i < isbns.size(); i++)
+            if (res.get(i) == OK)
+                invalidatePick(isbns.get(i), readerId, library.getBookItem(isbns.get(i)));
+        return res;
+    }
+
+    @Override
+    public List<Book> getBooksPickedByReader(int readerId) {
+        return cached(LibraryMethod.GET_BOOKS_PICKED_BY_READER, readerId,
+                () -> library.getBooksPickedByReader(readerId));
+    }
+
+    @Override
+    public List<PickRecord> getReaderOpenLoans(int readerId) {
+        return library.getReaderOpenLoans(readerId);
+    }
+
+    @Override
+    public List<Reader> getReadersPickedBook(long isbn) {
+        return cached(LibraryMethod.GET_READERS_PICKED_BOOK, isbn,
+                () -> library.getReadersPickedBook(isbn));
+    }
+
+    @Override
+    public List<Book> getBooksAuthor(String authorName) {
+        return cached(LibraryMethod.GET_BOOKS_AUTHOR, authorName,
+                () -> library.getBooksAuthor(authorName));
+    }
+
+    @Override
+    public List<Book> getAvailableBooks() {
+        return library.getAvailableBooks();
+    }
+
+    @Override
+    public List<Book> findBooksByToken(String query) {
+        return library.findBooksByToken(query);
+    }
+
+    @Override
+    public List<Book> findBooksByPrefix(String query, int limit) {
+        return library.findBooksByPrefix(query, limit);
+    }
+
+    @Override
+    public List<PickRecord> getPickedRecordsAtDates(LocalDate from, LocalDate to) {
+        return library.getPickedRecordsAtDates(from, to);
+    }
+
+    @Override
+    public Stream<PickRecord> streamPickedRecordsAtDates(LocalDate from, LocalDate to) {
+        return library.streamPickedRecordsAtDates(from, to);
+    }
+
+    @Override
+    public void forEachPickedRecord(LocalDate from, LocalDate to, Consumer<PickRecord> action) {
+        library.forEachPickedRecord(from, to, action);
+    }
+
+    //Sprint 3
+    @Override
+    public RemovedBookData removeBook(long isbn) {
+        RemovedBookData res = library.removeBook(isbn);
+        invalidateBook(res);
+        return res;
+    }
+
+    @Override
+    public List<RemovedBookData> removeAuthor(String author) {
+        List<RemovedBookData> res = library.removeAuthor(author);
+        res.forEach(this::invalidateBook);
+        return res;
+    }
+
+    @Override
+    public RemovedBookData returnBook(long isbn, int readerId, LocalDate returnDate) {
+        RemovedBookData res = library.returnBook(isbn, readerId, returnDate);
+        invalidateBook(res);
+        return res;
+    }
+
+    @Override
+    public List<RemovedBookData> returnBooks(int readerId, List<Long> isbns, LocalDate returnDate) {
+        List<RemovedBookData> res = library.returnBooks(readerId, isbns, returnDate);
+        res.forEach(this::invalidateBook);
+        return res;
+    }
+
+    //Брони: постановка в очередь наличие не меняет,
+    // снятие брони может освободить экземпляр
+    @Override
+    public BooksReturnCode placeHold(long isbn, int readerId, LocalDate holdDate, int priority) {
+        return library.placeHold(isbn, readerId, holdDate, priority);
+    }
+
+    @Override
+    public BooksReturnCode cancelHold(long isbn, int readerId, LocalDate cancelDate) {
+        BooksReturnCode res = library.cancelHold(isbn, readerId, cancelDate);
+        Book book = library.getBookItem(isbn);
+        if (res == OK && book != null)
+            invalidate(List.of(authorKey(book.getAuthor())));
+        return res;
+    }
+
+    @Override
+    public List<Hold> getReaderHolds(int readerId) {
+        return library.getReaderHolds(readerId);
+    }
+
+    @Override
+    public List<Hold> getBookHolds(long isbn) {
+        return library.getBookHolds(isbn);
+    }
+
+    @Override
+    public List<Hold> expireHolds(LocalDate currentDate) {
+        List<Hold> res = library.expireHolds(currentDate);
+        List<Key> keys = new ArrayList<>();
+        for (Hold hold : res) {
+            Book book = library.getBookItem(hold.getIsbn());
+            if (book != null)
+                keys.add(authorKey(book.getAuthor()));
+        }
+        if (!keys.isEmpty())
+            invalidate(keys);
+        return res;
+    }
+
+    //Sprint 4
+    @Override
+    public List<ReaderDelay> getReadersDelayingBooks(LocalDate currentDate) {
+        return library.getReadersDelayingBooks(currentDate);
+    }
+
+    @Override
+    public List<ReaderDelay> getReadersDelayedBooks() {
+        return library.getReadersDelayedBooks();
+    }
+
+    @Override
+    public List<Book> getMostPopularBooks(LocalDate fromDate, LocalDate toDate, int fromAge, int toAge) {
+        return library.getMostPopularBooks(fromDate, toDate, fromAge, toAge);
+    }
+
+    @Override
+    public List<String> getMostPopularAuthors() {
+        return cached(LibraryMethod.GET_MOST_POPULAR_AUTHORS, null, library::getMostPopularAuthors);
+    }
+
+    @Override
+    public List<String> getTopAuthors(int k) {
+        return library.getTopAuthors(k);
+    }
+
+    @Override
+    public List<Reader> getMostActiveReaders(LocalDate fromDate, LocalDate toDate) {
+        return library.getMostActiveReaders(fromDate, toDate);
+    }
+}
@@ -0,0 +1,13 @@
+package telran.library.entities.models;
+
+//Счетчики кеша CachingLibrary для JMX
+public interface CachingLibraryMXBean {
+    long getHits();
+    long getMisses();
+    //Вытеснено по размеру (LRU)
+    long getEvictions();
+    //Удалено изменяющими операциями
+    long getInvalidations();
+    int getSize();
+    int getCapacity();
+}
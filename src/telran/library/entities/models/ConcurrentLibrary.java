@@ -0,0 +1,847 @@
+package telran.library.entities.models;
+
+import telran.library.entities.*;
+import telran.library.entities.enums.BooksReturnCode;
+import telran.utils.TokenIndex;
+
+import static telran.library.entities.enums.BooksReturnCode.*;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Потокобезопасная реализация ILibrary с той же семантикой, что и LibraryMaps.
+ * Выдача и возврат экземпляров - неблокирующие (Book.reserveExemplar/releaseExemplar),
+ * операции одного читателя сериализуются замком полосы по readerId,
+ * добавление и фактическое удаление книги - замком полосы по isbn.
+ * Брони меняются под общим замком броней. Пока на книгу есть брони, у нее стоит
+ * флаг Book.isHeld и reserveExemplar ее не выдает: экземпляры такой книги выдаются
+ * и откладываются только под замком броней. Книги без броней выдаются и возвращаются
+ * без него; возврат после освобождения экземпляра еще раз смотрит на флаг,
+ * чтобы не пропустить бронь, поставленную в этот момент.
+ * Замки всегда берутся в порядке "сеансы, затем читатель, затем брони, затем книга,
+ * затем каталог", замок полосы срока возврата - последним.
+ * Аналитика Sprint 4, каталог и поиск читают индексы без блокировок (слабо согласованный срез).
+ * Сеансы киоска (pickBooks, returnBooks) атомарны относительно других потоков:
+ * сеанс берет запись общего замка сеансов, а выдача, возврат, добавление экземпляров,
+ * удаление книги, брони и запросы по читателю и броням - его чтение. Одиночные операции
+ * по-прежнему идут параллельно друг другу, сеансы выполняются по одному.
+ */
+public class ConcurrentLibrary extends AbstractLibrary {
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final Map<Long, Book> books = new ConcurrentHashMap<>();
+    private final Map<Integer, Reader> readers = new ConcurrentHashMap<>();
+    private final Map<Integer, Queue<PickRecord>> readersRecords = new ConcurrentHashMap<>();
+    private final Map<Long, Queue<PickRecord>> booksRecords = new ConcurrentHashMap<>();
+    //Счетчики выдач по авторам: обновляются при выдаче и удалении книги
+    private final Map<String, LongAdder> authorPicks = new ConcurrentHashMap<>();
+    private final NavigableMap<LocalDate, Queue<PickRecord>> records = new ConcurrentSkipListMap<>();
+    private final Map<String, Set<Book>> authorBooks = new ConcurrentHashMap<>();
+    //Доступные книги: есть экземпляры, не выданные и не нужные очереди броней.
+    // Пересчитываются после каждой выдачи, возврата, изменения броней и экземпляров
+    private final Map<Long, Book> availableBooks = new ConcurrentHashMap<>();
+    private final Map<String, Map<Long, Book>> availableByAuthor = new ConcurrentHashMap<>();
+    //Невозвращенные выдачи: readerId -> (isbn -> выдача), меняются под замком читателя
+    private final Map<Integer, Map<Long, OpenLoan>> openLoans = new ConcurrentHashMap<>();
+    //Невозвращенные выдачи по сроку возврата (pickDate + pickPeriod); множество даты
+    // создается и удаляется под замком полосы этой даты. OpenLoan сравнивается по ссылке,
+    // поэтому возврат убирает выдачу за O(1), сколько бы выдач ни было на этот срок
+    private final NavigableMap<LocalDate, Set<OpenLoan>> dueDates = new ConcurrentSkipListMap<>();
+    //Индекс поиска общий для всех книг: поиск под замком чтения, изменения - записи
+    private final TokenIndex<Book> catalog =
+            new TokenIndex<>(book -> new String[]{book.getTitle(), book.getAuthor()});
+    private final ReadWriteLock catalogLock = new ReentrantReadWriteLock();
+    //Брони; отложенный экземпляр считается в amountInUse
+    private final HoldQueue holds = new HoldQueue();
+    private final Lock holdsLock = new ReentrantLock();
+    //Сеансы киоска берут запись, одиночные изменения выдач, экземпляров и броней
+    // и запросы по читателю и броням - чтение
+    private final ReadWriteLock sessionLock = new ReentrantReadWriteLock();
+
+    private final Lock[] bookLocks;
+    private final Lock[] readerLocks;
+    private final Lock[] dueLocks;
+
+    //Срок запоминается при выдаче: pickPeriod книги может измениться, пока она на руках
+    private static class OpenLoan {
+        final PickRecord record;
+        final LocalDate dueDate;
+
+        OpenLoan(PickRecord record, LocalDate dueDate) {
+            this.record = record;
+            this.dueDate = dueDate;
+        }
+    }
+
+    public ConcurrentLibrary() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public ConcurrentLibrary(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        bookLocks = createLocks(size);
+        readerLocks = createLocks(size);
+        dueLocks = createLocks(size);
+    }
+
+    private static Lock[] createLocks(int size) {
+        Lock[] locks = new Lock[size];
+        for (int i = 0; i < size; i++)
+            locks[i] = new ReentrantLock();
+        return locks;
+    }
+
+    private Lock bookLock(long isbn) {
+        return bookLocks[spread(Long.hashCode(isbn)) & (bookLocks.length - 1)];
+    }
+
+    private Lock readerLock(int readerId) {
+        return readerLocks[spread(Integer.hashCode(readerId)) & (readerLocks.length - 1)];
+    }
+
+    //Берется последним, ничего не ждет под собой
+    private Lock dueLock(LocalDate dueDate) {
+        return dueLocks[spread(dueDate.hashCode()) & (dueLocks.length - 1)];
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    //Sprint 1
+    @Override
+    public BooksReturnCode addBookItem(Book book) {
+        if(book.getPickPeriod() < minPickPeriod)
+            return PICK_PERIOD_LESS_MIN;
+        if(book.getPickPeriod() > maxPicPeriod)
+            return PICK_PERIOD_GRATER_MAX;
+        Lock lock = bookLock(book.getIsbn());
+        lock.lock();
+        try {
+            if(books.putIfAbsent(book.getIsbn(), book) != null) return BOOK_ITEM_EXISTS;
+            authorBooks.computeIfAbsent(book.getAuthor(), k -> ConcurrentHashMap.newKeySet()).add(book);
+            updateCatalog(() -> catalog.add(book.getIsbn(), book));
+        } finally {
+            lock.unlock();
+        }
+        updateAvailability(book);
+        return OK;
+    }
+
+    @Override
+    public BooksReturnCode addReader(Reader reader) {
+        if(reader == null) return NO_READER;
+        return readers.putIfAbsent(reader.getReaderId(), reader) == null ?
+                OK : READER_EXISTS;
+    }
+
+    //Новые экземпляры сначала откладываются для очереди броней
+    @Override
+    public BooksReturnCode addBookExemplars(long isbn, int amount, LocalDate date) {
+        return shared(() -> doAddBookExemplars(isbn, amount, date));
+    }
+
+    private BooksReturnCode doAddBookExemplars(long isbn, int amount, LocalDate date) {
+        Book book = books.get(isbn);
+        if(book == null) return NO_BOOK_ITEM;
+        if(date == null) return WRONG_BOOK_PICK_PERIOD;
+        book.addAmount(amount);
+        if(book.isHeld())
+            promoteWaiting(book, date);
+        updateAvailability(book);
+        return OK;
+    }
+
+    @Override
+    public Reader getReader(int readerId) {
+        return readers.get(readerId);
+    }
+
+    @Override
+    public Book getBookItem(long isbn) {
+        return books.get(isbn);
+    }
+
+    //Sprint 2
+    @Override
+    public BooksReturnCode pickBook(long isbn, int readerId, LocalDate pickDate) {
+        return shared(() -> doPickBook(isbn, readerId, pickDate));
+    }
+
+    private BooksReturnCode doPickBook(long isbn, int readerId, LocalDate pickDate) {
+        Lock readerLock = readerLock(readerId);
+        readerLock.lock();
+        try {
+            return pickLocked(isbn, readerId, pickDate, checkReaderToPick(readerId, pickDate));
+        } finally {
+            readerLock.unlock();
+        }
+    }
+
+    private BooksReturnCode checkReaderToPick(int readerId, LocalDate pickDate) {
+        if (!readers.containsKey(readerId))
+            return NO_READER;
+
+        //Те же границы дат, что и у LibraryMaps
+        if(pickDate == null || pickDate.isBefore(LibraryMaps.MIN_PICK_DATE)
+                || pickDate.isAfter(LibraryMaps.MAX_PICK_DATE))
+            return WRONG_BOOK_PICK_PERIOD;
+        return OK;
+    }
+
+    //Вызывается под замком читателя; readerCode - результат checkReaderToPick
+    private BooksReturnCode pickLocked(long isbn, int readerId, LocalDate pickDate,
+                                       BooksReturnCode readerCode) {
+        Book book = books.get(isbn);
+        if(book == null || book.getAmount() < 0)
+            return NO_BOOK_ITEM;
+
+        if(!book.isHeld() && book.getAmountInUse() >= book.getAmount())
+            return NO_BOOKS_EXEMPLARS;
+
+        if(readerCode != OK)
+            return readerCode;
+
+        if(getPickRecord(isbn, readerId) != null)
+            return READER_READS_IT;
+
+        //У книги с бронями экземпляр может быть отложен для этого читателя
+        BooksReturnCode res = book.reserveExemplar() ? OK :
+                book.isHeld() ? reserveHeldExemplar(book, readerId) :
+                book.getAmount() < 0 ? NO_BOOK_ITEM : NO_BOOKS_EXEMPLARS;
+        if(res != OK)
+            return res;
+
+        PickRecord record = new PickRecord(isbn, readerId, pickDate);
+        addToMap(booksRecords, isbn, record);
+        authorPicks.computeIfAbsent(book.getAuthor(), k -> new LongAdder()).increment();
+        addToMap(readersRecords, readerId, record);
+        addToMap(records, pickDate, record);
+        OpenLoan loan = new OpenLoan(record, pickDate.plusDays(book.getPickPeriod()));
+        openLoans.computeIfAbsent(readerId, k -> new ConcurrentHashMap<>()).put(isbn, loan);
+        addDue(loan);
+        updateAvailability(book);
+        return OK;
+    }
+
+    //Свободные экземпляры в первую очередь достаются ожидающим по брони
+    private BooksReturnCode reserveHeldExemplar(Book book, int readerId) {
+        long isbn = book.getIsbn();
+        holdsLock.lock();
+        try {
+            //Ожидающий в очереди берет книгу только когда его бронь готова
+            Hold hold = holds.get(isbn, readerId);
+            boolean ready = hold != null && hold.isReady();
+            if(!ready && (freeExemplars(book) <= 0 || !book.reserveHeldExemplar()))
+                return book.getAmount() < 0 ? NO_BOOK_ITEM : NO_BOOKS_EXEMPLARS;
+            if(hold != null) {
+                holds.remove(isbn, readerId);
+                updateHeld(book);
+            }
+            return OK;
+        } finally {
+            holdsLock.unlock();
+        }
+    }
+
+    private int freeExemplars(Book book) {
+        return book.getAmount() - book.getAmountInUse() - holds.waitingCount(book.getIsbn());
+    }
+
+    //Пересчет под замком книги, для книги с бронями - и под замком броней, поэтому
+    // последний пересчет видит последнее состояние. Флаг броней меняется только
+    // под замком броней и до пересчета, который делает тот же поток.
+    // Нельзя вызывать под замком книги: замок броней берется раньше
+    private void updateAvailability(Book book) {
+        Lock lock = bookLock(book.getIsbn());
+        lock.lock();
+        try {
+            if(!book.isHeld()) {
+                setAvailable(book, book.getAmount() > book.getAmountInUse());
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        holdsLock.lock();
+        lock.lock();
+        try {
+            setAvailable(book, book.getAmount() >= 0 && freeExemplars(book) > 0);
+        } finally {
+            lock.unlock();
+            holdsLock.unlock();
+        }
+    }
+
+    //Книга с тем же isbn могла быть удалена и добавлена заново - сравнение по ссылке
+    private void setAvailable(Book book, boolean available) {
+        long isbn = book.getIsbn();
+        if(available) {
+            availableBooks.put(isbn, book);
+            availableByAuthor.computeIfAbsent(book.getAuthor(), k -> new ConcurrentHashMap<>()).put(isbn, book);
+            return;
+        }
+        availableBooks.computeIfPresent(isbn, (k, b) -> b == book ? null : b);
+        Map<Long, Book> byAuthor = availableByAuthor.get(book.getAuthor());
+        if(byAuthor != null)
+            byAuthor.computeIfPresent(isbn, (k, b) -> b == book ? null : b);
+    }
+
+    //Вызывается под holdsLock после каждого изменения броней книги
+    private void updateHeld(Book book) {
+        book.setHeld(holds.count(book.getIsbn()) > 0);
+    }
+
+    //Свободные экземпляры откладываются для ожидающих по очереди
+    private void promoteWaiting(Book book, LocalDate date) {
+        holdsLock.lock();
+        try {
+            while(holds.waitingCount(book.getIsbn()) > 0 && book.reserveHeldExemplar())
+                holds.promote(book.getIsbn(), date);
+        } finally {
+            holdsLock.unlock();
+        }
+    }
+
+    //Весь сеанс под замком записи сеансов и замком читателя,
+    // читатель и дата проверяются один раз
+    @Override
+    public BatchResult pickBooks(int readerId, List<Long> isbns, LocalDate pickDate) {
+        Lock readerLock = readerLock(readerId);
+        sessionLock.writeLock().lock();
+        readerLock.lock();
+        try {
+            BooksReturnCode readerCode = checkReaderToPick(readerId, pickDate);
+            BatchResult res = new BatchResult(isbns.size());
+            for (int i = 0; i < isbns.size(); i++)
+                res.set(i, pickLocked(isbns.get(i), readerId, pickDate, readerCode));
+            return res;
+        } finally {
+            readerLock.unlock();
+            sessionLock.writeLock().unlock();
+        }
+    }
+
+    //Одиночные изменения и запросы по читателю и броням не попадают внутрь сеанса киоска
+    private <T> T shared(Supplier<T> operation) {
+        sessionLock.readLock().lock();
+        try {
+            return operation.get();
+        } finally {
+            sessionLock.readLock().unlock();
+        }
+    }
+
+    private void addDue(OpenLoan loan) {
+        Lock lock = dueLock(loan.dueDate);
+        lock.lock();
+        try {
+            dueDates.computeIfAbsent(loan.dueDate, k -> ConcurrentHashMap.newKeySet()).add(loan);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeDue(OpenLoan loan) {
+        Lock lock = dueLock(loan.dueDate);
+        lock.lock();
+        try {
+            Set<OpenLoan> loans = dueDates.get(loan.dueDate);
+            if(loans != null && loans.remove(loan) && loans.isEmpty())
+                dueDates.remove(loan.dueDate);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <K> void addToMap(Map<K, Queue<PickRecord>> map, K key, PickRecord value) {
+        map.computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>()).add(value);
+    }
+
+    @Override
+    public List<Book> getBooksPickedByReader(int readerId) {
+        return shared(() -> readersRecords.getOrDefault(readerId, new ConcurrentLinkedQueue<>()).stream()
+                .map(r -> books.get(r.getIsbn()))
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList());
+    }
+
+    @Override
+    public List<PickRecord> getReaderOpenLoans(int readerId) {
+        return shared(() -> openLoans.getOrDefault(readerId, Map.of()).values().stream()
+                .map(loan -> loan.record)
+                .toList());
+    }
+
+    @Override
+    public List<Reader> getReadersPickedBook(long isbn) {
+        return booksRecords.getOrDefault(isbn, new ConcurrentLinkedQueue<>()).stream()
+                .map(r -> readers.get(r.getReaderId()))
+                .distinct()
+                .toList();
+    }
+
+    @Override
+    public List<Book> getBooksAuthor(String authorName) {
+        if(authorName == null || authorName.isBlank())
+            return new ArrayList<>();
+
+        return new ArrayList<>(availableByAuthor.getOrDefault(authorName, Map.of()).values());
+    }
+
+    //Наличие меняется неблокирующим CAS в Book, поэтому здесь не индекс, а проход по книгам
+    @Override
+    public List<Book> getAvailableBooks() {
+        return new ArrayList<>(availableBooks.values());
+    }
+
+    @Override
+    public List<Book> findBooksByToken(String query) {
+        catalogLock.readLock().lock();
+        try {
+            return catalog.find(query);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Book> findBooksByPrefix(String query, int limit) {
+        catalogLock.readLock().lock();
+        try {
+            return catalog.findByPrefix(query, limit);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    private void updateCatalog(Runnable update) {
+        catalogLock.writeLock().lock();
+        try {
+            update.run();
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<PickRecord> getPickedRecordsAtDates(LocalDate from, LocalDate to) {
+        if(to.isBefore(from)) return new ArrayList<>();
+        return streamPickedRecordsAtDates(from, to).toList();
+    }
+
+    @Override
+    public Stream<PickRecord> streamPickedRecordsAtDates(LocalDate from, LocalDate to) {
+        if(to.isBefore(from)) return Stream.empty();
+        return records.subMap(from, to).values().stream()
+                .flatMap(Queue::stream);
+    }
+
+    @Override
+    public void forEachPickedRecord(LocalDate from, LocalDate to, Consumer<PickRecord> action) {
+        if(to.isBefore(from)) return;
+        records.subMap(from, to).values().forEach(q -> q.forEach(action));
+    }
+
+    //Sprint 3
+    @Override
+    public RemovedBookData removeBook(long isbn) {
+        return shared(() -> doRemoveBook(isbn));
+    }
+
+    private RemovedBookData doRemoveBook(long isbn) {
+        Book book = books.get(isbn);
+        if(book == null)
+            return null;
+        //Снятие броней и пометка - под замком броней, чтобы новая бронь не встала между ними
+        int amountInUse;
+        holdsLock.lock();
+        try {
+            if(book.getAmount() >= 0)
+                holds.removeBook(isbn).stream()
+                        .filter(Hold::isReady)
+                        .forEach(hold -> book.releaseExemplar());
+            updateHeld(book);
+            amountInUse = book.markForRemoval();
+        } finally {
+            holdsLock.unlock();
+        }
+        updateAvailability(book);
+        if(amountInUse < 0)
+            return null;
+        return amountInUse > 0 ?
+                new RemovedBookData(book, null) : actualBookRemove(book);
+    }
+
+    //Ровно один поток видит переход "помечена и нет экземпляров на руках",
+    // новые выдачи после пометки невозможны
+    private RemovedBookData actualBookRemove(Book book) {
+        Lock lock = bookLock(book.getIsbn());
+        lock.lock();
+        try {
+            return doBookRemove(book);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private RemovedBookData doBookRemove(Book book) {
+        long isbn = book.getIsbn();
+        Queue<PickRecord> removedRecords = booksRecords.remove(isbn);
+        List<PickRecord> res = removedRecords == null ?
+                new ArrayList<>() : new ArrayList<>(removedRecords);
+        LongAdder picks = authorPicks.get(book.getAuthor());
+        if(picks != null)
+            picks.add(-res.size());
+
+        res.forEach(r -> {
+            removeFromQueue(records.get(r.getPickDate()), r);
+            removeFromQueue(readersRecords.get(r.getReaderId()), r);
+        });
+
+        books.remove(isbn);
+        Set<Book> booksByAuthor = authorBooks.get(book.getAuthor());
+        if (booksByAuthor != null)
+            booksByAuthor.remove(book);
+        updateCatalog(() -> catalog.remove(isbn, book));
+
+        return new RemovedBookData(book, res);
+    }
+
+    private void removeFromQueue(Queue<PickRecord> queue, PickRecord record) {
+        if(queue != null)
+            queue.removeIf(r -> r == record);
+    }
+
+    @Override
+    public List<RemovedBookData> removeAuthor(String author) {
+        return authorBooks.getOrDefault(author, Set.of()).stream()
+                .filter(b -> b.getAmount() >= 0)
+                .toList().stream()
+                .map(b -> removeBook(b.getIsbn()))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public RemovedBookData returnBook(long isbn, int readerId, LocalDate returnDate) {
+        return shared(() -> doReturnBook(isbn, readerId, returnDate));
+    }
+
+    private RemovedBookData doReturnBook(long isbn, int readerId, LocalDate returnDate) {
+        Lock readerLock = readerLock(readerId);
+        readerLock.lock();
+        try {
+            PickRecord record = getPickRecord(isbn, readerId);
+            if(record == null || returnDate == null)
+                return new RemovedBookData(null, null);
+
+            Book returnedBook = books.get(isbn);
+            Map<Long, OpenLoan> loans = openLoans.get(readerId);
+            OpenLoan loan = loans.remove(isbn);
+            record.setReturnDate(returnDate);
+            record.setDelayDays(getDaysDelay(loan.dueDate, returnDate));
+            if(loans.isEmpty())
+                openLoans.remove(readerId);
+            removeDue(loan);
+
+            RemovedBookData res = releaseExemplar(returnedBook, returnDate);
+            updateAvailability(returnedBook);
+            return res;
+        } finally {
+            readerLock.unlock();
+        }
+    }
+
+    //Освободившийся экземпляр откладывается для первого в очереди броней,
+    // иначе возвращается на полку
+    private RemovedBookData releaseExemplar(Book book, LocalDate date) {
+        if(book.isHeld()) {
+            holdsLock.lock();
+            try {
+                if(holds.promote(book.getIsbn(), date) != null || !book.releaseExemplar())
+                    return new RemovedBookData(book, null);
+            } finally {
+                holdsLock.unlock();
+            }
+            return actualBookRemove(book);
+        }
+        if(book.releaseExemplar())
+            return actualBookRemove(book);
+        //Бронь могли поставить между проверкой флага и возвратом: тогда она видела
+        // экземпляр на руках и встала в очередь, экземпляр откладывается для нее
+        if(book.isHeld())
+            promoteWaiting(book, date);
+        return new RemovedBookData(book, null);
+    }
+
+    //Как pickBooks: весь сеанс под замком записи сеансов
+    @Override
+    public List<RemovedBookData> returnBooks(int readerId, List<Long> isbns, LocalDate returnDate) {
+        Lock readerLock = readerLock(readerId);
+        sessionLock.writeLock().lock();
+        readerLock.lock();
+        try {
+            List<RemovedBookData> res = new ArrayList<>(isbns.size());
+            for (long isbn : isbns)
+                res.add(doReturnBook(isbn, readerId, returnDate));
+            return res;
+        } finally {
+            readerLock.unlock();
+            sessionLock.writeLock().unlock();
+        }
+    }
+
+    //Брони
+    @Override
+    public BooksReturnCode placeHold(long isbn, int readerId, LocalDate holdDate, int priority) {
+        return shared(() -> doPlaceHold(isbn, readerId, holdDate, priority));
+    }
+
+    private BooksReturnCode doPlaceHold(long isbn, int readerId, LocalDate holdDate, int priority) {
+        Lock readerLock = readerLock(readerId);
+        readerLock.lock();
+        holdsLock.lock();
+        try {
+            Book book = books.get(isbn);
+            if(book == null || book.getAmount() < 0)
+                return NO_BOOK_ITEM;
+            if (!readers.containsKey(readerId))
+                return NO_READER;
+            if(holdDate == null || holdDate.isBefore(LibraryMaps.MIN_PICK_DATE)
+                    || holdDate.isAfter(LibraryMaps.MAX_PICK_DATE))
+                return WRONG_BOOK_PICK_PERIOD;
+            if(getPickRecord(isbn, readerId) != null)
+                return READER_READS_IT;
+            if(holds.get(isbn, readerId) != null)
+                return HOLD_EXISTS;
+            //Флаг ставится до проверки наличия: выдача без замка броней после этого
+            // невозможна, а возврат, прошедший раньше, виден в freeExemplars
+            book.setHeld(true);
+            if(freeExemplars(book) > 0) {
+                updateHeld(book);
+                return BOOKS_EXEMPLARS_AVAILABLE;
+            }
+            holds.place(isbn, readerId, holdDate, priority);
+            updateAvailability(book);
+            return OK;
+        } finally {
+            holdsLock.unlock();
+            readerLock.unlock();
+        }
+    }
+
+    @Override
+    public BooksReturnCode cancelHold(long isbn, int readerId, LocalDate cancelDate) {
+        return shared(() -> doCancelHold(isbn, readerId, cancelDate));
+    }
+
+    private BooksReturnCode doCancelHold(long isbn, int readerId, LocalDate cancelDate) {
+        if(cancelDate == null)
+            return WRONG_BOOK_PICK_PERIOD;
+        Lock readerLock = readerLock(readerId);
+        readerLock.lock();
+        holdsLock.lock();
+        try {
+            Hold hold = holds.remove(isbn, readerId);
+            if(hold == null)
+                return NO_HOLD;
+            Book book = books.get(isbn);
+            if(hold.isReady() && holds.promote(isbn, cancelDate) == null)
+                book.releaseExemplar();
+            updateHeld(book);
+            updateAvailability(book);
+            return OK;
+        } finally {
+            holdsLock.unlock();
+            readerLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Hold> getReaderHolds(int readerId) {
+        return shared(() -> readerHolds(readerId));
+    }
+
+    private List<Hold> readerHolds(int readerId) {
+        holdsLock.lock();
+        try {
+            return holds.getReaderHolds(readerId);
+        } finally {
+            holdsLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Hold> getBookHolds(long isbn) {
+        return shared(() -> bookHolds(isbn));
+    }
+
+    private List<Hold> bookHolds(long isbn) {
+        holdsLock.lock();
+        try {
+            return holds.getBookHolds(isbn);
+        } finally {
+            holdsLock.unlock();
+        }
+    }
+
+    //Книги с бронями не бывают помечены на удаление,
+    // поэтому освобождение экземпляра здесь не приводит к удалению
+    @Override
+    public List<Hold> expireHolds(LocalDate currentDate) {
+        return shared(() -> doExpireHolds(currentDate));
+    }
+
+    private List<Hold> doExpireHolds(LocalDate currentDate) {
+        if(currentDate == null)
+            return new ArrayList<>();
+        holdsLock.lock();
+        try {
+            List<Hold> res = holds.expire(currentDate);
+            for (Hold hold : res) {
+                Book book = books.get(hold.getIsbn());
+                if(hold.isReady() && holds.promote(book.getIsbn(), currentDate) == null)
+                    book.releaseExemplar();
+                updateHeld(book);
+                updateAvailability(book);
+            }
+            return res;
+        } finally {
+            holdsLock.unlock();
+        }
+    }
+
+    //От срока, запомненного при выдаче, как и в getReadersDelayingBooks
+    private int getDaysDelay(LocalDate dueDate, LocalDate returnDate) {
+        int delay = (int) ChronoUnit.DAYS.between(dueDate, returnDate);
+        return Math.max(delay, 0);
+    }
+
+    private PickRecord getPickRecord(long isbn, int readerId) {
+        Map<Long, OpenLoan> loans = openLoans.get(readerId);
+        OpenLoan loan = loans == null ? null : loans.get(isbn);
+        return loan == null ? null : loan.record;
+    }
+
+    //Sprint 4
+    @Override
+    public List<ReaderDelay> getReadersDelayingBooks(LocalDate currentDate) {
+        if(currentDate == null)
+            return new ArrayList<>();
+
+        List<ReaderDelay> res = new ArrayList<>();
+        dueDates.headMap(currentDate, false).forEach((dueDate, loans) -> {
+            int delay = (int) ChronoUnit.DAYS.between(dueDate, currentDate);
+            loans.forEach(loan -> res.add(new ReaderDelay(readers.get(loan.record.getReaderId()), delay)));
+        });
+        return res;
+    }
+
+    @Override
+    public List<ReaderDelay> getReadersDelayedBooks() {
+        return records.values().stream()
+                .flatMap(Queue::stream)
+                .filter(r -> r.getDelayDays() > 0)
+                .map(r -> new ReaderDelay(readers.get(r.getReaderId()), r.getDelayDays()))
+                .toList();
+    }
+
+    @Override
+    public List<Book> getMostPopularBooks(LocalDate fromDate, LocalDate toDate
+            , int fromAge, int toAge) {
+        if(fromDate == null || toDate == null || fromDate.isAfter(toDate))
+            return new ArrayList<>();
+
+        Map<Book, Long> mapTemp = streamPickedRecordsAtDates(fromDate, toDate)
+                .filter(r -> isProperAge(r, fromAge, toAge))
+                .map(r -> books.get(r.getIsbn()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.groupingBy(b -> b, Collectors.counting()));
+
+        return mapTemp.isEmpty() ? new ArrayList<>()
+                : getListMaxValueFromMap(mapTemp);
+    }
+
+    private boolean isProperAge(PickRecord r, int fromAge, int toAge) {
+        Reader reader = readers.get(r.getReaderId());
+        //Читатели без даты рождения не попадают ни в один возрастной диапазон
+        if(reader.getBirthDay() == null)
+            return false;
+        int readerAge = (int) ChronoUnit.YEARS.between(reader.getBirthDay()
+                , r.getPickDate());
+        return readerAge >= fromAge && readerAge < toAge;
+    }
+
+    @Override
+    public List<String> getMostPopularAuthors() {
+        Map<String, Long> mapTemp = getAuthorsPicks();
+        return mapTemp.isEmpty() ? new ArrayList<>()
+                : getListMaxValueFromMap(mapTemp);
+    }
+
+    @Override
+    public List<String> getTopAuthors(int k) {
+        if(k <= 0)
+            return new ArrayList<>();
+        //Куча из k лучших вместо полной сортировки
+        PriorityQueue<Map.Entry<String, Long>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+        getAuthorsPicks().entrySet().forEach(e -> {
+            top.add(e);
+            if(top.size() > k) top.poll();
+        });
+        LinkedList<String> res = new LinkedList<>();
+        while(!top.isEmpty())
+            res.addFirst(top.poll().getKey());
+        return new ArrayList<>(res);
+    }
+
+    //Срез счетчиков; авторы, у которых не осталось выдач, пропускаются
+    private Map<String, Long> getAuthorsPicks() {
+        Map<String, Long> mapTemp = new HashMap<>();
+        authorPicks.forEach((author, picks) -> {
+            long count = picks.sum();
+            if(count > 0)
+                mapTemp.put(author, count);
+        });
+        return mapTemp;
+    }
+
+    @Override
+    public List<Reader> getMostActiveReaders(LocalDate fromDate, LocalDate toDate) {
+        if(fromDate == null || toDate == null)
+            return new ArrayList<>();
+
+        Map<Reader, Long> mapTemp = streamPickedRecordsAtDates(fromDate, toDate)
+                .collect(Collectors.groupingBy(r -> readers.get(r.getReaderId())
+                        , Collectors.counting()));
+
+        return mapTemp.isEmpty() ? new ArrayList<>()
+                : getListMaxValueFromMap(mapTemp);
+    }
+
+    private <K> List<K> getListMaxValueFromMap(Map<K, Long> mapTemp) {
+        long maxValue = Collections.max(mapTemp.values());
+        List<K> res = new ArrayList<>();
+        mapTemp.forEach((k, v) -> {
+            if(v == maxValue) res.add(k);
+        });
+        return res;
+    }
+}
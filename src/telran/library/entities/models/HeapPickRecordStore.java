@@ -0,0 +1,110 @@
+package telran.library.entities.models;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+//История выдач в куче по столбцам: пять примитивных массивов вместо объектов
+public class HeapPickRecordStore implements PickRecordStore, Serializable {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private long[] isbns;
+    private int[] readerIds;
+    private int[] pickDays;
+    private int[] returnDays;
+    private int[] delays;
+    private int size;
+    //Вид view(): общие с хранилищем массивы, только чтение
+    private final boolean readOnly;
+
+    public HeapPickRecordStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public HeapPickRecordStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        isbns = new long[capacity];
+        readerIds = new int[capacity];
+        pickDays = new int[capacity];
+        returnDays = new int[capacity];
+        delays = new int[capacity];
+        readOnly = false;
+    }
+
+    private HeapPickRecordStore(HeapPickRecordStore store) {
+        isbns = store.isbns;
+        readerIds = store.readerIds;
+        pickDays = store.pickDays;
+        returnDays = store.returnDays;
+        delays = store.delays;
+        size = store.size;
+        readOnly = true;
+    }
+
+    @Override
+    public int add(long isbn, int readerId, int pickDay) {
+        if (readOnly)
+            throw new UnsupportedOperationException("read-only view");
+        if (size == isbns.length)
+            grow();
+        isbns[size] = isbn;
+        readerIds[size] = readerId;
+        pickDays[size] = pickDay;
+        returnDays[size] = NO_DATE;
+        delays[size] = 0;
+        return size++;
+    }
+
+    private void grow() {
+        int capacity = size + (size >> 1) + 1;
+        isbns = Arrays.copyOf(isbns, capacity);
+        readerIds = Arrays.copyOf(readerIds, capacity);
+        pickDays = Arrays.copyOf(pickDays, capacity);
+        returnDays = Arrays.copyOf(returnDays, capacity);
+        delays = Arrays.copyOf(delays, capacity);
+    }
+
+    @Override
+    public void setReturn(int row, int returnDay, int delayDays) {
+        if (readOnly)
+            throw new UnsupportedOperationException("read-only view");
+        returnDays[row] = returnDay;
+        delays[row] = delayDays;
+    }
+
+    @Override
+    public long getIsbn(int row) {
+        return isbns[row];
+    }
+
+    @Override
+    public int getReaderId(int row) {
+        return readerIds[row];
+    }
+
+    @Override
+    public int getPickDay(int row) {
+        return pickDays[row];
+    }
+
+    @Override
+    public int getReturnDay(int row) {
+        return returnDays[row];
+    }
+
+    @Override
+    public int getDelayDays(int row) {
+        return delays[row];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    //Новые строки пишутся за size вида, а при росте - уже в другие массивы
+    @Override
+    public PickRecordStore view() {
+        return new HeapPickRecordStore(this);
+    }
+}
@@ -0,0 +1,185 @@
+package telran.library.entities.models;
+
+import telran.library.entities.Hold;
+import telran.utils.DayWheel;
+import telran.utils.IntMap;
+import telran.utils.LongMap;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Брони на книги. У книги есть очередь ожидающих (больший приоритет раньше,
+ * при равном - кто раньше встал) и брони, под которые экземпляр уже отложен.
+ * Сроки ожидания и получения отслеживает DayWheel. Снятые брони из очереди
+ * и колеса не вынимаются, а пропускаются; очередь чистится, когда в ней
+ * снятых больше, чем живых.
+ * Экземпляры книг здесь не считаются, этим занимается библиотека. Класс не потокобезопасный.
+ */
+class HoldQueue implements Serializable {
+
+    //Сколько дней бронь ждет в очереди и сколько лежит отложенный экземпляр
+    static final int HOLD_DAYS = 60;
+    static final int PICKUP_DAYS = 7;
+
+    private static final Comparator<Entry> ORDER = (Comparator<Entry> & Serializable) (a, b) ->
+            a.hold.getPriority() != b.hold.getPriority() ?
+                    Integer.compare(b.hold.getPriority(), a.hold.getPriority()) :
+                    Long.compare(a.sequence, b.sequence);
+
+    private final LongMap<BookHolds> books = new LongMap<>();
+    //readerId -> (isbn -> бронь), только действующие брони
+    private final IntMap<LongMap<Entry>> readers = new IntMap<>();
+    private final DayWheel<Entry> deadlines = new DayWheel<>();
+    private long sequence;
+    private int size;
+
+    private static class Entry implements Serializable {
+        private Hold hold;
+        private final long sequence;
+        private boolean active = true;
+
+        Entry(Hold hold, long sequence) {
+            this.hold = hold;
+            this.sequence = sequence;
+        }
+    }
+
+    private static class BookHolds implements Serializable {
+        private final PriorityQueue<Entry> waiting = new PriorityQueue<>(ORDER);
+        private int waitingCount;
+        private final List<Entry> ready = new ArrayList<>();
+    }
+
+    Hold place(long isbn, int readerId, LocalDate holdDate, int priority) {
+        Hold hold = new Hold(isbn, readerId, holdDate, priority, null, holdDate.plusDays(HOLD_DAYS));
+        add(hold);
+        return hold;
+    }
+
+    //Также при загрузке снимка: брони добавляются в порядке all()
+    void add(Hold hold) {
+        Entry entry = new Entry(hold, sequence++);
+        BookHolds bookHolds = books.computeIfAbsent(hold.getIsbn(), k -> new BookHolds());
+        if (hold.isReady()) {
+            bookHolds.ready.add(entry);
+        } else {
+            bookHolds.waiting.add(entry);
+            bookHolds.waitingCount++;
+        }
+        readers.computeIfAbsent(hold.getReaderId(), k -> new LongMap<>()).put(hold.getIsbn(), entry);
+        deadlines.schedule(hold.getExpireDate(), entry);
+        size++;
+    }
+
+    Hold get(long isbn, int readerId) {
+        LongMap<Entry> readerHolds = readers.get(readerId);
+        Entry entry = readerHolds == null ? null : readerHolds.get(isbn);
+        return entry == null ? null : entry.hold;
+    }
+
+    int waitingCount(long isbn) {
+        BookHolds bookHolds = books.get(isbn);
+        return bookHolds == null ? 0 : bookHolds.waitingCount;
+    }
+
+    //Ожидающие и отложенные брони книги
+    int count(long isbn) {
+        BookHolds bookHolds = books.get(isbn);
+        return bookHolds == null ? 0 : bookHolds.waitingCount + bookHolds.ready.size();
+    }
+
+    int size() {
+        return size;
+    }
+
+    //Первый в очереди получает отложенный экземпляр до date + PICKUP_DAYS; O(log n)
+    Hold promote(long isbn, LocalDate date) {
+        BookHolds bookHolds = books.get(isbn);
+        if (bookHolds == null || bookHolds.waitingCount == 0)
+            return null;
+        Entry entry = bookHolds.waiting.poll();
+        while (!entry.active)
+            entry = bookHolds.waiting.poll();
+        bookHolds.waitingCount--;
+        Hold hold = entry.hold;
+        entry.hold = new Hold(isbn, hold.getReaderId(), hold.getHoldDate(), hold.getPriority(),
+                date, date.plusDays(PICKUP_DAYS));
+        bookHolds.ready.add(entry);
+        deadlines.schedule(entry.hold.getExpireDate(), entry);
+        return entry.hold;
+    }
+
+    //Снимает бронь: читатель получил книгу, отменил бронь или истек срок
+    Hold remove(long isbn, int readerId) {
+        LongMap<Entry> readerHolds = readers.get(readerId);
+        Entry entry = readerHolds == null ? null : readerHolds.remove(isbn);
+        if (entry == null)
+            return null;
+        if (readerHolds.isEmpty())
+            readers.remove(readerId);
+        entry.active = false;
+        size--;
+
+        BookHolds bookHolds = books.get(isbn);
+        if (entry.hold.isReady()) {
+            bookHolds.ready.remove(entry);
+        } else if (--bookHolds.waitingCount * 2 < bookHolds.waiting.size()) {
+            bookHolds.waiting.removeIf(e -> !e.active);
+        }
+        if (bookHolds.waitingCount == 0 && bookHolds.ready.isEmpty())
+            books.remove(isbn);
+        return entry.hold;
+    }
+
+    //Снимает все брони книги (удаление книги)
+    List<Hold> removeBook(long isbn) {
+        List<Hold> res = getBookHolds(isbn);
+        res.forEach(hold -> remove(isbn, hold.getReaderId()));
+        return res;
+    }
+
+    //Снимает брони со сроком раньше currentDate, в порядке сроков
+    List<Hold> expire(LocalDate currentDate) {
+        List<Hold> res = new ArrayList<>();
+        deadlines.advance(currentDate, entry -> {
+            //В колесе остаются и старые сроки отложенных броней - их пропускаем
+            if (entry.active && entry.hold.getExpireDate().isBefore(currentDate))
+                res.add(remove(entry.hold.getIsbn(), entry.hold.getReaderId()));
+        });
+        return res;
+    }
+
+    List<Hold> getReaderHolds(int readerId) {
+        LongMap<Entry> readerHolds = readers.get(readerId);
+        if (readerHolds == null)
+            return new ArrayList<>();
+        return readerHolds.values().stream()
+                .sorted(Comparator.comparingLong(e -> e.sequence))
+                .map(e -> e.hold)
+                .toList();
+    }
+
+    //Сначала отложенные, затем очередь в порядке выдачи
+    List<Hold> getBookHolds(long isbn) {
+        BookHolds bookHolds = books.get(isbn);
+        List<Hold> res = new ArrayList<>();
+        if (bookHolds == null)
+            return res;
+        bookHolds.ready.forEach(e -> res.add(e.hold));
+        bookHolds.waiting.stream()
+                .filter(e -> e.active)
+                .sorted(ORDER)
+                .forEach(e -> res.add(e.hold));
+        return res;
+    }
+
+    //Все действующие брони в порядке постановки - для снимка
+    List<Hold> all() {
+        List<Entry> entries = new ArrayList<>(size);
+        readers.values().forEach(readerHolds -> entries.addAll(readerHolds.values()));
+        entries.sort(Comparator.comparingLong(e -> e.sequence));
+        return entries.stream().map(e -> e.hold).toList();
+    }
+}
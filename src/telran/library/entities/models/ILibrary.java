@@ -3,34 +3,116 @@ package telran.library.entities.models;
 import telran.library.entities.*;
 import telran.library.entities.enums.BooksReturnCode;
 
+import static telran.library.entities.enums.BooksReturnCode.*;
+
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface ILibrary extends Serializable {
     //Sprint 1
     BooksReturnCode addBookItem(Book book);
     BooksReturnCode addReader(Reader reader);
-    BooksReturnCode addBookExemplars(long isbn, int amount);
+    //Новые экземпляры сначала откладываются для очереди броней, срок получения - от date
+    BooksReturnCode addBookExemplars(long isbn, int amount, LocalDate date);
+
+    //Срок получения отложенных экземпляров - от сегодняшней даты
+    default BooksReturnCode addBookExemplars(long isbn, int amount) {
+        return addBookExemplars(isbn, amount, LocalDate.now());
+    }
     Reader getReader(int readerId);
     Book getBookItem(long isbn);
 
+    //Пакетная загрузка каталога; по умолчанию - поэлементные вызовы
+    default BatchResult addBookItems(Collection<Book> books) {
+        BatchResult res = new BatchResult(books.size());
+        int i = 0;
+        for (Book book : books)
+            res.set(i++, book == null ? NO_BOOK_ITEM : addBookItem(book));
+        return res;
+    }
+
+    default BatchResult addReaders(Collection<Reader> readers) {
+        BatchResult res = new BatchResult(readers.size());
+        int i = 0;
+        for (Reader reader : readers)
+            res.set(i++, addReader(reader));
+        return res;
+    }
+
+    //Коды идут в порядке обхода exemplars.entrySet()
+    default BatchResult addBookExemplars(Map<Long, Integer> exemplars) {
+        BatchResult res = new BatchResult(exemplars.size());
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : exemplars.entrySet())
+            res.set(i++, addBookExemplars(entry.getKey(), entry.getValue()));
+        return res;
+    }
+
     //Sprint 2
     BooksReturnCode pickBook(long isbn, int readerId, LocalDate pickDate);
     List<Book> getBooksPickedByReader(int readerId);
+    List<PickRecord> getReaderOpenLoans(int readerId);
     List<Reader> getReadersPickedBook(long isbn);
     List<Book> getBooksAuthor(String authorName);
+    //Книги, которые сейчас можно взять (есть свободные экземпляры), для витрины каталога
+    List<Book> getAvailableBooks();
+    //Поиск по словам названия и автора без учета регистра: книги со всеми словами запроса
+    List<Book> findBooksByToken(String query);
+    //Подсказки при наборе: последнее слово - начало слова, не больше limit книг
+    List<Book> findBooksByPrefix(String query, int limit);
     List<PickRecord> getPickedRecordsAtDates(LocalDate from, LocalDate to);
+    Stream<PickRecord> streamPickedRecordsAtDates(LocalDate from, LocalDate to);
+    void forEachPickedRecord(LocalDate from, LocalDate to, Consumer<PickRecord> action);
+
+    //Сеанс киоска: читатель проверяется один раз, коды - в порядке isbns
+    default BatchResult pickBooks(int readerId, List<Long> isbns, LocalDate pickDate) {
+        BatchResult res = new BatchResult(isbns.size());
+        boolean readerExists = getReader(readerId) != null;
+        for (int i = 0; i < isbns.size(); i++)
+            res.set(i, readerExists ? pickBook(isbns.get(i), readerId, pickDate) : NO_READER);
+        return res;
+    }
 
     //Sprint 3
     RemovedBookData removeBook(long isbn);
     List<RemovedBookData> removeAuthor(String author);
     RemovedBookData returnBook(long isbn, int readerId, LocalDate returnDate);
 
+    //Результаты - как у returnBook, в порядке isbns
+    default List<RemovedBookData> returnBooks(int readerId, List<Long> isbns, LocalDate returnDate) {
+        List<RemovedBookData> res = new ArrayList<>(isbns.size());
+        for (long isbn : isbns)
+            res.add(returnBook(isbn, readerId, returnDate));
+        return res;
+    }
+
+    //Брони: очередь читателей на книгу, у которой нет свободных экземпляров.
+    // Возвращенный экземпляр откладывается для первого в очереди
+    BooksReturnCode placeHold(long isbn, int readerId, LocalDate holdDate, int priority);
+
+    default BooksReturnCode placeHold(long isbn, int readerId, LocalDate holdDate) {
+        return placeHold(isbn, readerId, holdDate, 0);
+    }
+
+    //Отложенный по брони экземпляр переходит следующему в очереди
+    BooksReturnCode cancelHold(long isbn, int readerId, LocalDate cancelDate);
+    List<Hold> getReaderHolds(int readerId);
+    //Сначала брони с отложенным экземпляром, затем очередь
+    List<Hold> getBookHolds(long isbn);
+    //Снимает брони, срок которых (ожидания или получения) истек раньше currentDate
+    List<Hold> expireHolds(LocalDate currentDate);
+
     //Sprint 4
     List<ReaderDelay> getReadersDelayingBooks(LocalDate currentDate);
     List<ReaderDelay> getReadersDelayedBooks();
     List<Book>        getMostPopularBooks(LocalDate fromDate, LocalDate toDate, int fromAge, int toAge);
     List<String>      getMostPopularAuthors();
+    List<String>      getTopAuthors(int k);
     List<Reader>      getMostActiveReaders(LocalDate fromDate, LocalDate toDate);
 }
@@ -0,0 +1,446 @@
+package telran.library.entities.models;
+
+import telran.library.entities.*;
+import telran.library.entities.enums.BooksReturnCode;
+import telran.utils.Journal;
+import telran.utils.Persistable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * LibraryMaps с журналом операций: каждая изменяющая операция применяется
+ * и пишется в журнал (с групповой фиксацией) под одним замком, и вызов возвращается
+ * только после fsync своей записи. Операция, упавшая при применении, в журнал
+ * не попадает и не ломает последующие проигрывания.
+ * При старте загружается последний снимок и проигрывается журнал поверх него.
+ * Когда журнал вырастает больше порога, он сворачивается в новый снимок.
+ *
+ * Первая запись журнала - контрольная сумма снимка, к которому он относится;
+ * журнал от предыдущего снимка (сбой между записью снимка и очисткой журнала)
+ * не проигрывается повторно.
+ */
+public class JournaledLibrary implements ILibrary, Persistable, Closeable {
+
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 64L << 20;
+
+    private static final byte BASE_SNAPSHOT = 0;
+    private static final byte ADD_BOOK_ITEM = 1;
+    private static final byte ADD_READER = 2;
+    private static final byte ADD_BOOK_EXEMPLARS = 3;
+    private static final byte PICK_BOOK = 4;
+    private static final byte RETURN_BOOK = 5;
+    private static final byte REMOVE_BOOK = 6;
+    private static final byte REMOVE_AUTHOR = 7;
+    private static final byte PICK_BOOKS = 8;
+    private static final byte RETURN_BOOKS = 9;
+    private static final byte PLACE_HOLD = 10;
+    private static final byte CANCEL_HOLD = 11;
+    private static final byte EXPIRE_HOLDS = 12;
+    private static final byte ADD_BOOK_EXEMPLARS_DATED = 13;
+
+    private final String snapshotFile;
+    private final transient Journal journal;
+    private final long compactionThreshold;
+    private LibraryMaps library;
+
+    public JournaledLibrary(String snapshotFile, String journalFile) throws IOException {
+        this(snapshotFile, journalFile, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    public JournaledLibrary(String snapshotFile, String journalFile,
+                            long compactionThreshold) throws IOException {
+        this.snapshotFile = snapshotFile;
+        this.compactionThreshold = compactionThreshold;
+
+        long snapshotChecksum = 0;
+        if (Files.exists(Path.of(snapshotFile))) {
+            library = LibraryMaps.load(snapshotFile);
+            if (library == null)
+                throw new IOException("cannot restore library from " + snapshotFile);
+            snapshotChecksum = readSnapshotChecksum(snapshotFile);
+        } else {
+            library = new LibraryMaps();
+        }
+        boolean current = replay(journalFile, snapshotChecksum);
+
+        //Журнал от другого снимка (или пустой) начинается заново, иначе новые
+        // записи легли бы за чужой базой и потерялись при следующем старте
+        journal = new Journal(journalFile);
+        if (!current) {
+            journal.truncate();
+            journal.sync(journal.append(baseEntry(snapshotChecksum)));
+        }
+    }
+
+    public LibraryMaps getLibrary() {
+        return library;
+    }
+
+    //Sprint 1
+    @Override
+    public BooksReturnCode addBookItem(Book book) {
+        if (book == null)
+            return BooksReturnCode.NO_BOOK_ITEM;
+        return journaled(output -> {
+            output.writeByte(ADD_BOOK_ITEM);
+            LibraryMaps.writeBook(output, book);
+        }, () -> library.addBookItem(book));
+    }
+
+    @Override
+    public BooksReturnCode addReader(Reader reader) {
+        if (reader == null)
+            return BooksReturnCode.NO_READER;
+        return journaled(output -> {
+            output.writeByte(ADD_READER);
+            LibraryMaps.writeReader(output, reader);
+        }, () -> library.addReader(reader));
+    }
+
+    //Дата пишется в журнал: от нее считается срок получения отложенных по брони экземпляров
+    @Override
+    public BooksReturnCode addBookExemplars(long isbn, int amount, LocalDate date) {
+        return journaled(output -> {
+            output.writeByte(ADD_BOOK_EXEMPLARS_DATED);
+            output.writeLong(isbn);
+            output.writeInt(amount);
+            LibraryMaps.writeDate(output, date);
+        }, () -> library.addBookExemplars(isbn, amount, date));
+    }
+
+    @Override
+    public synchronized Reader getReader(int readerId) {
+        return library.getReader(readerId);
+    }
+
+    @Override
+    public synchronized Book getBookItem(long isbn) {
+        return library.getBookItem(isbn);
+    }
+
+    //Sprint 2
+    @Override
+    public BooksReturnCode pickBook(long isbn, int readerId, LocalDate pickDate) {
+        return journaled(output -> {
+            output.writeByte(PICK_BOOK);
+            output.writeLong(isbn);
+            output.writeInt(readerId);
+            LibraryMaps.writeDate(output, pickDate);
+        }, () -> library.pickBook(isbn, readerId, pickDate));
+    }
+
+    //Сеанс киоска - одна запись журнала и один fsync
+    @Override
+    public BatchResult pickBooks(int readerId, List<Long> isbns, LocalDate pickDate) {
+        return journaled(output -> {
+            output.writeByte(PICK_BOOKS);
+            output.writeInt(readerId);
+            writeIsbns(output, isbns);
+            LibraryMaps.writeDate(output, pickDate);
+        }, () -> library.pickBooks(readerId, isbns, pickDate));
+    }
+
+    @Override
+    public synchronized List<Book> getBooksPickedByReader(int readerId) {
+        return library.getBooksPickedByReader(readerId);
+    }
+
+    @Override
+    public synchronized List<PickRecord> getReaderOpenLoans(int readerId) {
+        return library.getReaderOpenLoans(readerId);
+    }
+
+    @Override
+    public synchronized List<Reader> getReadersPickedBook(long isbn) {
+        return library.getReadersPickedBook(isbn);
+    }
+
+    @Override
+    public synchronized List<Book> getBooksAuthor(String authorName) {
+        return library.getBooksAuthor(authorName);
+    }
+
+    @Override
+    public synchronized List<Book> getAvailableBooks() {
+        return library.getAvailableBooks();
+    }
+
+    @Override
+    public synchronized List<Book> findBooksByToken(String query) {
+        return library.findBooksByToken(query);
+    }
+
+    @Override
+    public synchronized List<Book> findBooksByPrefix(String query, int limit) {
+        return library.findBooksByPrefix(query, limit);
+    }
+
+    @Override
+    public synchronized List<PickRecord> getPickedRecordsAtDates(LocalDate from, LocalDate to) {
+        return library.getPickedRecordsAtDates(from, to);
+    }
+
+    //Поток строится по копии, чтобы не читать индексы вне замка
+    @Override
+    public synchronized Stream<PickRecord> streamPickedRecordsAtDates(LocalDate from, LocalDate to) {
+        return library.getPickedRecordsAtDates(from, to).stream();
+    }
+
+    @Override
+    public synchronized void forEachPickedRecord(LocalDate from, LocalDate to, Consumer<PickRecord> action) {
+        library.forEachPickedRecord(from, to, action);
+    }
+
+    //Sprint 3
+    @Override
+    public RemovedBookData removeBook(long isbn) {
+        return journaled(output -> {
+            output.writeByte(REMOVE_BOOK);
+            output.writeLong(isbn);
+        }, () -> library.removeBook(isbn));
+    }
+
+    @Override
+    public List<RemovedBookData> removeAuthor(String author) {
+        return journaled(output -> {
+            output.writeByte(REMOVE_AUTHOR);
+            LibraryMaps.writeString(output, author);
+        }, () -> library.removeAuthor(author));
+    }
+
+    @Override
+    public RemovedBookData returnBook(long isbn, int readerId, LocalDate returnDate) {
+        return journaled(output -> {
+            output.writeByte(RETURN_BOOK);
+            output.writeLong(isbn);
+            output.writeInt(readerId);
+            LibraryMaps.writeDate(output, returnDate);
+        }, () -> library.returnBook(isbn, readerId, returnDate));
+    }
+
+    @Override
+    public List<RemovedBookData> returnBooks(int readerId, List<Long> isbns, LocalDate returnDate) {
+        return journaled(output -> {
+            output.writeByte(RETURN_BOOKS);
+            output.writeInt(readerId);
+            writeIsbns(output, isbns);
+            LibraryMaps.writeDate(output, returnDate);
+        }, () -> library.returnBooks(readerId, isbns, returnDate));
+    }
+
+    //Брони
+    @Override
+    public BooksReturnCode placeHold(long isbn, int readerId, LocalDate holdDate, int priority) {
+        return journaled(output -> {
+            output.writeByte(PLACE_HOLD);
+            output.writeLong(isbn);
+            output.writeInt(readerId);
+            LibraryMaps.writeDate(output, holdDate);
+            output.writeInt(priority);
+        }, () -> library.placeHold(isbn, readerId, holdDate, priority));
+    }
+
+    @Override
+    public BooksReturnCode cancelHold(long isbn, int readerId, LocalDate cancelDate) {
+        return journaled(output -> {
+            output.writeByte(CANCEL_HOLD);
+            output.writeLong(isbn);
+            output.writeInt(readerId);
+            LibraryMaps.writeDate(output, cancelDate);
+        }, () -> library.cancelHold(isbn, readerId, cancelDate));
+    }
+
+    @Override
+    public synchronized List<Hold> getReaderHolds(int readerId) {
+        return library.getReaderHolds(readerId);
+    }
+
+    @Override
+    public synchronized List<Hold> getBookHolds(long isbn) {
+        return library.getBookHolds(isbn);
+    }
+
+    //Истечение меняет очереди и экземпляры, поэтому тоже пишется в журнал
+    @Override
+    public List<Hold> expireHolds(LocalDate currentDate) {
+        return journaled(output -> {
+            output.writeByte(EXPIRE_HOLDS);
+            LibraryMaps.writeDate(output, currentDate);
+        }, () -> library.expireHolds(currentDate));
+    }
+
+    //Sprint 4
+    @Override
+    public synchronized List<ReaderDelay> getReadersDelayingBooks(LocalDate currentDate) {
+        return library.getReadersDelayingBooks(currentDate);
+    }
+
+    @Override
+    public synchronized List<ReaderDelay> getReadersDelayedBooks() {
+        return library.getReadersDelayedBooks();
+    }
+
+    @Override
+    public synchronized List<Book> getMostPopularBooks(LocalDate fromDate, LocalDate toDate,
+                                                       int fromAge, int toAge) {
+        return library.getMostPopularBooks(fromDate, toDate, fromAge, toAge);
+    }
+
+    @Override
+    public synchronized List<String> getMostPopularAuthors() {
+        return library.getMostPopularAuthors();
+    }
+
+    @Override
+    public synchronized List<String> getTopAuthors(int k) {
+        return library.getTopAuthors(k);
+    }
+
+    @Override
+    public synchronized List<Reader> getMostActiveReaders(LocalDate fromDate, LocalDate toDate) {
+        return library.getMostActiveReaders(fromDate, toDate);
+    }
+
+    //Библиотека занята, пока копируются книги, читатели и открытые выдачи;
+    // строки истории снимок копирует при первом отчете, уже без замка
+    public synchronized LibrarySnapshot snapshot() {
+        return library.snapshot();
+    }
+
+    @Override
+    public synchronized void save(String fileName) {
+        library.save(fileName);
+    }
+
+    //Записывает новый снимок и очищает журнал
+    public synchronized void compact() throws IOException {
+        Path snapshot = Path.of(snapshotFile);
+        Path tmp = Path.of(snapshotFile + ".tmp");
+        library.writeSnapshot(tmp.toString());
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        journal.truncate();
+        journal.sync(journal.append(baseEntry(readSnapshotChecksum(snapshotFile))));
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    //Запись в журнал и применение идут под одним замком, чтобы порядок в журнале
+    // совпадал с порядком применения; ожидание fsync - вне замка.
+    // Запись собирается до замка, а добавляется после успешного применения:
+    // исключение из операции не оставляет в журнале записи, которую нельзя проиграть
+    private <T> T journaled(EntryWriter writer, Operation<T> operation) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writer.write(new DataOutputStream(bytes));
+            T res;
+            long seq;
+            synchronized (this) {
+                res = operation.apply();
+                seq = journal.append(bytes.toByteArray());
+                if (journal.size() >= compactionThreshold)
+                    compact();
+            }
+            journal.sync(seq);
+            return res;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface EntryWriter {
+        void write(DataOutput output) throws IOException;
+    }
+
+    private interface Operation<T> {
+        T apply();
+    }
+
+    private static void writeIsbns(DataOutput output, List<Long> isbns) throws IOException {
+        output.writeInt(isbns.size());
+        for (long isbn : isbns)
+            output.writeLong(isbn);
+    }
+
+    private static List<Long> readIsbns(DataInput input) throws IOException {
+        int size = input.readInt();
+        List<Long> isbns = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            isbns.add(input.readLong());
+        return isbns;
+    }
+
+    private static byte[] baseEntry(long snapshotChecksum) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(BASE_SNAPSHOT);
+        output.writeLong(snapshotChecksum);
+        return bytes.toByteArray();
+    }
+
+    //Контрольная сумма - последние 8 байт снимка
+    private static long readSnapshotChecksum(String fileName) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            file.seek(file.length() - Long.BYTES);
+            return file.readLong();
+        }
+    }
+
+    //true, если журнал относится к загруженному снимку
+    private boolean replay(String journalFile, long snapshotChecksum) throws IOException {
+        boolean[] matches = new boolean[1];
+        boolean[] first = {true};
+        Journal.replay(journalFile, entry -> {
+            byte operation = entry.readByte();
+            if (first[0]) {
+                first[0] = false;
+                matches[0] = operation == BASE_SNAPSHOT && entry.readLong() == snapshotChecksum;
+                return;
+            }
+            if (matches[0])
+                apply(operation, entry);
+        });
+        return matches[0];
+    }
+
+    private void apply(byte operation, DataInput entry) throws IOException {
+        switch (operation) {
+            case ADD_BOOK_ITEM -> library.addBookItem(LibraryMaps.readBook(entry));
+            case ADD_READER -> library.addReader(LibraryMaps.readReader(entry));
+            case ADD_BOOK_EXEMPLARS -> library.addBookExemplarsWithoutHolds(entry.readLong(), entry.readInt());
+            case ADD_BOOK_EXEMPLARS_DATED -> library.addBookExemplars(entry.readLong(), entry.readInt(),
+                    LibraryMaps.readDate(entry));
+            case PICK_BOOK -> library.pickBook(entry.readLong(), entry.readInt(), LibraryMaps.readDate(entry));
+            case RETURN_BOOK -> library.returnBook(entry.readLong(), entry.readInt(), LibraryMaps.readDate(entry));
+            case REMOVE_BOOK -> library.removeBook(entry.readLong());
+            case REMOVE_AUTHOR -> library.removeAuthor(LibraryMaps.readString(entry));
+            case PICK_BOOKS -> library.pickBooks(entry.readInt(), readIsbns(entry), LibraryMaps.readDate(entry));
+            case RETURN_BOOKS -> library.returnBooks(entry.readInt(), readIsbns(entry), LibraryMaps.readDate(entry));
+            case PLACE_HOLD -> library.placeHold(entry.readLong(), entry.readInt(), LibraryMaps.readDate(entry),
+                    entry.readInt());
+            case CANCEL_HOLD -> library.cancelHold(entry.readLong(), entry.readInt(), LibraryMaps.readDate(entry));
+            case EXPIRE_HOLDS -> library.expireHolds(LibraryMaps.readDate(entry));
+            default -> throw new IOException("unknown journal operation " + operation);
+        }
+    }
+}
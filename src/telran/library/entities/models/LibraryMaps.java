@@ -2,40 +2,206 @@ package telran.library.entities.models;
 
 import telran.library.entities.*;
 import telran.library.entities.enums.BooksReturnCode;
+import telran.utils.DayIndex;
+import telran.utils.IntList;
+import telran.utils.IntMap;
+import telran.utils.LongMap;
 import telran.utils.Persistable;
+import telran.utils.RankedCounter;
+import telran.utils.TokenIndex;
 
 import static telran.library.entities.enums.BooksReturnCode.*;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.function.Function;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
 public class LibraryMaps extends AbstractLibrary implements Persistable {
 
-    private Map<Long, Book> books = new HashMap<>();
-    private Map<Integer, Reader> readers = new HashMap<>();
-    private Map<Integer, List<PickRecord>> readersRecords = new HashMap<>();
-    private Map<Long, List<PickRecord>> booksRecords = new HashMap<>();
-    private NavigableMap<LocalDate, List<PickRecord>> records = new TreeMap<>();
+    //Бинарный снимок: заголовок, книги, читатели, записи о выдаче, CRC32
+    private static final int SNAPSHOT_MAGIC = 0x4C49424D; // "LIBM"
+    //Версия 2 - с бронями; снимки версии 1 читаются без них
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final int BUFFER_SIZE = 1 << 16;
+    //С какого размера пакета проверка книг идет параллельно
+    private static final int PARALLEL_BATCH = 1 << 14;
+    //Раньше этой даты выдач не бывает, от нее отсчитываются индексы по дням
+    static final LocalDate MIN_PICK_DATE = LocalDate.of(2000, 1, 1);
+    //Позже этой даты выдачи отклоняются до любых изменений: индексы по дням
+    // хранят смещение от MIN_PICK_DATE, а куски массива создаются до нужного дня
+    static final LocalDate MAX_PICK_DATE = LocalDate.of(2999, 12, 31);
+
+    //Записи о выдаче лежат в хранилище, индексы ниже содержат номера строк
+    private final PickRecordStore store;
+
+    //Индексы по isbn и readerId - без упаковки ключей
+    private LongMap<Book> books = new LongMap<>();
+    private IntMap<Reader> readers = new IntMap<>();
+    private IntMap<IntList> readersRecords = new IntMap<>();
+    private LongMap<IntList> booksRecords = new LongMap<>();
+    private DayIndex<IntList> records = new DayIndex<>(MIN_PICK_DATE);
     private Map<String, Set<Book>> authorBooks = new HashMap<>();
+    //Книги, у которых сейчас есть свободные экземпляры: по авторам и все вместе.
+    // Обновляются при выдаче, возврате, добавлении экземпляров и удалении книги
+    private Map<String, LongMap<Book>> availableByAuthor = new HashMap<>();
+    private LongMap<Book> availableBooks = new LongMap<>();
+    //Слова названий и авторов -> книги, для поиска по каталогу
+    private TokenIndex<Book> catalog = new TokenIndex<>(book -> new String[]{book.getTitle(), book.getAuthor()});
+    //Строки удаленных книг: в индексах по дате и читателю они пропускаются
+    // и вычищаются одним проходом, когда их наберется половина.
+    // Биты вычищенных строк остаются: по ним снимок отличает живые строки хранилища
+    private BitSet removedRows = new BitSet();
+    private int removedCount;
+    private int indexedRows;
+    //Невозвращенные выдачи: readerId -> (isbn -> строка)
+    private IntMap<LongMap<Integer>> openLoans = new IntMap<>();
+    //Невозвращенные выдачи по сроку возврата (pickDate + pickPeriod)
+    private NavigableMap<LocalDate, IntList> dueDates = new TreeMap<>();
+    //Срок возврата открытой выдачи по строке: pickPeriod книги может измениться,
+    // пока она на руках, а ключ в dueDates - нет
+    private IntMap<DueSlot> loanDueDates = new IntMap<>();
+    //Количество выдач по авторам и книгам, обновляются при выдаче и удалении книги
+    private RankedCounter<String> authorPicks = new RankedCounter<>();
+    private RankedCounter<Long> bookPicks = new RankedCounter<>();
+    //Дневные счетчики выдач по читателям и книгам для аналитики за период
+    private PickStatistics pickStatistics = new PickStatistics();
+    //Брони; экземпляр, отложенный по брони, считается в amountInUse книги
+    private HoldQueue holds = new HoldQueue();
+
+    //Срок открытой выдачи и место ее строки в списке dueDates этого срока:
+    // возврат убирает строку за O(1), переставляя на ее место последнюю
+    private static class DueSlot implements Serializable {
+        private final LocalDate dueDate;
+        private int index;
+
+        DueSlot(LocalDate dueDate, int index) {
+            this.dueDate = dueDate;
+            this.index = index;
+        }
+    }
+
+    public LibraryMaps() {
+        this(new HeapPickRecordStore());
+    }
+
+    //Например, MappedPickRecordStore для истории вне кучи
+    public LibraryMaps(PickRecordStore store) {
+        this.store = store;
+    }
+
+    public PickRecordStore getStore() {
+        return store;
+    }
+
+    //Срез для долгой аналитики. Здесь копируются таблицы книг и читателей, открытые выдачи
+    // и бит на строку истории удаленных книг; сами строки снимок копирует
+    // при первом запросе через вид хранилища, уже без замка вызывающего
+    public LibrarySnapshot snapshot() {
+        NavigableMap<LocalDate, int[]> dueReaders = new TreeMap<>();
+        BitSet openRows = new BitSet();
+        dueDates.forEach((dueDate, rows) -> {
+            rows.forEach(openRows::set);
+            dueReaders.put(dueDate, rows.stream().map(store::getReaderId).toArray());
+        });
+        return new LibrarySnapshot(store.view(), (BitSet) removedRows.clone(), openRows,
+                books.copy(), readers.copy(), dueReaders);
+    }
 
     @Override
     public BooksReturnCode addBookItem(Book book) {
-       if(book.getPickPeriod() < minPickPeriod)
-           return PICK_PERIOD_LESS_MIN;
-       if(book.getPickPeriod() > maxPicPeriod)
-           return PICK_PERIOD_GRATER_MAX;
+       BooksReturnCode res = validateBook(book);
+       if(res != OK) return res;
        if(books.putIfAbsent(book.getIsbn(), book) != null) return BOOK_ITEM_EXISTS;
-       addAuthorBooks(book);
+       indexBook(book);
        return OK;
     }
 
+    //Проверки, не зависящие от содержимого библиотеки
+    private BooksReturnCode validateBook(Book book) {
+        if(book == null)
+            return NO_BOOK_ITEM;
+        if(book.getPickPeriod() < minPickPeriod)
+            return PICK_PERIOD_LESS_MIN;
+        if(book.getPickPeriod() > maxPicPeriod)
+            return PICK_PERIOD_GRATER_MAX;
+        return OK;
+    }
+
+    //Проверка параллельно, вставка одним проходом в заранее расширенные индексы
+    @Override
+    public BatchResult addBookItems(Collection<Book> newBooks) {
+        Book[] items = newBooks.toArray(Book[]::new);
+        BatchResult res = new BatchResult(items.length);
+        IntStream indexes = IntStream.range(0, items.length);
+        (items.length >= PARALLEL_BATCH ? indexes.parallel() : indexes)
+                .forEach(i -> res.set(i, validateBook(items[i])));
+
+        books.ensureCapacity(books.size() + items.length);
+        for (int i = 0; i < items.length; i++) {
+            if(res.get(i) != OK)
+                continue;
+            if(books.putIfAbsent(items[i].getIsbn(), items[i]) != null)
+                res.set(i, BOOK_ITEM_EXISTS);
+            else
+                indexBook(items[i]);
+        }
+        return res;
+    }
+
+    @Override
+    public BatchResult addReaders(Collection<Reader> newReaders) {
+        BatchResult res = new BatchResult(newReaders.size());
+        readers.ensureCapacity(readers.size() + newReaders.size());
+        int i = 0;
+        for (Reader reader : newReaders)
+            res.set(i++, addReader(reader));
+        return res;
+    }
+
+    private void indexBook(Book book) {
+        addAuthorBooks(book);
+        catalog.add(book.getIsbn(), book);
+        updateAvailability(book);
+    }
+
+    //Книга доступна, если она не помечена на удаление и есть экземпляры,
+    // не выданные и не нужные очереди броней
+    private void updateAvailability(Book book) {
+        long isbn = book.getIsbn();
+        if (books.containsKey(isbn) && freeExemplars(book) > 0) {
+            if (availableBooks.put(isbn, book) == null)
+                availableByAuthor.computeIfAbsent(book.getAuthor(), k -> new LongMap<>()).put(isbn, book);
+            return;
+        }
+        if (availableBooks.remove(isbn) == null)
+            return;
+        LongMap<Book> byAuthor = availableByAuthor.get(book.getAuthor());
+        byAuthor.remove(isbn);
+        if (byAuthor.isEmpty())
+            availableByAuthor.remove(book.getAuthor());
+    }
+
     private void addAuthorBooks(Book book) {
 //        String key = book.getAuthor();
 //        List<Book> list = authorBooks.computeIfAbsent(key, k -> new ArrayList<>()).;
@@ -56,13 +222,25 @@ public class LibraryMaps extends AbstractLibrary implements Persistable {
     }
 
     @Override
-    public BooksReturnCode addBookExemplars(long isbn, int amount) {
+    public BooksReturnCode addBookExemplars(long isbn, int amount, LocalDate date) {
         if(!books.containsKey(isbn)) return NO_BOOK_ITEM;
+        if(date == null) return WRONG_BOOK_PICK_PERIOD;
         Book book = books.get(isbn);
-        book.setAmount(book.getAmount() + amount);
+        book.addAmount(amount);
+        while(holds.waitingCount(isbn) > 0 && book.reserveExemplar())
+            holds.promote(isbn, date);
+        updateAvailability(book);
         return OK;
     }
 
+    //Записи журнала без даты: тогда экземпляры добавлялись без раздачи по броням
+    void addBookExemplarsWithoutHolds(long isbn, int amount) {
+        Book book = books.get(isbn);
+        if(book == null) return;
+        book.addAmount(amount);
+        updateAvailability(book);
+    }
+
     @Override
     public Reader getReader(int readerId) {
         return readers.get(readerId);
@@ -78,53 +256,122 @@ public class LibraryMaps extends AbstractLibrary implements Persistable {
     public BooksReturnCode pickBook(long isbn, int readerId, LocalDate pickDate) {
 
         Book book = books.get(isbn);
+        BooksReturnCode res = checkBookToPick(book, readerId);
+        if(res != OK)
+            return res;
+
+        res = checkReaderToPick(readerId, pickDate);
+        if(res != OK)
+            return res;
+
+        return pickChecked(book, readerId, pickDate);
+    }
+
+    //Читатель и дата проверяются один раз на весь сеанс
+    @Override
+    public BatchResult pickBooks(int readerId, List<Long> isbns, LocalDate pickDate) {
+        BatchResult res = new BatchResult(isbns.size());
+        BooksReturnCode readerCode = checkReaderToPick(readerId, pickDate);
+        for (int i = 0; i < isbns.size(); i++) {
+            Book book = books.get(isbns.get(i));
+            BooksReturnCode code = checkBookToPick(book, readerId);
+            if(code == OK)
+                code = readerCode == OK ? pickChecked(book, readerId, pickDate) : readerCode;
+            res.set(i, code);
+        }
+        return res;
+    }
+
+    private BooksReturnCode checkBookToPick(Book book, int readerId) {
         if(book == null||book.getAmount() < 0)
             return NO_BOOK_ITEM;
 
-        if(book.getAmountInUse() >= book.getAmount())
+        //Свободные экземпляры сначала откладываются для очереди броней,
+        // ожидающий в очереди берет книгу только когда его бронь готова
+        Hold hold = holds.get(book.getIsbn(), readerId);
+        if(hold != null && hold.isReady())
+            return OK;
+        if(freeExemplars(book) <= 0)
             return NO_BOOKS_EXEMPLARS;
+        return OK;
+    }
+
+    private int freeExemplars(Book book) {
+        return book.getAmount() - book.getAmountInUse() - holds.waitingCount(book.getIsbn());
+    }
 
+    private BooksReturnCode checkReaderToPick(int readerId, LocalDate pickDate) {
         if (!readers.containsKey(readerId))
             return NO_READER;
 
-        if(pickDate == null || pickDate.isBefore(LocalDate.of(2000, 01, 01)))
+        if(pickDate == null || pickDate.isBefore(MIN_PICK_DATE) || pickDate.isAfter(MAX_PICK_DATE))
             return WRONG_BOOK_PICK_PERIOD;
+        return OK;
+    }
 
-        List<PickRecord> pickRecord = readersRecords.get(readerId);
-        if(pickRecord != null &&
-            pickRecord.stream()
-                    .anyMatch(r -> r.getIsbn() == isbn && r.getReturnDate() == null))
+    private BooksReturnCode pickChecked(Book book, int readerId, LocalDate pickDate) {
+        long isbn = book.getIsbn();
+        if(getPickRecord(isbn, readerId) != null)
             return READER_READS_IT;
 
-        PickRecord record = new PickRecord(isbn, readerId, pickDate);
-        addToMap(booksRecords, record.getIsbn(), record);
-        addToMap(readersRecords, record.getReaderId(), record);
-        addToMap(records, record.getPickDate(), record);
-
-        book.setAmountInUse(book.getAmountInUse() + 1);
+        //Отложенный по брони экземпляр уже учтен в amountInUse.
+        // Проверка наличия и увеличение amountInUse - один атомарный шаг
+        Hold hold = holds.get(isbn, readerId);
+        if((hold == null || !hold.isReady()) && !book.reserveExemplar())
+            return book.getAmount() < 0 ? NO_BOOK_ITEM : NO_BOOKS_EXEMPLARS;
+        if(hold != null)
+            holds.remove(isbn, readerId);
+
+        int row = store.add(isbn, readerId, (int) pickDate.toEpochDay());
+        indexRecord(row, book);
+        updateAvailability(book);
         return OK;
     }
 
-    private <K> void addToMap(Map<K, List<PickRecord>> map, K key, PickRecord value) {
-        map.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+    //Добавляет строку во все индексы (при выдаче и при загрузке снимка)
+    private void indexRecord(int row, Book book) {
+        long isbn = store.getIsbn(row);
+        int readerId = store.getReaderId(row);
+        LocalDate pickDate = LocalDate.ofEpochDay(store.getPickDay(row));
+        booksRecords.computeIfAbsent(isbn, k -> new IntList()).add(row);
+        readersRecords.computeIfAbsent(readerId, k -> new IntList()).add(row);
+        records.computeIfAbsent(pickDate, IntList::new).add(row);
+        indexedRows++;
+        if(store.getReturnDay(row) == PickRecordStore.NO_DATE) {
+            openLoans.computeIfAbsent(readerId, k -> new LongMap<>()).put(isbn, row);
+            LocalDate dueDate = pickDate.plusDays(book.getPickPeriod());
+            IntList due = dueDates.computeIfAbsent(dueDate, k -> new IntList());
+            loanDueDates.put(row, new DueSlot(dueDate, due.size()));
+            due.add(row);
+        }
+        authorPicks.add(book.getAuthor(), 1);
+        bookPicks.add(isbn, 1);
+        pickStatistics.add(isbn, readers.get(readerId), pickDate);
     }
 
     @Override
     public List<Book> getBooksPickedByReader(int readerId) {
-        List<PickRecord> listRecords = readersRecords.getOrDefault(readerId, new ArrayList<>());
+        IntList rows = readersRecords.getOrDefault(readerId, new IntList());
 
-        return listRecords.stream()
-                .map(r -> books.get(r.getIsbn()))
+        return liveRows(rows)
+                .mapToObj(row -> books.get(store.getIsbn(row)))
                 .distinct()
                 .toList();
     }
 
+    @Override
+    public List<PickRecord> getReaderOpenLoans(int readerId) {
+        return openLoans.getOrDefault(readerId, new LongMap<>()).values().stream()
+                .map(store::get)
+                .toList();
+    }
+
     @Override
     public List<Reader> getReadersPickedBook(long isbn) {
-        List<PickRecord> listRecords = booksRecords.getOrDefault(isbn, new ArrayList<>());
+        IntList rows = booksRecords.getOrDefault(isbn, new IntList());
 
-        return listRecords.stream()
-                .map(r -> readers.get(r.getReaderId()))
+        return rows.stream()
+                .mapToObj(row -> readers.get(store.getReaderId(row)))
                 .distinct()
                 .toList();
     }
@@ -134,18 +381,59 @@ public class LibraryMaps extends AbstractLibrary implements Persistable {
         if(authorName == null || authorName.isBlank())
             return new ArrayList<>();
 
-        return authorBooks.getOrDefault(authorName, new HashSet<>()).stream()
-                .filter(b -> b.getAmount()>b.getAmountInUse())
-                .toList();
+        LongMap<Book> available = availableByAuthor.get(authorName);
+        return available == null ? new ArrayList<>() : new ArrayList<>(available.values());
+    }
+
+    @Override
+    public List<Book> getAvailableBooks() {
+        return new ArrayList<>(availableBooks.values());
+    }
+
+    @Override
+    public List<Book> findBooksByToken(String query) {
+        return catalog.find(query);
+    }
+
+    @Override
+    public List<Book> findBooksByPrefix(String query, int limit) {
+        return catalog.findByPrefix(query, limit);
     }
 
     @Override
     public List<PickRecord> getPickedRecordsAtDates(LocalDate from, LocalDate to) {
-        if(to.isBefore(from)) return new ArrayList<>();
-        return records.subMap(from, to).values().stream()
-                .flatMap(List::stream)
-                .toList();
+        List<PickRecord> res = new ArrayList<>();
+        forEachPickedRecord(from, to, res::add);
+        return res;
+    }
+
+    //Ленивый поток прямо по индексу дней, без копирования
+    @Override
+    public Stream<PickRecord> streamPickedRecordsAtDates(LocalDate from, LocalDate to) {
+        if(to.isBefore(from)) return Stream.empty();
+        return records.stream(from, to)
+                .flatMap(rows -> liveRows(rows).mapToObj(store::get));
+    }
+
+    @Override
+    public void forEachPickedRecord(LocalDate from, LocalDate to, Consumer<PickRecord> action) {
+        if(to.isBefore(from)) return;
+        records.forEach(from, to, rows -> forEachLive(rows, row -> action.accept(store.get(row))));
+    }
+
+    private IntStream liveRows(IntList rows) {
+        return removedCount == 0 ? rows.stream() : rows.stream().filter(row -> !removedRows.get(row));
+    }
 
+    private void forEachLive(IntList rows, IntConsumer action) {
+        if (removedCount == 0) {
+            rows.forEach(action);
+            return;
+        }
+        rows.forEach(row -> {
+            if (!removedRows.get(row))
+                action.accept(row);
+        });
     }
 
     //Sprint 3
@@ -153,42 +441,60 @@ public class LibraryMaps extends AbstractLibrary implements Persistable {
     @Override
     public RemovedBookData removeBook(long isbn) {
         Book book = getBookItem(isbn);
-        if(book == null || book.getAmount() < 0)
+        if(book == null)
+            return null;
+        //Брони снимаются до пометки, отложенные экземпляры возвращаются на полку
+        if(book.getAmount() >= 0)
+            holds.removeBook(isbn).stream()
+                    .filter(Hold::isReady)
+                    .forEach(hold -> book.releaseExemplar());
+        int amountInUse = book.markForRemoval();
+        if(amountInUse < 0)
             return null;
-        book.setAmount(-1);
-        return book.getAmountInUse() > 0 ?
+        updateAvailability(book);
+        return amountInUse > 0 ?
                 new RemovedBookData(book, null) : actualBookRemove(book);
     }
 
     private RemovedBookData actualBookRemove(Book book) {
         long isbn = book.getIsbn();
-        List<PickRecord> removedRecords = booksRecords.get(isbn);
-
-        if (removedRecords != null && !removedRecords.isEmpty()) {
-            removeFromMap(records, removedRecords, PickRecord::getPickDate);
-            removeFromMap(readersRecords, removedRecords, PickRecord::getReaderId);
-        }
+        IntList bookRows = booksRecords.getOrDefault(isbn, new IntList());
+
+        //O(записей книги): строки только помечаются, без поиска в списках
+        bookRows.forEach(row -> {
+            removeOpenLoan(row);
+            pickStatistics.remove(isbn, readers.get(store.getReaderId(row)),
+                    LocalDate.ofEpochDay(store.getPickDay(row)));
+            removedRows.set(row);
+        });
+        removedCount += bookRows.size();
+        if (removedCount * 2 >= indexedRows)
+            purgeRemovedRows();
 
         books.remove(isbn);
         booksRecords.remove(isbn);
+        updateAvailability(book);
+
+        long picks = bookPicks.getCount(isbn);
+        bookPicks.add(isbn, -picks);
+        authorPicks.add(book.getAuthor(), -picks);
 
         Set<Book> booksByAuthor = authorBooks.get(book.getAuthor());
         if (booksByAuthor != null)
             booksByAuthor.remove(book);
+        catalog.remove(isbn, book);
 
-        return new RemovedBookData(book,
-                removedRecords == null ? new ArrayList<>() : removedRecords);
+        return new RemovedBookData(book, bookRows.stream()
+                .mapToObj(store::get)
+                .collect(Collectors.toCollection(ArrayList::new)));
     }
 
-    private <K> void removeFromMap(Map<K, List<PickRecord>> map
-            , List<PickRecord> removedRecords
-            , Function<PickRecord, K> getter) {
-        if(removedRecords == null)
-            return;
-        removedRecords.forEach( r -> {
-            List<PickRecord> list = map.get(getter.apply(r));
-            if(list != null) list.remove(r);
-        });
+    //Амортизированно O(1) на удаленную строку: проход идет, когда удаленных не меньше живых
+    private void purgeRemovedRows() {
+        records.forEach(rows -> rows.removeIf(removedRows::get));
+        readersRecords.values().forEach(rows -> rows.removeIf(removedRows::get));
+        indexedRows -= removedCount;
+        removedCount = 0;
     }
 
     @Override
@@ -204,93 +510,359 @@ public class LibraryMaps extends AbstractLibrary implements Persistable {
 
     @Override
     public RemovedBookData returnBook(long isbn, int readerId, LocalDate returnDate) {
-        PickRecord record = getPickRecord(isbn, readerId);
-        if(record == null || returnDate == null)
+        Integer row = getPickRecord(isbn, readerId);
+        if(row == null || returnDate == null)
             return new RemovedBookData(null, null);
 
         //Обновляем запись данными возврата (в том числе днями просрочки)
-        updateRecord(record, returnDate);
+        updateRecord(row, returnDate);
+        removeOpenLoan(row);
 
         //Обновляем информацию о книге
         Book returnedBook = getBookItem(isbn);
-        returnedBook.setAmountInUse(returnedBook.getAmountInUse() - 1);
+        return releaseExemplar(returnedBook, returnDate);
+    }
+
+    //Освободившийся экземпляр откладывается для первого в очереди броней,
+    // иначе возвращается на полку
+    private RemovedBookData releaseExemplar(Book book, LocalDate date) {
+        if(holds.promote(book.getIsbn(), date) != null)
+            return new RemovedBookData(book, null);
 
         //Если книга помечена на удаление и все экземпляры вернули,
         // то удаляем книгу
-        if(returnedBook.getAmount() < 0
-                && returnedBook.getAmountInUse() <= 0) {
-            return actualBookRemove(returnedBook);
+        if(book.releaseExemplar()) {
+            return actualBookRemove(book);
         }
+        updateAvailability(book);
+
+        return new RemovedBookData(book, null);
+    }
+
+    //Брони
+    @Override
+    public BooksReturnCode placeHold(long isbn, int readerId, LocalDate holdDate, int priority) {
+        Book book = books.get(isbn);
+        if(book == null || book.getAmount() < 0)
+            return NO_BOOK_ITEM;
+        BooksReturnCode res = checkReaderToPick(readerId, holdDate);
+        if(res != OK)
+            return res;
+        if(getPickRecord(isbn, readerId) != null)
+            return READER_READS_IT;
+        if(holds.get(isbn, readerId) != null)
+            return HOLD_EXISTS;
+        if(freeExemplars(book) > 0)
+            return BOOKS_EXEMPLARS_AVAILABLE;
+        holds.place(isbn, readerId, holdDate, priority);
+        return OK;
+    }
+
+    @Override
+    public BooksReturnCode cancelHold(long isbn, int readerId, LocalDate cancelDate) {
+        if(cancelDate == null)
+            return WRONG_BOOK_PICK_PERIOD;
+        Hold hold = holds.remove(isbn, readerId);
+        if(hold == null)
+            return NO_HOLD;
+        Book book = books.get(isbn);
+        if(hold.isReady())
+            releaseExemplar(book, cancelDate);
+        else
+            updateAvailability(book);
+        return OK;
+    }
+
+    @Override
+    public List<Hold> getReaderHolds(int readerId) {
+        return holds.getReaderHolds(readerId);
+    }
 
-        return new RemovedBookData(returnedBook, null);
+    @Override
+    public List<Hold> getBookHolds(long isbn) {
+        return holds.getBookHolds(isbn);
+    }
+
+    //Колесо сроков отдает только истекшие брони; экземпляры освобождаются,
+    // когда сняты все истекшие, чтобы они не достались истекшей брони
+    @Override
+    public List<Hold> expireHolds(LocalDate currentDate) {
+        if(currentDate == null)
+            return new ArrayList<>();
+        List<Hold> res = holds.expire(currentDate);
+        for (Hold hold : res) {
+            Book book = books.get(hold.getIsbn());
+            if(hold.isReady())
+                releaseExemplar(book, currentDate);
+            else
+                updateAvailability(book);
+        }
+        return res;
     }
 
 
-    private void updateRecord(PickRecord record, LocalDate returnDate) {
-        record.setReturnDate(returnDate);
-        int delay = getDaysDelay(record);
-        record.setDelayDays(delay);
+    private void updateRecord(int row, LocalDate returnDate) {
+        int returnDay = (int) returnDate.toEpochDay();
+        store.setReturn(row, returnDay, getDaysDelay(row, returnDay));
     }
 
-    private int getDaysDelay(PickRecord record) {
-        int pickDuration = (int) ChronoUnit.DAYS.
-                between(record.getPickDate(), record.getReturnDate());
-        int pickPeriod = books.get(record.getIsbn()).getPickPeriod();
-        return pickDuration > pickPeriod ? pickDuration - pickPeriod : 0;
+    //От срока, запомненного при выдаче, как и в getReadersDelayingBooks
+    private int getDaysDelay(int row, int returnDay) {
+        int dueDay = (int) loanDueDates.get(row).dueDate.toEpochDay();
+        return returnDay > dueDay ? returnDay - dueDay : 0;
     }
 
-    private PickRecord getPickRecord(long isbn, int readerId) {
-        List<PickRecord> list = readersRecords.get(readerId);
-        if (list == null) return null;
-        return list.stream().filter(r ->
-                r.getIsbn() == isbn && r.getReturnDate() == null)
-                .findFirst()
-                .orElse(null);
+    private Integer getPickRecord(long isbn, int readerId) {
+        LongMap<Integer> loans = openLoans.get(readerId);
+        return loans == null ? null : loans.get(isbn);
+    }
+
+    private void removeOpenLoan(int row) {
+        long isbn = store.getIsbn(row);
+        int readerId = store.getReaderId(row);
+        LongMap<Integer> loans = openLoans.get(readerId);
+        if (loans == null || !Objects.equals(loans.get(isbn), row))
+            return;
+        loans.remove(isbn);
+        if (loans.isEmpty())
+            openLoans.remove(readerId);
+
+        DueSlot slot = loanDueDates.remove(row);
+        IntList due = dueDates.get(slot.dueDate);
+        int last = due.removeLast();
+        if (last != row) {
+            due.set(slot.index, last);
+            loanDueDates.get(last).index = slot.index;
+        }
+        if (due.isEmpty())
+            dueDates.remove(slot.dueDate);
     }
 
+    //Сохраняются только книги, читатели и записи о выдаче,
+    // индексы восстанавливаются при загрузке
     @Override
     public void save(String fileName) {
-        try (ObjectOutputStream outputStream =
-                     new ObjectOutputStream(
-                             new FileOutputStream(fileName))) {
-            outputStream.writeObject(this);
+        try {
+            writeSnapshot(fileName);
         } catch (IOException e) {
             System.out.println("Error in method save " + e.getMessage());
         }
     }
 
+    void writeSnapshot(String fileName) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataOutputStream output = new DataOutputStream(
+                new CheckedOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(fileName), BUFFER_SIZE), crc))) {
+            output.writeInt(SNAPSHOT_MAGIC);
+            output.writeInt(SNAPSHOT_VERSION);
+            output.writeInt(minPickPeriod);
+            output.writeInt(maxPicPeriod);
+
+            output.writeInt(books.size());
+            for (Book book : books.values())
+                writeBook(output, book);
+
+            output.writeInt(readers.size());
+            for (Reader reader : readers.values())
+                writeReader(output, reader);
+
+            //Строки в порядке дат выдачи; удаленные из индексов строки хранилища не пишутся
+            IntList rows = new IntList();
+            records.forEach(day -> forEachLive(day, rows::add));
+            output.writeLong(rows.size());
+            for (int i = 0; i < rows.size(); i++)
+                writeRecord(output, rows.get(i));
+
+            List<Hold> allHolds = holds.all();
+            output.writeInt(allHolds.size());
+            for (Hold hold : allHolds)
+                writeHold(output, hold);
+
+            output.writeLong(crc.getValue());
+        }
+    }
+
+    public static LibraryMaps load(String fileName) {
+        return load(fileName, new HeapPickRecordStore());
+    }
+
+    public static LibraryMaps load(String fileName, PickRecordStore store) {
+        CRC32 crc = new CRC32();
+        try (DataInputStream input = new DataInputStream(
+                new CheckedInputStream(new BufferedInputStream(
+                        new FileInputStream(fileName), BUFFER_SIZE), crc))) {
+            if(input.readInt() != SNAPSHOT_MAGIC)
+                throw new IOException("not a library snapshot");
+            int version = input.readInt();
+            if(version < 1 || version > SNAPSHOT_VERSION)
+                throw new IOException("unsupported snapshot version " + version);
+
+            LibraryMaps library = new LibraryMaps(store);
+            library.setMinPickPeriod(input.readInt());
+            library.setMaxPicPeriod(input.readInt());
+
+            int booksCount = input.readInt();
+            library.books.ensureCapacity(booksCount);
+            for (int i = booksCount; i > 0; i--) {
+                Book book = readBook(input);
+                library.books.put(book.getIsbn(), book);
+                library.indexBook(book);
+            }
+
+            int readersCount = input.readInt();
+            library.readers.ensureCapacity(readersCount);
+            for (int i = readersCount; i > 0; i--) {
+                Reader reader = readReader(input);
+                library.readers.put(reader.getReaderId(), reader);
+            }
+
+            for (long i = input.readLong(); i > 0; i--) {
+                long isbn = input.readLong();
+                int readerId = input.readInt();
+                Book book = library.books.get(isbn);
+                if(book == null || !library.readers.containsKey(readerId))
+                    throw new IOException("pick record without book or reader");
+                int pickDay = readDay(input);
+                if(pickDay < MIN_PICK_DATE.toEpochDay())
+                    throw new IOException("pick record before " + MIN_PICK_DATE);
+                if(pickDay > MAX_PICK_DATE.toEpochDay())
+                    throw new IOException("pick record after " + MAX_PICK_DATE);
+                int row = store.add(isbn, readerId, pickDay);
+                store.setReturn(row, readDay(input), input.readInt());
+                library.indexRecord(row, book);
+            }
+
+            for (int i = version > 1 ? input.readInt() : 0; i > 0; i--) {
+                Hold hold = readHold(input);
+                if(!library.books.containsKey(hold.getIsbn()) || !library.readers.containsKey(hold.getReaderId()))
+                    throw new IOException("hold without book or reader");
+                library.holds.add(hold);
+            }
+            //Индекс доступных книг строился до броней - учитываем очереди
+            for (Hold hold : library.holds.all())
+                library.updateAvailability(library.books.get(hold.getIsbn()));
+
+            long checksum = crc.getValue();
+            if(input.readLong() != checksum)
+                throw new IOException("snapshot checksum mismatch");
+            return library;
+        } catch (IOException | DateTimeException | IllegalArgumentException e) {
+            System.out.println("Error in method load " + e.getMessage());
+            return null;
+        }
+    }
+
+    static void writeBook(DataOutput output, Book book) throws IOException {
+        output.writeLong(book.getIsbn());
+        writeString(output, book.getTitle());
+        writeString(output, book.getAuthor());
+        output.writeInt(book.getAmount());
+        output.writeInt(book.getAmountInUse());
+        output.writeInt(book.getPickPeriod());
+    }
+
+    static Book readBook(DataInput input) throws IOException {
+        long isbn = input.readLong();
+        String title = readString(input);
+        String author = readString(input);
+        int amount = input.readInt();
+        int amountInUse = input.readInt();
+        Book book = new Book(isbn, author, title, 0, input.readInt());
+        book.setAmount(amount);
+        book.setAmountInUse(amountInUse);
+        return book;
+    }
+
+    static void writeReader(DataOutput output, Reader reader) throws IOException {
+        output.writeInt(reader.getReaderId());
+        writeString(output, reader.getName());
+        writeString(output, reader.getPhone());
+        writeDate(output, reader.getBirthDay());
+    }
+
+    static Reader readReader(DataInput input) throws IOException {
+        return new Reader(input.readInt(), readString(input), readString(input), readDate(input));
+    }
+
+    private void writeRecord(DataOutput output, int row) throws IOException {
+        output.writeLong(store.getIsbn(row));
+        output.writeInt(store.getReaderId(row));
+        writeDay(output, store.getPickDay(row));
+        writeDay(output, store.getReturnDay(row));
+        output.writeInt(store.getDelayDays(row));
+    }
+
+    private static void writeHold(DataOutput output, Hold hold) throws IOException {
+        output.writeLong(hold.getIsbn());
+        output.writeInt(hold.getReaderId());
+        writeDate(output, hold.getHoldDate());
+        output.writeInt(hold.getPriority());
+        writeDate(output, hold.getReadyDate());
+        writeDate(output, hold.getExpireDate());
+    }
+
+    private static Hold readHold(DataInput input) throws IOException {
+        return new Hold(input.readLong(), input.readInt(), readDate(input), input.readInt(),
+                readDate(input), readDate(input));
+    }
+
+    //Дни хранятся в формате writeDate, чтобы формат снимка не менялся
+    private static void writeDay(DataOutput output, int epochDay) throws IOException {
+        output.writeLong(epochDay == PickRecordStore.NO_DATE ? NO_DATE : epochDay);
+    }
+
+    private static int readDay(DataInput input) throws IOException {
+        long epochDay = input.readLong();
+        return epochDay == NO_DATE ? PickRecordStore.NO_DATE : Math.toIntExact(epochDay);
+    }
+
+    static void writeString(DataOutput output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if(value != null)
+            output.writeUTF(value);
+    }
+
+    static String readString(DataInput input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    static void writeDate(DataOutput output, LocalDate date) throws IOException {
+        output.writeLong(date == null ? NO_DATE : date.toEpochDay());
+    }
+
+    static LocalDate readDate(DataInput input) throws IOException {
+        long epochDay = input.readLong();
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
     //Sprint 4
     @Override
     public List<ReaderDelay> getReadersDelayingBooks(LocalDate currentDate) {
         //Формирует перечень читателей, которые на данный момент задерживают книги
         // и считает количество дней задержки
+        // Просрочены только выдачи со сроком возврата раньше currentDate
         if(currentDate == null)
             return new ArrayList<>();
 
-        return records.values().stream()
-                .flatMap(Collection::stream)
-                .filter(r -> r.getReturnDate() == null)
-                .filter(r -> getDayDelayBeforeReturn(r, currentDate) > 0)
-                .map(r ->  new ReaderDelay(getReader(r.getReaderId()), getDayDelayBeforeReturn(r, currentDate)))
-                .toList();
-    }
-
-    int getDayDelayBeforeReturn(PickRecord record, LocalDate currentDate) {
-        int pickPeriod = books.get(record.getIsbn()).getPickPeriod();
-        long pickDuration = ChronoUnit.DAYS.between(record.getPickDate(), currentDate);
-        return (int) (pickDuration > pickPeriod ? pickDuration - pickPeriod : 0);
+        List<ReaderDelay> res = new ArrayList<>();
+        dueDates.headMap(currentDate, false).forEach((dueDate, rows) -> {
+            int delay = (int) ChronoUnit.DAYS.between(dueDate, currentDate);
+            rows.forEach(row -> res.add(new ReaderDelay(getReader(store.getReaderId(row)), delay)));
+        });
+        return res;
     }
 
     @Override
     public List<ReaderDelay> getReadersDelayedBooks() {
         //Формирует перечень читателей, которые когда-либо не возвращали книги
-        return records.values().stream()
-                .flatMap(lr -> lr.stream())
-                .filter(r -> r.getDelayDays() > 0)
-                .map(r -> new ReaderDelay
-                        (readers.get(r.getReaderId())
-                        , r.getDelayDays()))
-                .toList();
+        List<ReaderDelay> res = new ArrayList<>();
+        records.forEach(rows -> forEachLive(rows, row -> {
+            int delay = store.getDelayDays(row);
+            if(delay > 0)
+                res.add(new ReaderDelay(readers.get(store.getReaderId(row)), delay));
+        }));
+        return res;
     }
 
     @Override
@@ -303,36 +875,22 @@ public class LibraryMaps extends AbstractLibrary implements Persistable {
         if(fromDate.isAfter(toDate))
             return new ArrayList<>();
 
-        List<PickRecord> recordsFromTo = getPickedRecordsAtDates(fromDate, toDate);
-        if(recordsFromTo.isEmpty()) return new ArrayList<>();
-
-        Map<Book, Long> mapTemp = recordsFromTo.stream()
-                .filter(r -> isProperAge(r, fromAge, toAge))
-                .collect(Collectors.groupingBy(r -> getBookItem(r.getIsbn())
-                        , Collectors.counting()));
+        Map<Long, Long> mapTemp = pickStatistics.getBooksCounts(fromDate, toDate, fromAge, toAge);
 
         return mapTemp.isEmpty() ? new ArrayList<>()
-                : getListMaxValueFromMap(mapTemp);
+                : getListMaxValueFromMap(mapTemp).stream()
+                        .map(this::getBookItem)
+                        .toList();
     }
 
-    private boolean isProperAge(PickRecord r, int fromAge, int toAge) {
-        LocalDate pickDate = r.getPickDate();
-        Reader reader = getReader(r.getReaderId());
-        int readerAge = (int) ChronoUnit.YEARS.between(reader.getBirthDay()
-                , pickDate);
-        return readerAge >= fromAge && readerAge < toAge;
+    @Override
+    public List<String> getMostPopularAuthors() {
+        return authorPicks.getLeaders();
     }
 
     @Override
-    public List<String> getMostPopularAuthors() {
-        Map<String, Long> mapTemp = new HashMap<>();
-        booksRecords.entrySet()
-                .forEach(e -> mapTemp.merge(
-                        getBookItem(e.getKey()).getAuthor()
-                        , (long) e.getValue().size()
-                        , Long::sum));
-        return mapTemp.isEmpty() ? new ArrayList<>()
-                :getListMaxValueFromMap(mapTemp);
+    public List<String> getTopAuthors(int k) {
+        return k <= 0 ? new ArrayList<>() : authorPicks.getTop(k);
     }
 
     @Override
@@ -340,16 +898,25 @@ public class LibraryMaps extends AbstractLibrary implements Persistable {
         if( fromDate == null || toDate == null)
             return new ArrayList<>();
 
-        List<PickRecord> recordsFromTo = getPickedRecordsAtDates(fromDate, toDate);
-        if(recordsFromTo.isEmpty()) return new ArrayList<>();
-
-        Map<Reader, Long> mapTemp = recordsFromTo.stream()
-                .collect(Collectors.groupingBy(r
-                        -> getReader(r.getReaderId())
-                        , Collectors.counting()));
+        Map<Integer, Long> mapTemp = pickStatistics.getReadersCounts(fromDate, toDate);
 
         return mapTemp.isEmpty() ? new ArrayList<>()
-                :getListMaxValueFromMap(mapTemp);
+                :getListMaxValueFromMap(mapTemp).stream()
+                        .map(this::getReader)
+                        .toList();
+    }
+
+    //Частичные итоги для ShardedLibrary: полные счетчики, а не только лидеры
+    Map<String, Long> getAuthorsPicks() {
+        return authorPicks.getCounts();
+    }
+
+    Map<Long, Long> getBooksPicks(LocalDate fromDate, LocalDate toDate, int fromAge, int toAge) {
+        return pickStatistics.getBooksCounts(fromDate, toDate, fromAge, toAge);
+    }
+
+    Map<Integer, Long> getReadersPicks(LocalDate fromDate, LocalDate toDate) {
+        return pickStatistics.getReadersCounts(fromDate, toDate);
     }
 
     private <K> List<K> getListMaxValueFromMap(Map<K, Long> mapTemp) {
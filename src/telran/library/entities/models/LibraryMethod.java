@@ -0,0 +1,45 @@
+package telran.library.entities.models;
+
+//Операции ILibrary, по которым MeteredLibrary ведет метрики
+public enum LibraryMethod {
+    //Sprint 1
+    ADD_BOOK_ITEM,
+    ADD_BOOK_ITEMS,
+    ADD_READER,
+    ADD_READERS,
+    ADD_BOOK_EXEMPLARS,
+    ADD_BOOK_EXEMPLARS_BATCH,
+    GET_READER,
+    GET_BOOK_ITEM,
+    //Sprint 2
+    PICK_BOOK,
+    PICK_BOOKS,
+    GET_BOOKS_PICKED_BY_READER,
+    GET_READER_OPEN_LOANS,
+    GET_READERS_PICKED_BOOK,
+    GET_BOOKS_AUTHOR,
+    GET_AVAILABLE_BOOKS,
+    FIND_BOOKS_BY_TOKEN,
+    FIND_BOOKS_BY_PREFIX,
+    GET_PICKED_RECORDS_AT_DATES,
+    STREAM_PICKED_RECORDS_AT_DATES,
+    FOR_EACH_PICKED_RECORD,
+    //Sprint 3
+    REMOVE_BOOK,
+    REMOVE_AUTHOR,
+    RETURN_BOOK,
+    RETURN_BOOKS,
+    //Брони
+    PLACE_HOLD,
+    CANCEL_HOLD,
+    GET_READER_HOLDS,
+    GET_BOOK_HOLDS,
+    EXPIRE_HOLDS,
+    //Sprint 4
+    GET_READERS_DELAYING_BOOKS,
+    GET_READERS_DELAYED_BOOKS,
+    GET_MOST_POPULAR_BOOKS,
+    GET_MOST_POPULAR_AUTHORS,
+    GET_TOP_AUTHORS,
+    GET_MOST_ACTIVE_READERS
+}
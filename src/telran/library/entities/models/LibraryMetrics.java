@@ -0,0 +1,70 @@
+package telran.library.entities.models;
+
+import telran.library.entities.BatchResult;
+import telran.library.entities.enums.BooksReturnCode;
+import telran.utils.LatencyHistogram;
+
+/**
+ * Метрики операций ILibrary: число вызовов, распределение кодов результата
+ * и гистограмма задержек по каждому методу.
+ * Снимок, который возвращает MeteredLibrary.snapshot(), больше не меняется.
+ */
+public class LibraryMetrics {
+
+    private static final LibraryMethod[] METHODS = LibraryMethod.values();
+    private static final BooksReturnCode[] CODES = BooksReturnCode.values();
+
+    //Гистограмма создается при первом вызове метода
+    private final LatencyHistogram[] latencies = new LatencyHistogram[METHODS.length];
+    private final long[][] codes = new long[METHODS.length][CODES.length];
+
+    LibraryMetrics() {
+    }
+
+    void record(LibraryMethod method, long nanos, Object result) {
+        int index = method.ordinal();
+        LatencyHistogram latency = latencies[index];
+        if (latency == null)
+            latency = latencies[index] = new LatencyHistogram();
+        latency.record(nanos);
+        if (result instanceof BooksReturnCode code) {
+            codes[index][code.ordinal()]++;
+        } else if (result instanceof BatchResult batch) {
+            for (int i = 0; i < batch.size(); i++)
+                codes[index][batch.get(i).ordinal()]++;
+        }
+    }
+
+    void add(LibraryMetrics other) {
+        for (int i = 0; i < METHODS.length; i++) {
+            if (other.latencies[i] != null) {
+                if (latencies[i] == null)
+                    latencies[i] = new LatencyHistogram();
+                latencies[i].add(other.latencies[i]);
+            }
+            for (int j = 0; j < CODES.length; j++)
+                codes[i][j] += other.codes[i][j];
+        }
+    }
+
+    LibraryMetrics copy() {
+        LibraryMetrics res = new LibraryMetrics();
+        res.add(this);
+        return res;
+    }
+
+    public long getCalls(LibraryMethod method) {
+        LatencyHistogram latency = latencies[method.ordinal()];
+        return latency == null ? 0 : latency.getCount();
+    }
+
+    public long getCodeCount(LibraryMethod method, BooksReturnCode code) {
+        return codes[method.ordinal()][code.ordinal()];
+    }
+
+    //Копия гистограммы задержек метода, в наносекундах
+    public LatencyHistogram getLatency(LibraryMethod method) {
+        LatencyHistogram latency = latencies[method.ordinal()];
+        return latency == null ? new LatencyHistogram() : latency.copy();
+    }
+}
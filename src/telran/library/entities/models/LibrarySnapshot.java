@@ -0,0 +1,356 @@
+package telran.library.entities.models;
+
+import telran.library.entities.*;
+import telran.utils.IntList;
+import telran.utils.IntMap;
+import telran.utils.LongMap;
+import telran.utils.RankedCounter;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Неизменяемый срез LibraryMaps на момент вызова LibraryMaps.snapshot().
+ * Под замком библиотеки снимок получает вид хранилища выдач (без копирования строк),
+ * битовые карты удаленных и открытых строк, невозвращенные выдачи
+ * и поверхностные копии таблиц книг и читателей: O(книг + читателей + открытых выдач)
+ * и бит на строку истории. Объекты Book общие, их amountInUse продолжает меняться,
+ * но аналитика его не читает.
+ * Живые записи о выдаче копируются по столбцам в порядке дат выдачи при первом запросе,
+ * в потоке аналитики и без блокировок: O(живых записей), а если даты в хранилище
+ * идут не по порядку, еще сортировка. Дальше период - это отрезок строк,
+ * найденный двоичным поиском. Снимок читается из любого потока,
+ * пока библиотека продолжает выдачи и возвраты.
+ *
+ * parallel(pool) дает тот же снимок, который считает отчеты Sprint 4 в пуле:
+ * отрезок строк (то есть период дат) делится пополам на части не меньше SLICE_ROWS строк,
+ * каждая часть считает свой частичный итог, итоги сливаются слева направо.
+ * Поэтому результат совпадает с последовательным, включая порядок элементов.
+ */
+public class LibrarySnapshot {
+
+    //Меньше этого части не делятся: накладные расходы задачи больше выигрыша
+    static final int SLICE_ROWS = 1 << 14;
+    //Частей на поток: хватает для балансировки, а слияний частичных итогов немного
+    private static final int SLICES_PER_THREAD = 4;
+
+    //Общие для parallel() и sequential() копии этого снимка
+    private final Rows rows;
+    private final LongMap<Book> books;
+    private final IntMap<Reader> readers;
+    //Невозвращенные на момент снимка книги по возрастанию срока возврата
+    private final int[] dueDays;
+    private final int[] dueReaderIds;
+    //null - запросы выполняются в вызывающем потоке
+    private final ForkJoinPool pool;
+    //Выдачи по авторам считаются при первом запросе
+    private RankedCounter<String> authorPicks;
+
+    //view - вид хранилища; removedRows - строки удаленных книг, openRows - невозвращенные
+    LibrarySnapshot(PickRecordStore view, BitSet removedRows, BitSet openRows, LongMap<Book> books,
+                    IntMap<Reader> readers, NavigableMap<LocalDate, int[]> dueReaders) {
+        rows = new Rows(view, removedRows, openRows);
+        this.books = books;
+        this.readers = readers;
+        int loans = dueReaders.values().stream().mapToInt(ids -> ids.length).sum();
+        dueDays = new int[loans];
+        dueReaderIds = new int[loans];
+        int[] index = {0};
+        dueReaders.forEach((dueDate, readerIds) -> {
+            for (int readerId : readerIds) {
+                dueDays[index[0]] = (int) dueDate.toEpochDay();
+                dueReaderIds[index[0]++] = readerId;
+            }
+        });
+        pool = null;
+    }
+
+    private LibrarySnapshot(LibrarySnapshot snapshot, ForkJoinPool pool) {
+        rows = snapshot.rows;
+        books = snapshot.books;
+        readers = snapshot.readers;
+        dueDays = snapshot.dueDays;
+        dueReaderIds = snapshot.dueReaderIds;
+        this.pool = pool;
+    }
+
+    //Те же данные, аналитика считается задачами в pool; число потоков задает пул
+    public LibrarySnapshot parallel(ForkJoinPool pool) {
+        return new LibrarySnapshot(this, Objects.requireNonNull(pool));
+    }
+
+    //Без копирования данных
+    public LibrarySnapshot sequential() {
+        return pool == null ? this : new LibrarySnapshot(this, null);
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    //Количество записей о выдаче в снимке
+    public int size() {
+        return rows.get().size();
+    }
+
+    public Reader getReader(int readerId) {
+        return readers.get(readerId);
+    }
+
+    public Book getBookItem(long isbn) {
+        return books.get(isbn);
+    }
+
+    public List<PickRecord> getPickedRecordsAtDates(LocalDate from, LocalDate to) {
+        List<PickRecord> res = new ArrayList<>();
+        forEachPickedRecord(from, to, res::add);
+        return res;
+    }
+
+    public Stream<PickRecord> streamPickedRecordsAtDates(LocalDate from, LocalDate to) {
+        HeapPickRecordStore rows = this.rows.get();
+        return rowsAtDates(from, to).mapToObj(rows::get);
+    }
+
+    public void forEachPickedRecord(LocalDate from, LocalDate to, Consumer<PickRecord> action) {
+        HeapPickRecordStore rows = this.rows.get();
+        rowsAtDates(from, to).forEach(row -> action.accept(rows.get(row)));
+    }
+
+    //Строки с датой выдачи в [from, to)
+    private IntStream rowsAtDates(LocalDate from, LocalDate to) {
+        if(to.isBefore(from))
+            return IntStream.empty();
+        return IntStream.range(firstRowAt(from), firstRowAt(to));
+    }
+
+    private int firstRowAt(LocalDate day) {
+        HeapPickRecordStore rows = this.rows.get();
+        return lowerBound(rows::getPickDay, rows.size(), day.toEpochDay());
+    }
+
+    //Первый индекс в [0, size), где день не раньше epochDay (дни не убывают)
+    private static int lowerBound(IntUnaryOperator days, int size, long epochDay) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (days.applyAsInt(middle) < epochDay)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    //Частичные итоги по отрезкам [from, to); combine получает левый и правый итог по порядку
+    private <R> R aggregate(int from, int to, Supplier<R> identity,
+                            ObjIntConsumer<R> accumulator, BinaryOperator<R> combiner) {
+        if (pool == null || to - from <= SLICE_ROWS)
+            return new SliceTask<>(from, to, SLICE_ROWS, identity, accumulator, combiner).sequential();
+        int slice = Math.max(SLICE_ROWS, (to - from) / (pool.getParallelism() * SLICES_PER_THREAD));
+        return pool.invoke(new SliceTask<>(from, to, slice, identity, accumulator, combiner));
+    }
+
+    //Живые строки вида хранилища, скопированные в порядке дат выдачи при первом запросе
+    private static class Rows {
+        private PickRecordStore view;
+        private BitSet removedRows;
+        private BitSet openRows;
+        private HeapPickRecordStore copy;
+
+        Rows(PickRecordStore view, BitSet removedRows, BitSet openRows) {
+            this.view = view;
+            this.removedRows = removedRows;
+            this.openRows = openRows;
+        }
+
+        synchronized HeapPickRecordStore get() {
+            if (copy == null) {
+                copy = copyByPickDay();
+                view = null;
+                removedRows = null;
+                openRows = null;
+            }
+            return copy;
+        }
+
+        //Порядок тот же, что в индексе по дням: по дате выдачи, в пределах дня - по строке
+        private HeapPickRecordStore copyByPickDay() {
+            IntList live = new IntList(view.size() - removedRows.cardinality());
+            boolean sorted = true;
+            int lastDay = Integer.MIN_VALUE;
+            for (int row = removedRows.nextClearBit(0); row < view.size();
+                 row = removedRows.nextClearBit(row + 1)) {
+                int day = view.getPickDay(row);
+                sorted &= day >= lastDay;
+                lastDay = day;
+                live.add(row);
+            }
+            int[] order = live.stream().toArray();
+            if (!sorted) {
+                //Выдачи задним числом: день в старших разрядах ключа, строка в младших
+                long[] keys = new long[order.length];
+                for (int i = 0; i < order.length; i++)
+                    keys[i] = (long) view.getPickDay(order[i]) << Integer.SIZE | order[i];
+                Arrays.sort(keys);
+                for (int i = 0; i < order.length; i++)
+                    order[i] = (int) keys[i];
+            }
+            HeapPickRecordStore res = new HeapPickRecordStore(order.length);
+            for (int row : order) {
+                int copy = res.add(view.getIsbn(row), view.getReaderId(row), view.getPickDay(row));
+                //Открытые на момент снимка строки могли вернуть позже - их дату не читаем
+                if (!openRows.get(row))
+                    res.setReturn(copy, view.getReturnDay(row), view.getDelayDays(row));
+            }
+            return res;
+        }
+    }
+
+    private static class SliceTask<R> extends RecursiveTask<R> {
+        private final int from;
+        private final int to;
+        private final int slice;
+        private final Supplier<R> identity;
+        private final ObjIntConsumer<R> accumulator;
+        private final BinaryOperator<R> combiner;
+
+        SliceTask(int from, int to, int slice, Supplier<R> identity,
+                  ObjIntConsumer<R> accumulator, BinaryOperator<R> combiner) {
+            this.from = from;
+            this.to = to;
+            this.slice = slice;
+            this.identity = identity;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        R sequential() {
+            R res = identity.get();
+            for (int i = from; i < to; i++)
+                accumulator.accept(res, i);
+            return res;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= slice)
+                return sequential();
+            int middle = (from + to) >>> 1;
+            SliceTask<R> left = new SliceTask<>(from, middle, slice, identity, accumulator, combiner);
+            left.fork();
+            R right = new SliceTask<>(middle, to, slice, identity, accumulator, combiner).compute();
+            return combiner.apply(left.join(), right);
+        }
+    }
+
+    private static <T> List<T> concat(List<T> left, List<T> right) {
+        left.addAll(right);
+        return left;
+    }
+
+    private static <K> Map<K, Long> sum(Map<K, Long> left, Map<K, Long> right) {
+        if (left.size() < right.size())
+            return sum(right, left);
+        right.forEach((k, v) -> left.merge(k, v, Long::sum));
+        return left;
+    }
+
+    //Sprint 4
+    public List<ReaderDelay> getReadersDelayingBooks(LocalDate currentDate) {
+        if(currentDate == null)
+            return new ArrayList<>();
+
+        //Просрочены выдачи со сроком возврата раньше currentDate
+        long currentDay = currentDate.toEpochDay();
+        int overdue = lowerBound(i -> dueDays[i], dueDays.length, currentDay);
+        return this.<List<ReaderDelay>>aggregate(0, overdue, ArrayList::new,
+                (res, i) -> res.add(new ReaderDelay(readers.get(dueReaderIds[i]),
+                        (int) (currentDay - dueDays[i]))),
+                LibrarySnapshot::concat);
+    }
+
+    public List<ReaderDelay> getReadersDelayedBooks() {
+        HeapPickRecordStore rows = this.rows.get();
+        return this.<List<ReaderDelay>>aggregate(0, rows.size(), ArrayList::new, (res, row) -> {
+            int delay = rows.getDelayDays(row);
+            if(delay > 0)
+                res.add(new ReaderDelay(readers.get(rows.getReaderId(row)), delay));
+        }, LibrarySnapshot::concat);
+    }
+
+    public List<Book> getMostPopularBooks(LocalDate fromDate, LocalDate toDate, int fromAge, int toAge) {
+        if(fromDate == null || toDate == null || fromDate.isAfter(toDate) || fromAge >= toAge)
+            return new ArrayList<>();
+
+        HeapPickRecordStore rows = this.rows.get();
+        Map<Long, Long> mapTemp = this.<Map<Long, Long>>aggregate(firstRowAt(fromDate), firstRowAt(toDate), HashMap::new,
+                (res, row) -> {
+                    int age = PickStatistics.getAge(readers.get(rows.getReaderId(row)),
+                            LocalDate.ofEpochDay(rows.getPickDay(row)));
+                    if(age >= fromAge && age < toAge)
+                        res.merge(rows.getIsbn(row), 1L, Long::sum);
+                }, LibrarySnapshot::sum);
+
+        return mapTemp.isEmpty() ? new ArrayList<>()
+                : getListMaxValueFromMap(mapTemp).stream()
+                        .map(books::get)
+                        .toList();
+    }
+
+    public List<String> getMostPopularAuthors() {
+        return getAuthorPicks().getLeaders();
+    }
+
+    public List<String> getTopAuthors(int k) {
+        return k <= 0 ? new ArrayList<>() : getAuthorPicks().getTop(k);
+    }
+
+    private synchronized RankedCounter<String> getAuthorPicks() {
+        if (authorPicks == null) {
+            HeapPickRecordStore rows = this.rows.get();
+            Map<Long, Long> bookPicks = new HashMap<>();
+            for (int row = 0; row < rows.size(); row++)
+                bookPicks.merge(rows.getIsbn(row), 1L, Long::sum);
+            authorPicks = new RankedCounter<>();
+            bookPicks.forEach((isbn, picks) -> authorPicks.add(books.get(isbn).getAuthor(), picks));
+        }
+        return authorPicks;
+    }
+
+    public List<Reader> getMostActiveReaders(LocalDate fromDate, LocalDate toDate) {
+        if(fromDate == null || toDate == null || toDate.isBefore(fromDate))
+            return new ArrayList<>();
+
+        HeapPickRecordStore rows = this.rows.get();
+        Map<Integer, Long> mapTemp = this.<Map<Integer, Long>>aggregate(firstRowAt(fromDate), firstRowAt(toDate), HashMap::new,
+                (res, row) -> res.merge(rows.getReaderId(row), 1L, Long::sum),
+                LibrarySnapshot::sum);
+
+        return mapTemp.isEmpty() ? new ArrayList<>()
+                : getListMaxValueFromMap(mapTemp).stream()
+                        .map(readers::get)
+                        .toList();
+    }
+
+    //По возрастанию ключа: порядок не зависит от того, как сливались частичные итоги
+    private <K extends Comparable<K>> List<K> getListMaxValueFromMap(Map<K, Long> mapTemp) {
+        long maxValue = Collections.max(mapTemp.values());
+        List<K> res = new ArrayList<>();
+        mapTemp.forEach((k, v) -> {
+            if(v == maxValue) res.add(k);
+        });
+        Collections.sort(res);
+        return res;
+    }
+}
@@ -0,0 +1,145 @@
+package telran.library.entities.models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * История выдач в файле, отображенном в память, вне кучи.
+ * Строка - 24 байта: isbn (8), readerId (4), pickDay (4), returnDay (4), delayDays (4).
+ * Файл отображается кусками по CHUNK_ROWS строк и растет по мере добавления.
+ * Файл рабочий: при открытии он очищается, долговечность обеспечивают
+ * снимок и журнал библиотеки.
+ */
+public class MappedPickRecordStore implements PickRecordStore, Closeable {
+
+    static final int ROW_SIZE = 24;
+    private static final int CHUNK_BITS = 20;
+    private static final int CHUNK_ROWS = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_ROWS - 1;
+    private static final long CHUNK_BYTES = (long) CHUNK_ROWS * ROW_SIZE;
+
+    private static final int ISBN = 0;
+    private static final int READER_ID = 8;
+    private static final int PICK_DAY = 12;
+    private static final int RETURN_DAY = 16;
+    private static final int DELAY_DAYS = 20;
+
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> chunks;
+    private int size;
+    //Вид view(): общие с хранилищем куски без файла, только чтение
+    private final boolean readOnly;
+
+    public MappedPickRecordStore(String fileName) throws IOException {
+        channel = FileChannel.open(Path.of(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        chunks = new ArrayList<>();
+        readOnly = false;
+    }
+
+    private MappedPickRecordStore(MappedPickRecordStore store) {
+        channel = null;
+        chunks = new ArrayList<>(store.chunks);
+        size = store.size;
+        readOnly = true;
+    }
+
+    @Override
+    public int add(long isbn, int readerId, int pickDay) {
+        if (readOnly)
+            throw new UnsupportedOperationException("read-only view");
+        int row = size;
+        MappedByteBuffer chunk = chunk(row);
+        int offset = offset(row);
+        chunk.putLong(offset + ISBN, isbn);
+        chunk.putInt(offset + READER_ID, readerId);
+        chunk.putInt(offset + PICK_DAY, pickDay);
+        chunk.putInt(offset + RETURN_DAY, NO_DATE);
+        chunk.putInt(offset + DELAY_DAYS, 0);
+        size++;
+        return row;
+    }
+
+    @Override
+    public void setReturn(int row, int returnDay, int delayDays) {
+        if (readOnly)
+            throw new UnsupportedOperationException("read-only view");
+        MappedByteBuffer chunk = chunk(row);
+        int offset = offset(row);
+        chunk.putInt(offset + RETURN_DAY, returnDay);
+        chunk.putInt(offset + DELAY_DAYS, delayDays);
+    }
+
+    @Override
+    public long getIsbn(int row) {
+        return chunk(row).getLong(offset(row) + ISBN);
+    }
+
+    @Override
+    public int getReaderId(int row) {
+        return chunk(row).getInt(offset(row) + READER_ID);
+    }
+
+    @Override
+    public int getPickDay(int row) {
+        return chunk(row).getInt(offset(row) + PICK_DAY);
+    }
+
+    @Override
+    public int getReturnDay(int row) {
+        return chunk(row).getInt(offset(row) + RETURN_DAY);
+    }
+
+    @Override
+    public int getDelayDays(int row) {
+        return chunk(row).getInt(offset(row) + DELAY_DAYS);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    //Куски строк вида уже отображены; отображение живет, пока на кусок есть ссылка,
+    // поэтому вид читается и после close() хранилища
+    @Override
+    public PickRecordStore view() {
+        return new MappedPickRecordStore(this);
+    }
+
+    private static int offset(int row) {
+        return (row & CHUNK_MASK) * ROW_SIZE;
+    }
+
+    private MappedByteBuffer chunk(int row) {
+        int index = row >>> CHUNK_BITS;
+        while (index >= chunks.size())
+            mapChunk();
+        return chunks.get(index);
+    }
+
+    private void mapChunk() {
+        try {
+            chunks.add(channel.map(FileChannel.MapMode.READ_WRITE,
+                    chunks.size() * CHUNK_BYTES, CHUNK_BYTES));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (readOnly)
+            return;
+        chunks.clear();
+        channel.close();
+    }
+}
@@ -0,0 +1,334 @@
+package telran.library.entities.models;
+
+import telran.library.entities.*;
+import telran.library.entities.enums.BooksReturnCode;
+import telran.utils.LatencyHistogram;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Обертка ILibrary, которая считает вызовы, коды результата и задержки каждого метода.
+ * Каждый поток пишет в свой регистратор без замков. snapshot() подменяет буфер
+ * регистратора на новый и дожидается только записи, идущей в этот момент,
+ * после чего складывает старые буферы в накопленный итог.
+ * Метрики также доступны через JMX (register).
+ * Для streamPickedRecordsAtDates замеряется только создание потока.
+ */
+public class MeteredLibrary implements ILibrary, MeteredLibraryMXBean {
+
+    private final ILibrary library;
+    private final transient List<Recorder> recorders = new CopyOnWriteArrayList<>();
+    private final transient ThreadLocal<Recorder> recorder = ThreadLocal.withInitial(this::newRecorder);
+    private final transient LibraryMetrics totals = new LibraryMetrics();
+
+    public MeteredLibrary(ILibrary library) {
+        this.library = library;
+    }
+
+    public ILibrary getLibrary() {
+        return library;
+    }
+
+    //Накопленные метрики с момента создания
+    public LibraryMetrics snapshot() {
+        synchronized (totals) {
+            for (Recorder r : recorders)
+                totals.add(r.swap());
+            return totals.copy();
+        }
+    }
+
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("telran.library:type=MeteredLibrary,name=" + name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    private Recorder newRecorder() {
+        Recorder res = new Recorder();
+        recorders.add(res);
+        return res;
+    }
+
+    private <T> T metered(LibraryMethod method, Supplier<T> call) {
+        Recorder current = recorder.get();
+        long start = System.nanoTime();
+        T res = null;
+        try {
+            res = call.get();
+            return res;
+        } finally {
+            current.record(method, System.nanoTime() - start, res);
+        }
+    }
+
+    //Регистратор одного потока: пишет только владелец, snapshot() только меняет буфер
+    private static class Recorder {
+        private volatile LibraryMetrics active = new LibraryMetrics();
+        //Нечетное значение - идет запись
+        private volatile long sequence;
+
+        void record(LibraryMethod method, long nanos, Object result) {
+            sequence++;
+            active.record(method, nanos, result);
+            sequence++;
+        }
+
+        LibraryMetrics swap() {
+            LibraryMetrics old = active;
+            active = new LibraryMetrics();
+            long current = sequence;
+            if ((current & 1) != 0)
+                while (sequence == current)
+                    Thread.onSpinWait();
+            return old;
+        }
+    }
+
+    //Sprint 1
+    @Override
+    public BooksReturnCode addBookItem(Book book) {
+        return metered(LibraryMethod.ADD_BOOK_ITEM, () -> library.addBookItem(book));
+    }
+
+    @Override
+    public BatchResult addBookItems(Collection<Book> books) {
+        return metered(LibraryMethod.ADD_BOOK_ITEMS, () -> library.addBookItems(books));
+    }
+
+    @Override
+    public BooksReturnCode addReader(Reader reader) {
+        return metered(LibraryMethod.ADD_READER, () -> library.addReader(reader));
+    }
+
+    @Override
+    public BatchResult addReaders(Collection<Reader> readers) {
+        return metered(LibraryMethod.ADD_READERS, () -> library.addReaders(readers));
+    }
+
+    @Override
+    public BooksReturnCode addBookExemplars(long isbn, int amount, LocalDate date) {
+        return metered(LibraryMethod.ADD_BOOK_EXEMPLARS, () -> library.addBookExemplars(isbn, amount, date));
+    }
+
+    @Override
+    public BatchResult addBookExemplars(Map<Long, Integer> exemplars) {
+        return metered(LibraryMethod.ADD_BOOK_EXEMPLARS_BATCH, () -> library.addBookExemplars(exemplars));
+    }
+
+    @Override
+    public Reader getReader(int readerId) {
+        return metered(LibraryMethod.GET_READER, () -> library.getReader(readerId));
+    }
+
+    @Override
+    public Book getBookItem(long isbn) {
+        return metered(LibraryMethod.GET_BOOK_ITEM, () -> library.getBookItem(isbn));
+    }
+
+    //Sprint 2
+    @Override
+    public BooksReturnCode pickBook(long isbn, int readerId, LocalDate pickDate) {
+        return metered(LibraryMethod.PICK_BOOK, () -> library.pickBook(isbn, readerId, pickDate));
+    }
+
+    @Override
+    public BatchResult pickBooks(int readerId, List<Long> isbns, LocalDate pickDate) {
+        return metered(LibraryMethod.PICK_BOOKS, () -> library.pickBooks(readerId, isbns, pickDate));
+    }
+
+    @Override
+    public List<Book> getBooksPickedByReader(int readerId) {
+        return metered(LibraryMethod.GET_BOOKS_PICKED_BY_READER, () -> library.getBooksPickedByReader(readerId));
+    }
+
+    @Override
+    public List<PickRecord> getReaderOpenLoans(int readerId) {
+        return metered(LibraryMethod.GET_READER_OPEN_LOANS, () -> library.getReaderOpenLoans(readerId));
+    }
+
+    @Override
+    public List<Reader> getReadersPickedBook(long isbn) {
+        return metered(LibraryMethod.GET_READERS_PICKED_BOOK, () -> library.getReadersPickedBook(isbn));
+    }
+
+    @Override
+    public List<Book> getBooksAuthor(String authorName) {
+        return metered(LibraryMethod.GET_BOOKS_AUTHOR, () -> library.getBooksAuthor(authorName));
+    }
+
+    @Override
+    public List<Book> getAvailableBooks() {
+        return metered(LibraryMethod.GET_AVAILABLE_BOOKS, library::getAvailableBooks);
+    }
+
+    @Override
+    public List<Book> findBooksByToken(String query) {
+        return metered(LibraryMethod.FIND_BOOKS_BY_TOKEN, () -> library.findBooksByToken(query));
+    }
+
+    @Override
+    public List<Book> findBooksByPrefix(String query, int limit) {
+        return metered(LibraryMethod.FIND_BOOKS_BY_PREFIX, () -> library.findBooksByPrefix(query, limit));
+    }
+
+    @Override
+    public List<PickRecord> getPickedRecordsAtDates(LocalDate from, LocalDate to) {
+        return metered(LibraryMethod.GET_PICKED_RECORDS_AT_DATES, () -> library.getPickedRecordsAtDates(from, to));
+    }
+
+    @Override
+    public Stream<PickRecord> streamPickedRecordsAtDates(LocalDate from, LocalDate to) {
+        return metered(LibraryMethod.STREAM_PICKED_RECORDS_AT_DATES,
+                () -> library.streamPickedRecordsAtDates(from, to));
+    }
+
+    @Override
+    public void forEachPickedRecord(LocalDate from, LocalDate to, Consumer<PickRecord> action) {
+        metered(LibraryMethod.FOR_EACH_PICKED_RECORD, () -> {
+            library.forEachPickedRecord(from, to, action);
+            return null;
+        });
+    }
+
+    //Sprint 3
+    @Override
+    public RemovedBookData removeBook(long isbn) {
+        return metered(LibraryMethod.REMOVE_BOOK, () -> library.removeBook(isbn));
+    }
+
+    @Override
+    public List<RemovedBookData> removeAuthor(String author) {
+        return metered(LibraryMethod.REMOVE_AUTHOR, () -> library.removeAuthor(author));
+    }
+
+    @Override
+    public RemovedBookData returnBook(long isbn, int readerId, LocalDate returnDate) {
+        return metered(LibraryMethod.RETURN_BOOK, () -> library.returnBook(isbn, readerId, returnDate));
+    }
+
+    @Override
+    public List<RemovedBookData> returnBooks(int readerId, List<Long> isbns, LocalDate returnDate) {
+        return metered(LibraryMethod.RETURN_BOOKS, () -> library.returnBooks(readerId, isbns, returnDate));
+    }
+
+    //Брони
+    @Override
+    public BooksReturnCode placeHold(long isbn, int readerId, LocalDate holdDate, int priority) {
+        return metered(LibraryMethod.PLACE_HOLD, () -> library.placeHold(isbn, readerId, holdDate, priority));
+    }
+
+    @Override
+    public BooksReturnCode cancelHold(long isbn, int readerId, LocalDate cancelDate) {
+        return metered(LibraryMethod.CANCEL_HOLD, () -> library.cancelHold(isbn, readerId, cancelDate));
+    }
+
+    @Override
+    public List<Hold> getReaderHolds(int readerId) {
+        return metered(LibraryMethod.GET_READER_HOLDS, () -> library.getReaderHolds(readerId));
+    }
+
+    @Override
+    public List<Hold> getBookHolds(long isbn) {
+        return metered(LibraryMethod.GET_BOOK_HOLDS, () -> library.getBookHolds(isbn));
+    }
+
+    @Override
+    public List<Hold> expireHolds(LocalDate currentDate) {
+        return metered(LibraryMethod.EXPIRE_HOLDS, () -> library.expireHolds(currentDate));
+    }
+
+    //Sprint 4
+    @Override
+    public List<ReaderDelay> getReadersDelayingBooks(LocalDate currentDate) {
+        return metered(LibraryMethod.GET_READERS_DELAYING_BOOKS, () -> library.getReadersDelayingBooks(currentDate));
+    }
+
+    @Override
+    public List<ReaderDelay> getReadersDelayedBooks() {
+        return metered(LibraryMethod.GET_READERS_DELAYED_BOOKS, library::getReadersDelayedBooks);
+    }
+
+    @Override
+    public List<Book> getMostPopularBooks(LocalDate fromDate, LocalDate toDate, int fromAge, int toAge) {
+        return metered(LibraryMethod.GET_MOST_POPULAR_BOOKS,
+                () -> library.getMostPopularBooks(fromDate, toDate, fromAge, toAge));
+    }
+
+    @Override
+    public List<String> getMostPopularAuthors() {
+        return metered(LibraryMethod.GET_MOST_POPULAR_AUTHORS, library::getMostPopularAuthors);
+    }
+
+    @Override
+    public List<String> getTopAuthors(int k) {
+        return metered(LibraryMethod.GET_TOP_AUTHORS, () -> library.getTopAuthors(k));
+    }
+
+    @Override
+    public List<Reader> getMostActiveReaders(LocalDate fromDate, LocalDate toDate) {
+        return metered(LibraryMethod.GET_MOST_ACTIVE_READERS, () -> library.getMostActiveReaders(fromDate, toDate));
+    }
+
+    //JMX
+    @Override
+    public Map<String, Long> getCalls() {
+        return byMethod(snapshot(), LatencyHistogram::getCount);
+    }
+
+    @Override
+    public Map<String, Long> getMeanNanos() {
+        return byMethod(snapshot(), latency -> Math.round(latency.getMean()));
+    }
+
+    @Override
+    public Map<String, Long> getP50Nanos() {
+        return byMethod(snapshot(), latency -> latency.getPercentile(50));
+    }
+
+    @Override
+    public Map<String, Long> getP99Nanos() {
+        return byMethod(snapshot(), latency -> latency.getPercentile(99));
+    }
+
+    @Override
+    public Map<String, Long> getP999Nanos() {
+        return byMethod(snapshot(), latency -> latency.getPercentile(99.9));
+    }
+
+    @Override
+    public Map<String, Long> getMaxNanos() {
+        return byMethod(snapshot(), LatencyHistogram::getMax);
+    }
+
+    @Override
+    public Map<String, Long> getReturnCodes() {
+        LibraryMetrics metrics = snapshot();
+        Map<String, Long> res = new TreeMap<>();
+        for (LibraryMethod method : LibraryMethod.values())
+            for (BooksReturnCode code : BooksReturnCode.values()) {
+                long count = metrics.getCodeCount(method, code);
+                if (count > 0)
+                    res.put(method + "." + code, count);
+            }
+        return res;
+    }
+
+    //Только методы, которые вызывались
+    private static Map<String, Long> byMethod(LibraryMetrics metrics, ToLongFunction<LatencyHistogram> value) {
+        Map<String, Long> res = new TreeMap<>();
+        for (LibraryMethod method : LibraryMethod.values())
+            if (metrics.getCalls(method) > 0)
+                res.put(method.name(), value.applyAsLong(metrics.getLatency(method)));
+        return res;
+    }
+}
@@ -0,0 +1,15 @@
+package telran.library.entities.models;
+
+import java.util.Map;
+
+//Метрики MeteredLibrary для JMX; ключи - имена LibraryMethod (и кодов результата)
+public interface MeteredLibraryMXBean {
+    Map<String, Long> getCalls();
+    Map<String, Long> getMeanNanos();
+    Map<String, Long> getP50Nanos();
+    Map<String, Long> getP99Nanos();
+    Map<String, Long> getP999Nanos();
+    Map<String, Long> getMaxNanos();
+    //"метод.код" -> количество
+    Map<String, Long> getReturnCodes();
+}
@@ -0,0 +1,48 @@
+package telran.library.entities.models;
+
+import telran.library.entities.PickRecord;
+
+import java.time.LocalDate;
+
+/**
+ * Хранилище истории выдач строками фиксированной ширины:
+ * isbn, readerId, дата выдачи и дата возврата в днях от эпохи, дни просрочки.
+ * Индексы библиотеки хранят номера строк, объекты PickRecord
+ * создаются только на границе API.
+ */
+public interface PickRecordStore {
+
+    int NO_DATE = Integer.MIN_VALUE;
+
+    //Добавляет незакрытую выдачу и возвращает номер строки
+    int add(long isbn, int readerId, int pickDay);
+
+    void setReturn(int row, int returnDay, int delayDays);
+
+    long getIsbn(int row);
+
+    int getReaderId(int row);
+
+    int getPickDay(int row);
+
+    int getReturnDay(int row);
+
+    int getDelayDays(int row);
+
+    int size();
+
+    //Строки [0, size()) на момент вызова для чтения из другого потока, без копирования.
+    // isbn, читатель и дата выдачи строки не меняются; дату возврата и просрочку
+    // можно читать только у строк, закрытых до вызова. Добавлять в вид нельзя
+    PickRecordStore view();
+
+    default PickRecord get(int row) {
+        PickRecord record = new PickRecord(getIsbn(row), getReaderId(row),
+                LocalDate.ofEpochDay(getPickDay(row)));
+        int returnDay = getReturnDay(row);
+        if (returnDay != NO_DATE)
+            record.setReturnDate(LocalDate.ofEpochDay(returnDay));
+        record.setDelayDays(getDelayDays(row));
+        return record;
+    }
+}
@@ -0,0 +1,82 @@
+package telran.library.entities.models;
+
+import telran.library.entities.Reader;
+import telran.utils.DayIndex;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Предагрегированные счетчики выдач по дням: сколько книг взял каждый читатель
+ * и сколько раз выдавали каждую книгу с разбивкой по возрасту читателя.
+ * Запрос за период складывает дневные счетчики и не трогает сами PickRecord.
+ */
+class PickStatistics implements Serializable {
+
+    private final DayIndex<DayCounters> days = new DayIndex<>(LibraryMaps.MIN_PICK_DATE);
+
+    private static class DayCounters implements Serializable {
+        private final Map<Integer, Long> readers = new HashMap<>();
+        //возраст читателя на дату выдачи -> (isbn -> количество выдач)
+        private final NavigableMap<Integer, Map<Long, Long>> booksByAge = new TreeMap<>();
+
+        boolean isEmpty() {
+            return readers.isEmpty();
+        }
+    }
+
+    void add(long isbn, Reader reader, LocalDate pickDate) {
+        update(isbn, reader, pickDate, 1);
+    }
+
+    void remove(long isbn, Reader reader, LocalDate pickDate) {
+        update(isbn, reader, pickDate, -1);
+    }
+
+    private void update(long isbn, Reader reader, LocalDate pickDate, long delta) {
+        DayCounters day = days.computeIfAbsent(pickDate, DayCounters::new);
+        merge(day.readers, reader.getReaderId(), delta);
+
+        int age = getAge(reader, pickDate);
+        Map<Long, Long> books = day.booksByAge.computeIfAbsent(age, a -> new HashMap<>());
+        merge(books, isbn, delta);
+        if (books.isEmpty())
+            day.booksByAge.remove(age);
+
+        if (day.isEmpty())
+            days.remove(pickDate);
+    }
+
+    private static <K> void merge(Map<K, Long> map, K key, long delta) {
+        map.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    //Читатели без даты рождения не попадают ни в один возрастной диапазон
+    static int getAge(Reader reader, LocalDate pickDate) {
+        return reader.getBirthDay() == null ? Integer.MIN_VALUE
+                : (int) ChronoUnit.YEARS.between(reader.getBirthDay(), pickDate);
+    }
+
+    //Выдачи по читателям за [from, to)
+    Map<Integer, Long> getReadersCounts(LocalDate from, LocalDate to) {
+        Map<Integer, Long> res = new HashMap<>();
+        if (to.isBefore(from))
+            return res;
+        days.forEach(from, to,
+                day -> day.readers.forEach((id, count) -> res.merge(id, count, Long::sum)));
+        return res;
+    }
+
+    //Выдачи по книгам за [from, to) читателям возраста [fromAge, toAge)
+    Map<Long, Long> getBooksCounts(LocalDate from, LocalDate to, int fromAge, int toAge) {
+        Map<Long, Long> res = new HashMap<>();
+        if (to.isBefore(from) || fromAge >= toAge)
+            return res;
+        days.forEach(from, to,
+                day -> day.booksByAge.subMap(fromAge, toAge).values()
+                        .forEach(books -> books.forEach((isbn, count) -> res.merge(isbn, count, Long::sum))));
+        return res;
+    }
+}
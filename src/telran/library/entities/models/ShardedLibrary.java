@@ -0,0 +1,458 @@
+package telran.library.entities.models;
+
+import telran.library.entities.*;
+import telran.library.entities.enums.BooksReturnCode;
+import telran.utils.Persistable;
+
+import static telran.library.entities.enums.BooksReturnCode.*;
+
+import java.io.Closeable;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Библиотека, разбитая по isbn на N секций LibraryMaps. У каждой секции свой поток:
+ * все обращения к секции идут задачами в ее однопоточный executor, поэтому
+ * LibraryMaps не нужны замки, а операции с книгами разных секций идут параллельно.
+ * Читатели копируются во все секции (их мало, и они почти не меняются), так что
+ * выдача, возврат и брони обходятся одной секцией.
+ * Запросы по автору, читателю и аналитика рассылаются всем секциям сразу,
+ * частичные итоги (списки, счетчики выдач) сливаются в вызывающем потоке.
+ * Списки из нескольких секций идут по секциям, а не в порядке выдач;
+ * записи о выдаче за период упорядочены по дате.
+ */
+public class ShardedLibrary implements ILibrary, Persistable, Closeable {
+
+    private final transient LibraryMaps[] shards;
+    private final transient ExecutorService[] executors;
+    //Копии читателей добавляются по одной, чтобы все секции видели один порядок
+    private final transient Object readersLock = new Object();
+
+    public ShardedLibrary(int shardsCount) {
+        this(newShards(shardsCount));
+    }
+
+    private ShardedLibrary(LibraryMaps[] shards) {
+        this.shards = shards;
+        executors = new ExecutorService[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            String name = "library-shard-" + i;
+            executors[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static LibraryMaps[] newShards(int shardsCount) {
+        if (shardsCount <= 0)
+            throw new IllegalArgumentException("shards count must be positive: " + shardsCount);
+        LibraryMaps[] res = new LibraryMaps[shardsCount];
+        for (int i = 0; i < shardsCount; i++)
+            res[i] = new LibraryMaps();
+        return res;
+    }
+
+    //Каждая секция - свой снимок fileName.i; секции пишутся параллельно
+    @Override
+    public void save(String fileName) {
+        List<CompletableFuture<Object>> futures = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            String shardFile = shardFileName(fileName, i);
+            futures.add(submit(i, library -> {
+                library.save(shardFile);
+                return null;
+            }));
+        }
+        futures.forEach(ShardedLibrary::join);
+    }
+
+    //Число секций должно совпадать с сохраненным: от него зависит, где лежит книга
+    public static ShardedLibrary load(String fileName, int shardsCount) {
+        LibraryMaps[] shards = newShards(shardsCount);
+        for (int i = 0; i < shardsCount; i++) {
+            shards[i] = LibraryMaps.load(shardFileName(fileName, i));
+            if (shards[i] == null)
+                return null;
+        }
+        return new ShardedLibrary(shards);
+    }
+
+    private static String shardFileName(String fileName, int shard) {
+        return fileName + "." + shard;
+    }
+
+    public int getShardsCount() {
+        return shards.length;
+    }
+
+    int shardIndex(long isbn) {
+        int h = Long.hashCode(isbn);
+        return Math.floorMod(h ^ (h >>> 16), shards.length);
+    }
+
+    //Операция над секцией книги в потоке этой секции
+    private <T> T call(long isbn, Function<LibraryMaps, T> operation) {
+        return call(shardIndex(isbn), operation);
+    }
+
+    private <T> T call(int shard, Function<LibraryMaps, T> operation) {
+        return join(submit(shard, operation));
+    }
+
+    private <T> CompletableFuture<T> submit(int shard, Function<LibraryMaps, T> operation) {
+        return CompletableFuture.supplyAsync(() -> operation.apply(shards[shard]), executors[shard]);
+    }
+
+    //Рассылка всем секциям; результаты в порядке секций
+    private <T> List<T> scatter(Function<LibraryMaps, T> operation) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++)
+            futures.add(submit(i, operation));
+        List<T> res = new ArrayList<>(shards.length);
+        for (CompletableFuture<T> future : futures)
+            res.add(join(future));
+        return res;
+    }
+
+    private <T> List<T> gather(Function<LibraryMaps, ? extends Collection<T>> operation) {
+        List<T> res = new ArrayList<>();
+        scatter(operation).forEach(res::addAll);
+        return res;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    //Пакет раскладывается по секциям, секции обрабатывают свои части параллельно,
+    // результаты возвращаются на места элементов пакета
+    private <R> void routeBatch(List<Long> isbns, R[] res,
+                                PartOperation<R> operation) {
+        List<List<Long>> parts = new ArrayList<>(shards.length);
+        List<List<Integer>> positions = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(new ArrayList<>());
+            positions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < isbns.size(); i++) {
+            int shard = shardIndex(isbns.get(i));
+            parts.get(shard).add(isbns.get(i));
+            positions.get(shard).add(i);
+        }
+        List<CompletableFuture<List<R>>> futures = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            List<Long> part = parts.get(i);
+            futures.add(part.isEmpty() ? CompletableFuture.completedFuture(List.of())
+                    : submit(i, library -> operation.apply(library, part)));
+        }
+        for (int i = 0; i < shards.length; i++) {
+            List<R> partResult = join(futures.get(i));
+            for (int j = 0; j < partResult.size(); j++)
+                res[positions.get(i).get(j)] = partResult.get(j);
+        }
+    }
+
+    private interface PartOperation<R> {
+        List<R> apply(LibraryMaps library, List<Long> isbns);
+    }
+
+    private static BatchResult toBatchResult(BooksReturnCode[] codes) {
+        BatchResult res = new BatchResult(codes.length);
+        for (int i = 0; i < codes.length; i++)
+            res.set(i, codes[i]);
+        return res;
+    }
+
+    private static List<BooksReturnCode> codes(BatchResult batch) {
+        List<BooksReturnCode> res = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++)
+            res.add(batch.get(i));
+        return res;
+    }
+
+    private static <K> Map<K, Long> sum(List<Map<K, Long>> partials) {
+        Map<K, Long> res = new HashMap<>();
+        partials.forEach(partial -> partial.forEach((key, count) -> res.merge(key, count, Long::sum)));
+        return res;
+    }
+
+    private static <K> List<K> getListMaxValueFromMap(Map<K, Long> mapTemp) {
+        if (mapTemp.isEmpty())
+            return new ArrayList<>();
+        long maxValue = Collections.max(mapTemp.values());
+        List<K> res = new ArrayList<>();
+        mapTemp.forEach((k, v) -> {
+            if (v == maxValue) res.add(k);
+        });
+        return res;
+    }
+
+    @Override
+    public void close() {
+        for (ExecutorService executor : executors)
+            executor.shutdown();
+        try {
+            for (ExecutorService executor : executors)
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //Sprint 1
+    @Override
+    public BooksReturnCode addBookItem(Book book) {
+        if (book == null)
+            return NO_BOOK_ITEM;
+        return call(book.getIsbn(), library -> library.addBookItem(book));
+    }
+
+    @Override
+    public BatchResult addBookItems(Collection<Book> books) {
+        List<Book> items = new ArrayList<>(books);
+        List<Long> isbns = new ArrayList<>(items.size());
+        Map<Long, List<Book>> byIsbn = new HashMap<>();
+        for (Book book : items) {
+            long isbn = book == null ? 0 : book.getIsbn();
+            isbns.add(isbn);
+            byIsbn.computeIfAbsent(isbn, k -> new ArrayList<>()).add(book);
+        }
+        //Книги одного isbn уходят в одну секцию в исходном порядке
+        BooksReturnCode[] res = new BooksReturnCode[items.size()];
+        routeBatch(isbns, res, (library, part) -> {
+            Map<Long, Iterator<Book>> next = new HashMap<>();
+            List<Book> partBooks = new ArrayList<>(part.size());
+            for (long isbn : part)
+                partBooks.add(next.computeIfAbsent(isbn, k -> byIsbn.get(k).iterator()).next());
+            return codes(library.addBookItems(partBooks));
+        });
+        return toBatchResult(res);
+    }
+
+    @Override
+    public BooksReturnCode addReader(Reader reader) {
+        if (reader == null)
+            return NO_READER;
+        synchronized (readersLock) {
+            return scatter(library -> library.addReader(reader)).get(0);
+        }
+    }
+
+    @Override
+    public BatchResult addReaders(Collection<Reader> readers) {
+        List<Reader> items = new ArrayList<>(readers);
+        synchronized (readersLock) {
+            return scatter(library -> library.addReaders(items)).get(0);
+        }
+    }
+
+    @Override
+    public BooksReturnCode addBookExemplars(long isbn, int amount, LocalDate date) {
+        return call(isbn, library -> library.addBookExemplars(isbn, amount, date));
+    }
+
+    //Копии читателя одинаковы во всех секциях
+    @Override
+    public Reader getReader(int readerId) {
+        return call(0, library -> library.getReader(readerId));
+    }
+
+    @Override
+    public Book getBookItem(long isbn) {
+        return call(isbn, library -> library.getBookItem(isbn));
+    }
+
+    //Sprint 2
+    @Override
+    public BooksReturnCode pickBook(long isbn, int readerId, LocalDate pickDate) {
+        return call(isbn, library -> library.pickBook(isbn, readerId, pickDate));
+    }
+
+    @Override
+    public BatchResult pickBooks(int readerId, List<Long> isbns, LocalDate pickDate) {
+        BooksReturnCode[] res = new BooksReturnCode[isbns.size()];
+        routeBatch(isbns, res, (library, part) -> codes(library.pickBooks(readerId, part, pickDate)));
+        return toBatchResult(res);
+    }
+
+    @Override
+    public List<Book> getBooksPickedByReader(int readerId) {
+        return gather(library -> library.getBooksPickedByReader(readerId));
+    }
+
+    @Override
+    public List<PickRecord> getReaderOpenLoans(int readerId) {
+        return gather(library -> library.getReaderOpenLoans(readerId));
+    }
+
+    @Override
+    public List<Reader> getReadersPickedBook(long isbn) {
+        return call(isbn, library -> library.getReadersPickedBook(isbn));
+    }
+
+    @Override
+    public List<Book> getBooksAuthor(String authorName) {
+        return gather(library -> library.getBooksAuthor(authorName));
+    }
+
+    @Override
+    public List<Book> getAvailableBooks() {
+        return gather(LibraryMaps::getAvailableBooks);
+    }
+
+    @Override
+    public List<Book> findBooksByToken(String query) {
+        return gather(library -> library.findBooksByToken(query));
+    }
+
+    @Override
+    public List<Book> findBooksByPrefix(String query, int limit) {
+        List<Book> res = gather(library -> library.findBooksByPrefix(query, limit));
+        return res.size() <= limit ? res : new ArrayList<>(res.subList(0, Math.max(0, limit)));
+    }
+
+    @Override
+    public List<PickRecord> getPickedRecordsAtDates(LocalDate from, LocalDate to) {
+        List<PickRecord> res = gather(library -> library.getPickedRecordsAtDates(from, to));
+        res.sort(Comparator.comparing(PickRecord::getPickDate));
+        return res;
+    }
+
+    @Override
+    public Stream<PickRecord> streamPickedRecordsAtDates(LocalDate from, LocalDate to) {
+        return getPickedRecordsAtDates(from, to).stream();
+    }
+
+    //action выполняется в вызывающем потоке, а не в потоках секций
+    @Override
+    public void forEachPickedRecord(LocalDate from, LocalDate to, Consumer<PickRecord> action) {
+        getPickedRecordsAtDates(from, to).forEach(action);
+    }
+
+    //Sprint 3
+    @Override
+    public RemovedBookData removeBook(long isbn) {
+        return call(isbn, library -> library.removeBook(isbn));
+    }
+
+    @Override
+    public List<RemovedBookData> removeAuthor(String author) {
+        return gather(library -> library.removeAuthor(author));
+    }
+
+    @Override
+    public RemovedBookData returnBook(long isbn, int readerId, LocalDate returnDate) {
+        return call(isbn, library -> library.returnBook(isbn, readerId, returnDate));
+    }
+
+    @Override
+    public List<RemovedBookData> returnBooks(int readerId, List<Long> isbns, LocalDate returnDate) {
+        RemovedBookData[] res = new RemovedBookData[isbns.size()];
+        routeBatch(isbns, res, (library, part) -> library.returnBooks(readerId, part, returnDate));
+        return new ArrayList<>(Arrays.asList(res));
+    }
+
+    //Брони
+    @Override
+    public BooksReturnCode placeHold(long isbn, int readerId, LocalDate holdDate, int priority) {
+        return call(isbn, library -> library.placeHold(isbn, readerId, holdDate, priority));
+    }
+
+    @Override
+    public BooksReturnCode cancelHold(long isbn, int readerId, LocalDate cancelDate) {
+        return call(isbn, library -> library.cancelHold(isbn, readerId, cancelDate));
+    }
+
+    @Override
+    public List<Hold> getReaderHolds(int readerId) {
+        return gather(library -> library.getReaderHolds(readerId));
+    }
+
+    @Override
+    public List<Hold> getBookHolds(long isbn) {
+        return call(isbn, library -> library.getBookHolds(isbn));
+    }
+
+    @Override
+    public List<Hold> expireHolds(LocalDate currentDate) {
+        return gather(library -> library.expireHolds(currentDate));
+    }
+
+    //Sprint 4
+    @Override
+    public List<ReaderDelay> getReadersDelayingBooks(LocalDate currentDate) {
+        return gather(library -> library.getReadersDelayingBooks(currentDate));
+    }
+
+    @Override
+    public List<ReaderDelay> getReadersDelayedBooks() {
+        return gather(LibraryMaps::getReadersDelayedBooks);
+    }
+
+    //Книги секций не пересекаются: каждая секция отдает только своих лидеров со счетчиком
+    @Override
+    public List<Book> getMostPopularBooks(LocalDate fromDate, LocalDate toDate, int fromAge, int toAge) {
+        if (fromDate == null || toDate == null || fromDate.isAfter(toDate))
+            return new ArrayList<>();
+
+        List<Map<Book, Long>> partials = scatter(library -> {
+            Map<Book, Long> leaders = new HashMap<>();
+            Map<Long, Long> counts = library.getBooksPicks(fromDate, toDate, fromAge, toAge);
+            getListMaxValueFromMap(counts).forEach(isbn ->
+                    leaders.put(library.getBookItem(isbn), counts.get(isbn)));
+            return leaders;
+        });
+        return getListMaxValueFromMap(sum(partials));
+    }
+
+    //Книги автора бывают в разных секциях - счетчики авторов складываются
+    @Override
+    public List<String> getMostPopularAuthors() {
+        return getListMaxValueFromMap(sum(scatter(LibraryMaps::getAuthorsPicks)));
+    }
+
+    @Override
+    public List<String> getTopAuthors(int k) {
+        if (k <= 0)
+            return new ArrayList<>();
+        //Куча из k лучших вместо полной сортировки
+        PriorityQueue<Map.Entry<String, Long>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+        sum(scatter(LibraryMaps::getAuthorsPicks)).entrySet().forEach(e -> {
+            top.add(e);
+            if (top.size() > k) top.poll();
+        });
+        LinkedList<String> res = new LinkedList<>();
+        while (!top.isEmpty())
+            res.addFirst(top.poll().getKey());
+        return new ArrayList<>(res);
+    }
+
+    //Читатель берет книги в разных секциях - счетчики читателей складываются
+    @Override
+    public List<Reader> getMostActiveReaders(LocalDate fromDate, LocalDate toDate) {
+        if (fromDate == null || toDate == null)
+            return new ArrayList<>();
+
+        List<Integer> leaders = getListMaxValueFromMap(
+                sum(scatter(library -> library.getReadersPicks(fromDate, toDate))));
+        return call(0, library -> leaders.stream()
+                .map(library::getReader)
+                .toList());
+    }
+}
@@ -0,0 +1,106 @@
+package telran.library.tests;
+
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.library.entities.enums.BooksReturnCode.*;
+
+import telran.library.entities.*;
+import telran.library.entities.models.*;
+
+//Все тесты LibraryMapsTests через CachingLibrary плюс проверки кеша
+public class CachingLibraryTests extends LibraryMapsTests {
+
+    @Override
+    protected ILibrary createLibrary() {
+        return new CachingLibrary(new LibraryMaps());
+    }
+
+    @Override
+    protected ILibrary reload(String fileName) {
+        ((LibraryMaps) ((CachingLibrary) library).getLibrary()).save(fileName);
+        return new CachingLibrary(LibraryMaps.load(fileName));
+    }
+
+    @Test
+    void testHitsAndMisses() {
+        CachingLibrary cache = (CachingLibrary) library;
+        List<Book> first = library.getBooksAuthor(AUTHOR1);
+        assertSame(first, library.getBooksAuthor(AUTHOR1));
+        library.getBooksAuthor(AUTHOR2);
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getSize());
+        assertThrows(UnsupportedOperationException.class, () -> first.add(null));
+    }
+
+    @Test
+    void testPreciseInvalidation() {
+        CachingLibrary cache = (CachingLibrary) library;
+        library.getBooksAuthor(AUTHOR1);
+        library.getBooksAuthor(AUTHOR2);
+        library.getReadersPickedBook(ISBN1);
+        library.getReadersPickedBook(ISBN4);
+        library.getBooksPickedByReader(READER_ID1);
+        library.getBooksPickedByReader(READER_ID2);
+        library.getMostPopularAuthors();
+
+        //Выдача ISBN1 (AUTHOR1) читателю READER_ID1
+        assertEquals(OK, library.pickBook(ISBN1, READER_ID1, PICK_DATE2));
+        assertEquals(4, cache.getInvalidations());
+        assertEquals(3, cache.getSize());
+
+        long misses = cache.getMisses();
+        library.getBooksAuthor(AUTHOR2);
+        library.getReadersPickedBook(ISBN4);
+        library.getBooksPickedByReader(READER_ID2);
+        assertEquals(misses, cache.getMisses());
+
+        assertEquals(List.of(library.getReader(READER_ID1)), library.getReadersPickedBook(ISBN1));
+        assertEquals(List.of(library.getBookItem(ISBN1)), library.getBooksPickedByReader(READER_ID1));
+        assertEquals(List.of(AUTHOR1), library.getMostPopularAuthors());
+        assertEquals(misses + 3, cache.getMisses());
+
+        //Неудачная операция кеш не трогает
+        assertEquals(READER_READS_IT, library.pickBook(ISBN1, READER_ID1, PICK_DATE2));
+        assertEquals(4, cache.getInvalidations());
+    }
+
+    @Test
+    void testRemovalInvalidatesReaders() {
+        library.pickBook(ISBN1, READER_ID1, PICK_DATE2);
+        library.pickBook(ISBN1, READER_ID2, PICK_DATE2);
+        assertEquals(1, library.getBooksPickedByReader(READER_ID2).size());
+
+        //Пока книга на руках, она только пропадает из наличия
+        library.removeBook(ISBN1);
+        assertEquals(2, library.getBooksAuthor(AUTHOR1).size());
+        assertEquals(1, library.getBooksPickedByReader(READER_ID2).size());
+
+        //Возврат последнего экземпляра удаляет книгу и ее записи у всех читателей
+        library.returnBook(ISBN1, READER_ID1, PICK_DATE1);
+        library.returnBook(ISBN1, READER_ID2, PICK_DATE1);
+        assertEquals(new ArrayList<>(), library.getBooksPickedByReader(READER_ID2));
+        assertEquals(new ArrayList<>(), library.getReadersPickedBook(ISBN1));
+        assertEquals(new ArrayList<>(), library.getMostPopularAuthors());
+    }
+
+    @Test
+    void testLruEviction() {
+        CachingLibrary cache = new CachingLibrary(new LibraryMaps(), 2);
+        cache.getBooksAuthor(AUTHOR1);
+        cache.getBooksAuthor(AUTHOR2);
+        //AUTHOR1 прочитан последним, вытесняется AUTHOR2
+        cache.getBooksAuthor(AUTHOR1);
+        cache.getBooksAuthor(AUTHOR3);
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.getSize());
+
+        long misses = cache.getMisses();
+        cache.getBooksAuthor(AUTHOR1);
+        assertEquals(misses, cache.getMisses());
+        cache.getBooksAuthor(AUTHOR2);
+        assertEquals(misses + 1, cache.getMisses());
+    }
+}
@@ -0,0 +1,212 @@
+package telran.library.tests;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.library.entities.enums.BooksReturnCode.*;
+
+import telran.library.entities.*;
+import telran.library.entities.models.*;
+
+//Все тесты LibraryMapsTests плюс проверки под конкуренцией
+public class ConcurrentLibraryTests extends LibraryMapsTests {
+
+    final int THREADS = 8;
+    final int READERS = 200;
+    final int ITERATIONS = 2_000;
+    final long HOT_ISBN = 9999999999L;
+    final int HOT_AMOUNT = 5;
+
+    @Override
+    protected ILibrary createLibrary() {
+        return new ConcurrentLibrary();
+    }
+
+    @Test
+    void testAmountInUseNeverExceedsAmount() throws Exception {
+        Book hot = new Book(HOT_ISBN, AUTHOR4, TITLE, HOT_AMOUNT, PICK_PERIOD);
+        library.addBookItem(hot);
+        for (int id = 100; id < 100 + READERS; id++)
+            library.addReader(new Reader(id, NAME1, PHONE1, BIRTH_DATE1));
+
+        AtomicInteger violations = new AtomicInteger();
+        AtomicInteger picked = new AtomicInteger();
+        runConcurrently(t -> {
+            Random random = new Random(t);
+            for (int i = 0; i < ITERATIONS; i++) {
+                int readerId = 100 + random.nextInt(READERS);
+                if (library.pickBook(HOT_ISBN, readerId, PICK_DATE2) == OK)
+                    picked.incrementAndGet();
+                if (hot.getAmountInUse() > hot.getAmount())
+                    violations.incrementAndGet();
+                library.returnBook(HOT_ISBN, readerId, PICK_DATE1);
+            }
+        });
+
+        assertEquals(0, violations.get());
+        assertTrue(picked.get() > 0);
+        assertEquals(0, hot.getAmountInUse());
+        long openRecords = library.getPickedRecordsAtDates(PICK_DATE2, PICK_DATE1).stream()
+                .filter(r -> r.getReturnDate() == null)
+                .count();
+        assertEquals(0, openRecords);
+    }
+
+    @Test
+    void testParallelPicksOfDifferentBooks() throws Exception {
+        runConcurrently(t -> {
+            long isbn = 8000000000L + t;
+            library.addBookItem(new Book(isbn, AUTHOR4, TITLE, READERS, PICK_PERIOD));
+            for (int id = 0; id < READERS; id++) {
+                int readerId = 1000 * (t + 1) + id;
+                library.addReader(new Reader(readerId, NAME2, PHONE2, BIRTH_DATE2));
+                assertEquals(OK, library.pickBook(isbn, readerId, PICK_DATE2));
+            }
+        });
+
+        for (int t = 0; t < THREADS; t++) {
+            Book book = library.getBookItem(8000000000L + t);
+            assertEquals(READERS, book.getAmountInUse());
+            assertEquals(READERS, library.getReadersPickedBook(book.getIsbn()).size());
+        }
+        assertEquals(THREADS * READERS,
+                library.getPickedRecordsAtDates(PICK_DATE2, PICK_DATE1).size());
+    }
+
+    @Test
+    void testConcurrentRemoveWhileReturning() throws Exception {
+        for (int id = 100; id < 100 + HOT_AMOUNT; id++) {
+            library.addReader(new Reader(id, NAME1, PHONE1, BIRTH_DATE1));
+        }
+        for (int round = 0; round < 200; round++) {
+            long isbn = HOT_ISBN - round;
+            library.addBookItem(new Book(isbn, AUTHOR4, TITLE, HOT_AMOUNT, PICK_PERIOD));
+            for (int id = 100; id < 100 + HOT_AMOUNT; id++)
+                library.pickBook(isbn, id, PICK_DATE2);
+
+            List<RemovedBookData> removed = new CopyOnWriteArrayList<>();
+            runConcurrently(t -> {
+                if (t < HOT_AMOUNT) {
+                    RemovedBookData data = library.returnBook(isbn, 100 + t, PICK_DATE1);
+                    if (data.getRecords() != null) removed.add(data);
+                } else if (t == HOT_AMOUNT) {
+                    RemovedBookData data = library.removeBook(isbn);
+                    if (data != null && data.getRecords() != null) removed.add(data);
+                }
+            });
+
+            //Ровно один поток выполняет фактическое удаление
+            assertEquals(1, removed.size());
+            assertEquals(HOT_AMOUNT, removed.get(0).getRecords().size());
+            assertNull(library.getBookItem(isbn));
+        }
+    }
+
+    @Test
+    void testConcurrentKioskSessionsOfOneReader() throws Exception {
+        List<Long> isbns = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            long isbn = 8000000000L + i;
+            library.addBookItem(new Book(isbn, AUTHOR4, TITLE, THREADS, PICK_PERIOD));
+            isbns.add(isbn);
+        }
+        AtomicInteger picked = new AtomicInteger();
+        //Несколько киосков одновременно выдают одни и те же книги одному читателю
+        runConcurrently(t -> {
+            BatchResult res = library.pickBooks(READER_ID1, isbns, PICK_DATE2);
+            picked.addAndGet(res.count(OK));
+            assertEquals(isbns.size(), res.count(OK) + res.count(READER_READS_IT));
+        });
+
+        assertEquals(isbns.size(), picked.get());
+        assertEquals(isbns.size(), library.getReaderOpenLoans(READER_ID1).size());
+        for (long isbn : isbns)
+            assertEquals(1, library.getBookItem(isbn).getAmountInUse());
+    }
+
+    @Test
+    void testHoldPlacedWhileReturning() throws Exception {
+        for (int id = 100; id < 103; id++)
+            library.addReader(new Reader(id, NAME1, PHONE1, BIRTH_DATE1));
+        for (int round = 0; round < 300; round++) {
+            long isbn = HOT_ISBN - round;
+            library.addBookItem(new Book(isbn, AUTHOR4, TITLE, 1, PICK_PERIOD));
+            assertEquals(OK, library.pickBook(isbn, 100, PICK_DATE2));
+
+            //Единственный экземпляр возвращается, пока другой читатель ставит бронь,
+            // а третий пробует взять книгу без брони
+            runConcurrently(t -> {
+                if (t == 0)
+                    library.returnBook(isbn, 100, PICK_DATE1);
+                else if (t == 1)
+                    library.placeHold(isbn, 101, PICK_DATE1);
+                else if (t == 2)
+                    library.pickBook(isbn, 102, PICK_DATE1);
+            });
+
+            //Ожидающая бронь и свободный экземпляр вместе не бывают
+            Book book = library.getBookItem(isbn);
+            long waiting = library.getBookHolds(isbn).stream().filter(h -> !h.isReady()).count();
+            assertFalse(waiting > 0 && book.getAmount() > book.getAmountInUse(),
+                    "round " + round + ": " + book + " " + library.getBookHolds(isbn));
+        }
+    }
+
+    @Test
+    void testSessionSeenWhole() throws Exception {
+        List<Long> isbns = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            long isbn = HOT_ISBN - 1000 - i;
+            library.addBookItem(new Book(isbn, AUTHOR4, TITLE, 1, PICK_PERIOD));
+            isbns.add(isbn);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        //Поток 0 берет и возвращает книги сеансами, остальные видят сеанс только целиком
+        runConcurrently(t -> {
+            if (t == 0) {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        assertEquals(isbns.size(), library.pickBooks(READER_ID1, isbns, PICK_DATE2).count(OK));
+                        library.returnBooks(READER_ID1, isbns, PICK_DATE1);
+                    }
+                } finally {
+                    done.set(true);
+                }
+            } else {
+                while (!done.get()) {
+                    int open = library.getReaderOpenLoans(READER_ID1).size();
+                    assertTrue(open == 0 || open == isbns.size(), "open loans " + open);
+                }
+            }
+        });
+    }
+
+    private void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int threadNumber = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run(threadNumber);
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> f : futures)
+                f.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface ThreadTask {
+        void run(int threadNumber) throws Exception;
+    }
+}
@@ -0,0 +1,58 @@
+package telran.library.tests;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import telran.utils.DayIndex;
+
+public class DayIndexTests {
+
+    final LocalDate FIRST_DAY = LocalDate.of(2000, 1, 1);
+
+    DayIndex<String> index;
+
+    @BeforeEach
+    void setUp() {
+        index = new DayIndex<>(FIRST_DAY);
+    }
+
+    @Test
+    void testRangeAcrossChunks() {
+        //Дни в разных кусках и дыры между ними
+        List<LocalDate> days = List.of(FIRST_DAY, FIRST_DAY.plusDays(1023),
+                FIRST_DAY.plusDays(1024), FIRST_DAY.plusDays(5000));
+        days.forEach(day -> index.computeIfAbsent(day, day::toString));
+
+        List<String> all = new ArrayList<>();
+        index.forEach(all::add);
+        assertEquals(days.stream().map(LocalDate::toString).toList(), all);
+
+        List<String> range = new ArrayList<>();
+        index.forEach(FIRST_DAY.plusDays(1), FIRST_DAY.plusDays(5000), range::add);
+        assertEquals(List.of(days.get(1).toString(), days.get(2).toString()), range);
+        assertEquals(range, index.stream(FIRST_DAY.plusDays(1), FIRST_DAY.plusDays(5000)).toList());
+    }
+
+    @Test
+    void testOutOfRangeDays() {
+        index.computeIfAbsent(FIRST_DAY.plusDays(10), () -> "day10");
+        assertNull(index.get(FIRST_DAY.minusDays(1)));
+        assertNull(index.get(FIRST_DAY.plusYears(100)));
+        assertEquals(List.of("day10"),
+                index.stream(FIRST_DAY.minusYears(10), FIRST_DAY.plusYears(10)).toList());
+        assertThrows(IllegalArgumentException.class,
+                () -> index.computeIfAbsent(FIRST_DAY.minusDays(1), () -> "before"));
+    }
+
+    @Test
+    void testRemove() {
+        assertEquals("a", index.computeIfAbsent(FIRST_DAY, () -> "a"));
+        assertEquals("a", index.computeIfAbsent(FIRST_DAY, () -> "b"));
+        index.remove(FIRST_DAY);
+        assertNull(index.get(FIRST_DAY));
+        assertEquals(0, index.stream(FIRST_DAY, FIRST_DAY.plusDays(1)).count());
+    }
+}
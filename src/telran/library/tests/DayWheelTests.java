@@ -0,0 +1,62 @@
+package telran.library.tests;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import telran.utils.DayWheel;
+
+public class DayWheelTests {
+
+    final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    DayWheel<String> wheel;
+    List<String> fired;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new DayWheel<>();
+        fired = new ArrayList<>();
+    }
+
+    @Test
+    void testFiresInDeadlineOrder() {
+        //Ближние и дальние (больше оборота колеса) сроки вперемешку
+        wheel.schedule(DAY.plusDays(500), "far");
+        wheel.schedule(DAY.plusDays(3), "near");
+        wheel.schedule(DAY, "first");
+        wheel.schedule(DAY.plusDays(70), "next turn");
+        assertEquals(4, wheel.size());
+
+        wheel.advance(DAY, fired::add);
+        assertEquals(new ArrayList<>(), fired);
+        wheel.advance(DAY.plusDays(4), fired::add);
+        assertEquals(List.of("first", "near"), fired);
+        wheel.advance(DAY.plusDays(1000), fired::add);
+        assertEquals(List.of("first", "near", "next turn", "far"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testPastDeadlineFiresOnNextAdvance() {
+        wheel.schedule(DAY, "a");
+        wheel.advance(DAY.plusDays(10), fired::add);
+        wheel.schedule(DAY.plusDays(2), "late");
+        wheel.schedule(DAY.plusDays(10), "b");
+        wheel.advance(DAY.plusDays(11), fired::add);
+        assertEquals(List.of("a", "late", "b"), fired);
+    }
+
+    @Test
+    void testScheduleFromAction() {
+        wheel.schedule(DAY, "a");
+        wheel.advance(DAY.plusDays(5), value -> {
+            fired.add(value);
+            if (value.equals("a"))
+                wheel.schedule(DAY.plusDays(3), "b");
+        });
+        assertEquals(List.of("a", "b"), fired);
+    }
+}
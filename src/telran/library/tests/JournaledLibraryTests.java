@@ -0,0 +1,222 @@
+package telran.library.tests;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.library.entities.enums.BooksReturnCode.*;
+
+import telran.library.entities.*;
+import telran.library.entities.models.*;
+
+public class JournaledLibraryTests {
+
+    final long ISBN1 = 1111111111L;
+    final long ISBN2 = 2222222222L;
+    final int READER_ID1 = 1;
+    final int READER_ID2 = 2;
+    final LocalDate PICK_DATE = LocalDate.of(2024, 3, 1);
+    final LocalDate RETURN_DATE = LocalDate.of(2024, 3, 20);
+
+    private Path dir;
+    private String snapshot;
+    private String journal;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("journal");
+        snapshot = dir.resolve("library.snapshot").toString();
+        journal = dir.resolve("library.journal").toString();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path p : files.toList())
+                Files.delete(p);
+        }
+        Files.delete(dir);
+    }
+
+    private void fill(ILibrary library) {
+        library.addBookItem(new Book(ISBN1, "author1", "title1", 2, 5));
+        library.addBookItem(new Book(ISBN2, "author2", "title2", 1, 5));
+        library.addReader(new Reader(READER_ID1, "name1", "phone1", LocalDate.of(1990, 1, 1)));
+        library.addReader(new Reader(READER_ID2, "name2", "phone2", LocalDate.of(2001, 1, 1)));
+        library.addBookExemplars(ISBN1, 3);
+        library.pickBook(ISBN1, READER_ID1, PICK_DATE);
+        library.pickBook(ISBN2, READER_ID2, PICK_DATE);
+        library.returnBook(ISBN1, READER_ID1, RETURN_DATE);
+        library.removeBook(ISBN2);
+    }
+
+    private void assertFilled(ILibrary library) {
+        assertEquals(5, library.getBookItem(ISBN1).getAmount());
+        assertEquals(0, library.getBookItem(ISBN1).getAmountInUse());
+        assertEquals(-1, library.getBookItem(ISBN2).getAmount());
+        assertEquals(1, library.getBookItem(ISBN2).getAmountInUse());
+        assertEquals(2, library.getPickedRecordsAtDates(PICK_DATE, RETURN_DATE).size());
+        assertEquals(List.of(new ReaderDelay(library.getReader(READER_ID1), 14)),
+                library.getReadersDelayedBooks());
+    }
+
+    @Test
+    void testReplayAfterRestart() throws IOException {
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            fill(library);
+            assertFilled(library);
+        }
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            assertFilled(library);
+            RemovedBookData removed = library.returnBook(ISBN2, READER_ID2, RETURN_DATE);
+            assertEquals(1, removed.getRecords().size());
+        }
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            assertNull(library.getBookItem(ISBN2));
+        }
+    }
+
+    @Test
+    void testBatchReplay() throws IOException {
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            fill(library);
+            BatchResult res = library.pickBooks(READER_ID2, List.of(ISBN1, ISBN2), RETURN_DATE);
+            assertEquals(OK, res.get(0));
+            assertEquals(NO_BOOK_ITEM, res.get(1));
+            library.returnBooks(READER_ID2, List.of(ISBN1), RETURN_DATE.plusDays(1));
+            library.pickBooks(READER_ID1, List.of(ISBN1), RETURN_DATE.plusDays(1));
+        }
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            assertEquals(1, library.getBookItem(ISBN1).getAmountInUse());
+            assertEquals(1, library.getReaderOpenLoans(READER_ID1).size());
+            //У второго читателя осталась только книга, ожидающая удаления
+            assertEquals(ISBN2, library.getReaderOpenLoans(READER_ID2).get(0).getIsbn());
+            assertEquals(1, library.getReaderOpenLoans(READER_ID2).size());
+            assertEquals(2, library.getReadersPickedBook(ISBN1).size());
+        }
+    }
+
+    @Test
+    void testHoldsReplay() throws IOException {
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            fill(library);
+            //ISBN2 помечена на удаление, единственный экземпляр ISBN3 у первого читателя
+            library.addBookItem(new Book(3333333333L, "author2", "title3", 1, 5));
+            library.pickBook(3333333333L, READER_ID1, PICK_DATE);
+            assertEquals(OK, library.placeHold(3333333333L, READER_ID2, PICK_DATE));
+            library.returnBook(3333333333L, READER_ID1, RETURN_DATE);
+            assertEquals(NO_BOOK_ITEM, library.placeHold(ISBN2, READER_ID1, PICK_DATE));
+        }
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            Hold hold = library.getReaderHolds(READER_ID2).get(0);
+            assertEquals(RETURN_DATE, hold.getReadyDate());
+            assertEquals(1, library.getBookItem(3333333333L).getAmountInUse());
+            assertEquals(List.of(hold), library.expireHolds(hold.getExpireDate().plusDays(1)));
+            //Добавленный экземпляр откладывается второму с датой операции, а не текущей
+            library.pickBook(3333333333L, READER_ID2, RETURN_DATE);
+            assertEquals(OK, library.placeHold(3333333333L, READER_ID1, RETURN_DATE));
+            assertEquals(OK, library.addBookExemplars(3333333333L, 1, RETURN_DATE.plusDays(2)));
+        }
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            assertEquals(new ArrayList<>(), library.getReaderHolds(READER_ID2));
+            Hold hold = library.getReaderHolds(READER_ID1).get(0);
+            assertEquals(RETURN_DATE.plusDays(2), hold.getReadyDate());
+            assertEquals(RETURN_DATE.plusDays(9), hold.getExpireDate());
+            assertEquals(2, library.getBookItem(3333333333L).getAmountInUse());
+        }
+    }
+
+    @Test
+    void testFailedOperationIsNotJournaled() throws IOException {
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            fill(library);
+            assertEquals(NO_BOOK_ITEM, library.addBookItem(null));
+            library.addBookItem(new Book(3333333333L, "author2", "title3", 1, 5));
+            library.pickBook(3333333333L, READER_ID1, PICK_DATE);
+            library.placeHold(3333333333L, READER_ID2, PICK_DATE);
+            //Срок получения брони от LocalDate.MAX не вычисляется - возврат падает
+            // и в журнал не попадает, следующие операции проигрываются
+            assertThrows(RuntimeException.class,
+                    () -> library.returnBook(3333333333L, READER_ID1, LocalDate.MAX));
+            library.pickBook(ISBN1, READER_ID2, RETURN_DATE);
+        }
+        for (int i = 0; i < 2; i++) {
+            try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+                assertEquals(1, library.getBookItem(ISBN1).getAmountInUse());
+                assertEquals(1, library.getReaderOpenLoans(READER_ID1).size());
+                assertFalse(library.getBookHolds(3333333333L).get(0).isReady());
+            }
+        }
+    }
+
+    @Test
+    void testCompaction() throws IOException {
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal, 200)) {
+            fill(library);
+        }
+        assertTrue(Files.exists(Path.of(snapshot)));
+        assertTrue(Files.size(Path.of(journal)) < 200);
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            assertFilled(library);
+        }
+    }
+
+    @Test
+    void testStaleJournalIsNotReplayedTwice() throws IOException {
+        Path stale = Path.of(journal + ".copy");
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            fill(library);
+            Files.copy(Path.of(journal), stale);
+            library.compact();
+        }
+        //Сбой после записи снимка, но до очистки журнала
+        Files.copy(stale, Path.of(journal), StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(stale);
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            assertFilled(library);
+        }
+    }
+
+    @Test
+    void testWritesAfterStaleJournalSurvive() throws IOException {
+        Path stale = Path.of(journal + ".copy");
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            fill(library);
+            Files.copy(Path.of(journal), stale);
+            library.compact();
+        }
+        //Сбой между заменой снимка и очисткой журнала, затем новые записи
+        Files.copy(stale, Path.of(journal), StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(stale);
+        Book book = new Book(3333333333L, "author3", "title3", 1, 5);
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            assertEquals(OK, library.addBookItem(book));
+        }
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            assertFilled(library);
+            assertEquals(book, library.getBookItem(book.getIsbn()));
+        }
+    }
+
+    @Test
+    void testTornTailIsIgnored() throws IOException {
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            fill(library);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            //Потеряна только последняя операция removeBook
+            assertEquals(1, library.getBookItem(ISBN2).getAmount());
+            assertEquals(OK, library.addBookExemplars(ISBN2, 1));
+        }
+        try (JournaledLibrary library = new JournaledLibrary(snapshot, journal)) {
+            assertEquals(2, library.getBookItem(ISBN2).getAmount());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package telran.library.tests;
+
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import telran.utils.LatencyHistogram;
+import telran.utils.ZipfSampler;
+
+public class LatencyHistogramTests {
+
+    @Test
+    void testPercentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[100_000];
+        Random random = new Random(1);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 20);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double p : new double[] {50, 90, 99, 99.9}) {
+            long expected = values[(int) Math.ceil(values.length * p / 100) - 1];
+            long actual = histogram.getPercentile(p);
+            assertTrue(actual >= expected && actual <= expected + expected / 64 + 1,
+                    p + ": " + expected + " vs " + actual);
+        }
+        assertEquals(values[values.length - 1], histogram.getPercentile(100));
+        assertEquals(values.length, histogram.getCount());
+    }
+
+    @Test
+    void testAddAndReset() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++)
+            first.record(i);
+        second.record(1_000_000);
+        first.add(second);
+
+        assertEquals(101, first.getCount());
+        assertEquals(1_000_000, first.getMax());
+        assertEquals(51, first.getPercentile(50));
+        first.reset();
+        assertEquals(0, first.getCount());
+        assertEquals(0, first.getPercentile(99));
+    }
+
+    @Test
+    void testZipfSkew() {
+        ZipfSampler sampler = new ZipfSampler(1000, 1.0);
+        int[] hits = new int[sampler.size()];
+        Random random = new Random(2);
+        for (int i = 0; i < 100_000; i++)
+            hits[sampler.next(random)]++;
+        //Ранг 0 встречается примерно вдвое чаще ранга 1 и много чаще хвоста
+        assertTrue(hits[0] > 1.7 * hits[1] && hits[0] < 2.3 * hits[1]);
+        assertTrue(hits[0] > 50 * hits[999]);
+    }
+}
@@ -0,0 +1,155 @@
+package telran.library.tests;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.library.entities.enums.BooksReturnCode.*;
+
+import telran.library.entities.*;
+import telran.library.entities.models.*;
+
+public class LibraryMapsSnapshotTests {
+
+    final long ISBN1 = 1111111111L;
+    final long ISBN2 = 2222222222L;
+    final long ISBN3 = 3333333333L;
+    final int READER_ID1 = 1;
+    final int READER_ID2 = 2;
+    final LocalDate TODAY = LocalDate.of(2024, 3, 20);
+
+    private LibraryMaps library;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        library = new LibraryMaps();
+        library.addBookItem(new Book(ISBN1, "author1", "title1", 3, 5));
+        library.addBookItem(new Book(ISBN2, "author1", null, 2, 7));
+        library.addBookItem(new Book(ISBN3, "author2", "title3", 1, 10));
+        library.addReader(new Reader(READER_ID1, "name1", "0501111111", LocalDate.of(1980, 6, 1)));
+        library.addReader(new Reader(READER_ID2, "name2", null, null));
+
+        library.pickBook(ISBN1, READER_ID1, TODAY.minusDays(20));
+        library.returnBook(ISBN1, READER_ID1, TODAY.minusDays(8));
+        library.pickBook(ISBN1, READER_ID2, TODAY.minusDays(10));
+        library.pickBook(ISBN2, READER_ID1, TODAY.minusDays(3));
+        library.pickBook(ISBN3, READER_ID2, TODAY.minusDays(2));
+        library.removeBook(ISBN3);
+
+        file = Files.createTempFile("library", ".snapshot");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void testSaveLoadRoundTrip() {
+        library.save(file.toString());
+        LibraryMaps restored = LibraryMaps.load(file.toString());
+        assertNotNull(restored);
+
+        for (long isbn : new long[]{ISBN1, ISBN2, ISBN3}) {
+            Book expected = library.getBookItem(isbn);
+            Book actual = restored.getBookItem(isbn);
+            assertEquals(expected.toString(), actual.toString());
+        }
+        assertEquals(library.getReader(READER_ID2).toString(), restored.getReader(READER_ID2).toString());
+
+        assertEquals(library.getPickedRecordsAtDates(TODAY.minusDays(30), TODAY).toString(),
+                restored.getPickedRecordsAtDates(TODAY.minusDays(30), TODAY).toString());
+        assertEquals(library.getReaderOpenLoans(READER_ID2).size(),
+                restored.getReaderOpenLoans(READER_ID2).size());
+        assertEquals(library.getReadersDelayingBooks(TODAY), restored.getReadersDelayingBooks(TODAY));
+        assertEquals(library.getReadersDelayedBooks(), restored.getReadersDelayedBooks());
+        assertEquals(library.getMostPopularAuthors(), restored.getMostPopularAuthors());
+        assertEquals(library.getMostActiveReaders(TODAY.minusDays(30), TODAY),
+                restored.getMostActiveReaders(TODAY.minusDays(30), TODAY));
+    }
+
+    @Test
+    void testLoadedLibraryKeepsWorking() {
+        library.save(file.toString());
+        LibraryMaps restored = LibraryMaps.load(file.toString());
+
+        //Открытые выдачи и пометка на удаление восстановлены
+        assertEquals(READER_READS_IT, restored.pickBook(ISBN2, READER_ID1, TODAY));
+        assertEquals(NO_BOOK_ITEM, restored.pickBook(ISBN3, READER_ID1, TODAY));
+
+        RemovedBookData removed = restored.returnBook(ISBN3, READER_ID2, TODAY);
+        assertEquals(1, removed.getRecords().size());
+        assertNull(restored.getBookItem(ISBN3));
+    }
+
+    @Test
+    void testHoldsRoundTrip() {
+        //Единственный экземпляр на руках: в очереди двое, один с приоритетом
+        long isbn = 4444444444L;
+        library.addBookItem(new Book(isbn, "author2", "title4", 1, 5));
+        library.addReader(new Reader(3, "name3", null, null));
+        library.pickBook(isbn, READER_ID1, TODAY.minusDays(5));
+        library.placeHold(isbn, READER_ID2, TODAY.minusDays(4));
+        library.placeHold(isbn, 3, TODAY.minusDays(3), 1);
+        library.placeHold(ISBN2, READER_ID2, TODAY.minusDays(1));
+
+        library.save(file.toString());
+        LibraryMaps restored = LibraryMaps.load(file.toString());
+        assertEquals(library.getBookHolds(isbn), restored.getBookHolds(isbn));
+        assertEquals(library.getReaderHolds(READER_ID2), restored.getReaderHolds(READER_ID2));
+
+        restored.returnBook(isbn, READER_ID1, TODAY);
+        assertTrue(restored.getReaderHolds(3).get(0).isReady());
+        assertEquals(OK, restored.pickBook(isbn, 3, TODAY));
+    }
+
+    @Test
+    void testLoadedAvailabilityCountsWaitingHolds() throws IOException {
+        long isbn = 4444444444L;
+        library.addBookItem(new Book(isbn, "a4", "t4", 1, 5));
+        library.pickBook(isbn, READER_ID1, TODAY.minusDays(5));
+        library.placeHold(isbn, READER_ID2, TODAY.minusDays(4));
+        library.save(file.toString());
+
+        //Снимок прежней версии: экземпляр добавлен, но не отложен для очереди.
+        // Свободный экземпляр нужен ожидающему, на витрину книга не попадает
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int offset = 0;
+        while (buffer.getLong(offset) != isbn)
+            offset++;
+        //isbn, затем название и автор: флаг, длина и два символа
+        buffer.putInt(offset + Long.BYTES + 2 * 5, 2);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - Long.BYTES);
+        buffer.putLong(bytes.length - Long.BYTES, crc.getValue());
+        Files.write(file, bytes);
+
+        LibraryMaps restored = LibraryMaps.load(file.toString());
+        assertEquals(2, restored.getBookItem(isbn).getAmount());
+        assertEquals(new ArrayList<>(), restored.getAvailableBooks().stream()
+                .filter(b -> b.getIsbn() == isbn).toList());
+        assertEquals(new ArrayList<>(), restored.getBooksAuthor("a4"));
+    }
+
+    @Test
+    void testLoadCorruptedSnapshot() throws IOException {
+        library.save(file.toString());
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(20);
+            int b = raf.read();
+            raf.seek(20);
+            raf.write(b ^ 0xFF);
+        }
+        assertNull(LibraryMaps.load(file.toString()));
+        assertNull(LibraryMaps.load(file.toString() + ".missing"));
+    }
+}
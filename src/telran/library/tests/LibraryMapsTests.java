@@ -1,5 +1,8 @@
 package telran.library.tests;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.*;
 
@@ -47,12 +50,24 @@ public class LibraryMapsTests {
 
     private Book[] books = new Book[6];
     private Reader[] readers = new Reader[3];
-    private ILibrary library;
+    protected ILibrary library;
+
+    protected ILibrary createLibrary() {
+        return new LibraryMaps();
+    }
+
+    //Сохраняет library в fileName и загружает заново; null - реализация не сохраняется
+    protected ILibrary reload(String fileName) {
+        if (!(library instanceof LibraryMaps))
+            return null;
+        ((LibraryMaps) library).save(fileName);
+        return LibraryMaps.load(fileName);
+    }
 
     @BeforeEach
     void setUp() {
 
-        library = new LibraryMaps();
+        library = createLibrary();
 
         //6 книг трех авторов (3 + 2 + 1), название одной книги повторяется
         books[0] = new Book(ISBN1, AUTHOR1, TITLE + "1", AMOUNT, PICK_PERIOD);
@@ -135,6 +150,65 @@ public class LibraryMapsTests {
         assertEquals(AMOUNT + 5, library.getBookItem(ISBN1).getAmount());
     }
 
+    @Test
+    void testAddBookItemsBatch() {
+        List<Book> batch = new ArrayList<>();
+        batch.add(new Book(ISBN7, AUTHOR4, TITLE, AMOUNT, PICK_PERIOD));
+        batch.add(new Book(ISBN1, AUTHOR4, TITLE, AMOUNT, PICK_PERIOD));
+        batch.add(new Book(ISBN7 + 1, AUTHOR4, TITLE, AMOUNT, PICK_PERIOD_NEGATIVE_MIN));
+        batch.add(null);
+        batch.add(new Book(ISBN7, AUTHOR3, TITLE, AMOUNT, PICK_PERIOD));
+
+        BatchResult res = library.addBookItems(batch);
+
+        assertEquals(5, res.size());
+        assertEquals(OK, res.get(0));
+        assertEquals(BOOK_ITEM_EXISTS, res.get(1));
+        assertEquals(PICK_PERIOD_LESS_MIN, res.get(2));
+        assertEquals(NO_BOOK_ITEM, res.get(3));
+        assertEquals(BOOK_ITEM_EXISTS, res.get(4));
+        assertFalse(res.isAllOk());
+        assertEquals(1, library.getBooksAuthor(AUTHOR4).size());
+        assertEquals(books[0], library.getBookItem(ISBN1));
+    }
+
+    @Test
+    void testAddReadersAndExemplarsBatch() {
+        BatchResult res = library.addReaders(Arrays.asList(
+                new Reader(READER_ID4, NAME1, PHONE1, BIRTH_DATE1),
+                new Reader(READER_ID1, NAME2, PHONE2, BIRTH_DATE2),
+                null));
+        assertEquals(OK, res.get(0));
+        assertEquals(READER_EXISTS, res.get(1));
+        assertEquals(NO_READER, res.get(2));
+        assertNotNull(library.getReader(READER_ID4));
+
+        Map<Long, Integer> exemplars = new LinkedHashMap<>();
+        exemplars.put(ISBN1, 5);
+        exemplars.put(ISBN7, 5);
+        res = library.addBookExemplars(exemplars);
+        assertEquals(OK, res.get(0));
+        assertEquals(NO_BOOK_ITEM, res.get(1));
+        assertEquals(AMOUNT + 5, library.getBookItem(ISBN1).getAmount());
+    }
+
+    @Test
+    void testAddBookItemsLargeBatch() {
+        //Больше порога параллельной проверки
+        List<Book> batch = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++)
+            batch.add(new Book(ISBN7 + i, AUTHOR4, TITLE,
+                    AMOUNT, i % 10 == 0 ? PICK_PERIOD_NEGATIVE_MAX : PICK_PERIOD));
+
+        BatchResult res = library.addBookItems(batch);
+
+        assertEquals(45_000, res.count(OK));
+        assertEquals(5_000, res.count(PICK_PERIOD_GRATER_MAX));
+        assertEquals(45_000, library.getBooksAuthor(AUTHOR4).size());
+        assertNull(library.getBookItem(ISBN7));
+        assertNotNull(library.getBookItem(ISBN7 + 1));
+    }
+
     @Test
     void testAmountInUse() {
         assertEquals(AMOUNT, library.getBookItem(ISBN1).getAmount());
@@ -161,6 +235,19 @@ public class LibraryMapsTests {
         assertEquals(READER_READS_IT, library.pickBook(ISBN3, READER_ID1, PICK_DATE1));
     }
 
+    @Test
+    void testPickDateOutOfRange() {
+        //Дата вне индексов по дням отклоняется до резервирования экземпляра
+        for (LocalDate date : List.of(LocalDate.of(1999, 12, 31), LocalDate.of(3000, 1, 1), LocalDate.MAX)) {
+            assertEquals(WRONG_BOOK_PICK_PERIOD, library.pickBook(ISBN1, READER_ID1, date));
+            assertEquals(2, library.pickBooks(READER_ID1, List.of(ISBN1, ISBN2), date)
+                    .count(WRONG_BOOK_PICK_PERIOD));
+        }
+        assertEquals(0, library.getBookItem(ISBN1).getAmountInUse());
+        assertEquals(new ArrayList<>(), library.getReaderOpenLoans(READER_ID1));
+        assertEquals(OK, library.pickBook(ISBN1, READER_ID1, PICK_DATE1));
+    }
+
     @Test
     void getBooksPickedByReader() {
         List<Book> expected = new ArrayList<>();
@@ -175,6 +262,26 @@ public class LibraryMapsTests {
         assertEquals(expected, library.getBooksPickedByReader(READER_ID1));
     }
 
+    @Test
+    void testGetReaderOpenLoans() {
+        assertEquals(new ArrayList<>(), library.getReaderOpenLoans(READER_ID1));
+
+        library.pickBook(ISBN1, READER_ID1, PICK_DATE2);
+        library.pickBook(ISBN2, READER_ID1, PICK_DATE2);
+        library.pickBook(ISBN3, READER_ID2, PICK_DATE2);
+        List<PickRecord> loans = library.getReaderOpenLoans(READER_ID1);
+        assertEquals(2, loans.size());
+        assertTrue(loans.contains(new PickRecord(ISBN1, READER_ID1, PICK_DATE2)));
+        assertTrue(loans.contains(new PickRecord(ISBN2, READER_ID1, PICK_DATE2)));
+
+        //Возвращенная книга уходит из открытых выдач, ее снова можно взять
+        library.returnBook(ISBN1, READER_ID1, PICK_DATE1);
+        assertEquals(List.of(new PickRecord(ISBN2, READER_ID1, PICK_DATE2))
+                , library.getReaderOpenLoans(READER_ID1));
+        assertEquals(OK, library.pickBook(ISBN1, READER_ID1, PICK_DATE1));
+        assertEquals(2, library.getReaderOpenLoans(READER_ID1).size());
+    }
+
     @Test
     void testGetReadersPickedBooks() {
         List<Reader> expected = new ArrayList<>();
@@ -203,6 +310,256 @@ public class LibraryMapsTests {
                 , library.getBooksAuthor(AUTHOR3));
     }
 
+    @Test
+    void testAvailableBooks() {
+        assertEquals(Set.of(books), Set.copyOf(library.getAvailableBooks()));
+
+        //Единственный экземпляр: выдача убирает книгу из доступных, возврат - возвращает
+        Book book = new Book(ISBN7, AUTHOR3, TITLE, 1, PICK_PERIOD);
+        library.addBookItem(book);
+        assertEquals(Set.of(books[5], book), Set.copyOf(library.getBooksAuthor(AUTHOR3)));
+        assertEquals(OK, library.pickBook(ISBN7, READER_ID1, PICK_DATE1));
+        assertEquals(List.of(books[5]), library.getBooksAuthor(AUTHOR3));
+        assertFalse(library.getAvailableBooks().contains(book));
+        library.returnBook(ISBN7, READER_ID1, PICK_DATE2);
+        assertTrue(library.getAvailableBooks().contains(book));
+
+        //Новые экземпляры снова делают книгу доступной
+        library.pickBook(ISBN7, READER_ID1, PICK_DATE2);
+        assertEquals(OK, library.addBookExemplars(ISBN7, 1));
+        assertTrue(library.getBooksAuthor(AUTHOR3).contains(book));
+
+        //Помеченная на удаление книга недоступна, даже пока экземпляр на руках
+        library.removeBook(ISBN7);
+        library.removeBook(ISBN6);
+        assertEquals(new ArrayList<>(), library.getBooksAuthor(AUTHOR3));
+        assertEquals(5, library.getAvailableBooks().size());
+    }
+
+    //Брони
+
+    //Единственный экземпляр ISBN7 на руках у READER_ID1
+    private Book addLoanedBook() {
+        Book book = new Book(ISBN7, AUTHOR3, TITLE, 1, PICK_PERIOD);
+        library.addBookItem(book);
+        library.pickBook(ISBN7, READER_ID1, PICK_DATE2);
+        return book;
+    }
+
+    @Test
+    void testPlaceHold() {
+        addLoanedBook();
+        assertEquals(OK, library.placeHold(ISBN7, READER_ID2, PICK_DATE2));
+        assertEquals(HOLD_EXISTS, library.placeHold(ISBN7, READER_ID2, PICK_DATE2));
+        assertEquals(READER_READS_IT, library.placeHold(ISBN7, READER_ID1, PICK_DATE2));
+        assertEquals(OK, library.placeHold(ISBN7, READER_ID3, PICK_DATE1, 1));
+        assertEquals(BOOKS_EXEMPLARS_AVAILABLE, library.placeHold(ISBN1, READER_ID2, PICK_DATE2));
+        assertEquals(NO_BOOK_ITEM, library.placeHold(ISBN7 + 1, READER_ID2, PICK_DATE2));
+        assertEquals(NO_READER, library.placeHold(ISBN7, READER_ID4, PICK_DATE2));
+
+        //Больший приоритет раньше, несмотря на более позднюю бронь
+        List<Hold> queue = library.getBookHolds(ISBN7);
+        assertEquals(List.of(READER_ID3, READER_ID2), queue.stream().map(Hold::getReaderId).toList());
+        assertFalse(queue.get(0).isReady());
+        assertEquals(PICK_DATE2.plusDays(60), queue.get(1).getExpireDate());
+        assertEquals(List.of(queue.get(1)), library.getReaderHolds(READER_ID2));
+    }
+
+    @Test
+    void testReturnGoesToHolder() {
+        addLoanedBook();
+        library.placeHold(ISBN7, READER_ID2, PICK_DATE2);
+        library.placeHold(ISBN7, READER_ID3, PICK_DATE2);
+
+        //Возвращенный экземпляр откладывается первому в очереди
+        library.returnBook(ISBN7, READER_ID1, PICK_DATE1);
+        Hold ready = library.getReaderHolds(READER_ID2).get(0);
+        assertTrue(ready.isReady());
+        assertEquals(PICK_DATE1, ready.getReadyDate());
+        assertEquals(PICK_DATE1.plusDays(7), ready.getExpireDate());
+        assertFalse(library.getAvailableBooks().contains(library.getBookItem(ISBN7)));
+
+        assertEquals(NO_BOOKS_EXEMPLARS, library.pickBook(ISBN7, READER_ID1, PICK_DATE1));
+        assertEquals(NO_BOOKS_EXEMPLARS, library.pickBook(ISBN7, READER_ID3, PICK_DATE1));
+        assertEquals(OK, library.pickBook(ISBN7, READER_ID2, PICK_DATE1));
+        assertEquals(new ArrayList<>(), library.getReaderHolds(READER_ID2));
+        assertEquals(1, library.getBookItem(ISBN7).getAmountInUse());
+        assertEquals(List.of(READER_ID3), library.getBookHolds(ISBN7).stream().map(Hold::getReaderId).toList());
+
+        //Новый экземпляр нужен очереди, остальным он не достается
+        library.addBookExemplars(ISBN7, 1, PICK_DATE1);
+        assertEquals(NO_BOOKS_EXEMPLARS, library.pickBook(ISBN7, READER_ID1, PICK_DATE1));
+        assertEquals(OK, library.pickBook(ISBN7, READER_ID3, PICK_DATE1));
+        assertEquals(new ArrayList<>(), library.getBookHolds(ISBN7));
+    }
+
+    @Test
+    void testAvailabilityFollowsHolds() {
+        Book book = addLoanedBook();
+        library.placeHold(ISBN7, READER_ID2, PICK_DATE2);
+        library.placeHold(ISBN7, READER_ID3, PICK_DATE2);
+
+        //Отложенный экземпляр недоступен, пока бронь готова
+        library.returnBook(ISBN7, READER_ID1, PICK_DATE1);
+        assertFalse(library.getAvailableBooks().contains(book));
+        assertEquals(OK, library.cancelHold(ISBN7, READER_ID2, PICK_DATE1));
+        assertFalse(library.getBooksAuthor(AUTHOR3).contains(book));
+
+        //Последняя бронь снята по сроку - экземпляр снова на полке
+        assertEquals(1, library.expireHolds(PICK_DATE1.plusDays(8)).size());
+        assertTrue(library.getAvailableBooks().contains(book));
+        assertTrue(library.getBooksAuthor(AUTHOR3).contains(book));
+        assertEquals(BOOKS_EXEMPLARS_AVAILABLE, library.placeHold(ISBN7, READER_ID2, PICK_DATE1));
+        assertTrue(library.getAvailableBooks().contains(book));
+    }
+
+    @Test
+    void testAddedExemplarsUseOperationDate() {
+        addLoanedBook();
+        library.placeHold(ISBN7, READER_ID2, PICK_DATE2);
+        library.placeHold(ISBN7, READER_ID3, PICK_DATE2);
+
+        //Срок получения считается от даты операции, а не от текущей
+        LocalDate date = PICK_DATE1.plusDays(30);
+        assertEquals(WRONG_BOOK_PICK_PERIOD, library.addBookExemplars(ISBN7, 1, null));
+        assertEquals(OK, library.addBookExemplars(ISBN7, 1, date));
+        Hold ready = library.getReaderHolds(READER_ID2).get(0);
+        assertEquals(date, ready.getReadyDate());
+        assertEquals(new ArrayList<>(), library.expireHolds(date.plusDays(7)));
+        assertEquals(List.of(ready), library.expireHolds(date.plusDays(8)));
+        //Снятая по сроку бронь передает экземпляр следующему
+        assertTrue(library.getReaderHolds(READER_ID3).get(0).isReady());
+    }
+
+    @Test
+    void testAddedExemplarsGoToQueueHead() {
+        addLoanedBook();
+        library.placeHold(ISBN7, READER_ID2, PICK_DATE2);
+        library.placeHold(ISBN7, READER_ID3, PICK_DATE2);
+
+        //Новый экземпляр откладывается первому в очереди, второй его не получает
+        assertEquals(OK, library.addBookExemplars(ISBN7, 1, PICK_DATE1));
+        Hold ready = library.getBookHolds(ISBN7).get(0);
+        assertEquals(READER_ID2, ready.getReaderId());
+        assertTrue(ready.isReady());
+        assertFalse(library.getAvailableBooks().contains(library.getBookItem(ISBN7)));
+        assertEquals(NO_BOOKS_EXEMPLARS, library.pickBook(ISBN7, READER_ID3, PICK_DATE1));
+        assertEquals(OK, library.pickBook(ISBN7, READER_ID2, PICK_DATE1));
+        assertEquals(List.of(READER_ID3), library.getBookHolds(ISBN7).stream().map(Hold::getReaderId).toList());
+    }
+
+    @Test
+    void testAvailabilitySurvivesReload() throws IOException {
+        addLoanedBook();
+        library.placeHold(ISBN7, READER_ID2, PICK_DATE2);
+        Path dir = Files.createTempDirectory("reload");
+        try {
+            ILibrary loaded = reload(dir.resolve("library.snapshot").toString());
+            if (loaded == null)
+                return;
+            library = loaded;
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path p : files.toList())
+                    Files.delete(p);
+            }
+            Files.delete(dir);
+        }
+
+        //Очередь броней после загрузки по-прежнему держит книгу
+        assertFalse(library.getAvailableBooks().contains(library.getBookItem(ISBN7)));
+        assertFalse(library.getBooksAuthor(AUTHOR3).contains(library.getBookItem(ISBN7)));
+        assertEquals(BOOKS_EXEMPLARS_AVAILABLE, library.placeHold(ISBN1, READER_ID2, PICK_DATE2));
+        library.returnBook(ISBN7, READER_ID1, PICK_DATE1);
+        assertEquals(NO_BOOKS_EXEMPLARS, library.pickBook(ISBN7, READER_ID3, PICK_DATE1));
+        assertEquals(OK, library.pickBook(ISBN7, READER_ID2, PICK_DATE1));
+    }
+
+    @Test
+    void testCancelAndExpireHolds() {
+        addLoanedBook();
+        library.placeHold(ISBN7, READER_ID2, PICK_DATE2);
+        library.placeHold(ISBN7, READER_ID3, PICK_DATE2);
+        assertEquals(NO_HOLD, library.cancelHold(ISBN7, READER_ID1, PICK_DATE1));
+
+        //Отмена отложенной брони передает экземпляр следующему
+        library.returnBook(ISBN7, READER_ID1, PICK_DATE2);
+        assertEquals(OK, library.cancelHold(ISBN7, READER_ID2, PICK_DATE1));
+        Hold ready = library.getBookHolds(ISBN7).get(0);
+        assertEquals(READER_ID3, ready.getReaderId());
+        assertTrue(ready.isReady());
+
+        //Срок получения включает expireDate
+        assertEquals(new ArrayList<>(), library.expireHolds(ready.getExpireDate()));
+        assertEquals(List.of(ready), library.expireHolds(ready.getExpireDate().plusDays(1)));
+        assertEquals(new ArrayList<>(), library.getBookHolds(ISBN7));
+        assertEquals(0, library.getBookItem(ISBN7).getAmountInUse());
+        assertTrue(library.getBooksAuthor(AUTHOR3).contains(library.getBookItem(ISBN7)));
+
+        //Ожидающая бронь истекает через 60 дней
+        library.pickBook(ISBN7, READER_ID1, PICK_DATE1);
+        library.placeHold(ISBN7, READER_ID2, PICK_DATE1);
+        assertEquals(new ArrayList<>(), library.expireHolds(PICK_DATE1.plusDays(60)));
+        assertEquals(1, library.expireHolds(PICK_DATE1.plusDays(61)).size());
+        assertEquals(new ArrayList<>(), library.getReaderHolds(READER_ID2));
+    }
+
+    @Test
+    void testRemoveBookCancelsHolds() {
+        addLoanedBook();
+        library.placeHold(ISBN7, READER_ID2, PICK_DATE2);
+        library.placeHold(ISBN7, READER_ID3, PICK_DATE2);
+        library.returnBook(ISBN7, READER_ID1, PICK_DATE1);
+
+        //Отложенный экземпляр возвращается, книга удаляется сразу
+        RemovedBookData removed = library.removeBook(ISBN7);
+        assertNotNull(removed.getRecords());
+        assertNull(library.getBookItem(ISBN7));
+        assertEquals(new ArrayList<>(), library.getBookHolds(ISBN7));
+        assertEquals(new ArrayList<>(), library.getReaderHolds(READER_ID2));
+        assertEquals(new ArrayList<>(), library.getReaderHolds(READER_ID3));
+        assertEquals(new ArrayList<>(), library.expireHolds(PICK_DATE1.plusDays(100)));
+    }
+
+    @Test
+    void testFindBooksByToken() {
+        assertEquals(Set.of(books[0], books[1], books[2]), Set.copyOf(library.findBooksByToken("AUTHOR1")));
+        //Одинаковое название у книг разных авторов
+        assertEquals(Set.of(books[0], books[3]), Set.copyOf(library.findBooksByToken(TITLE + "1")));
+        assertEquals(List.of(books[3]), library.findBooksByToken(AUTHOR2 + ", " + TITLE + "1"));
+        assertEquals(new ArrayList<>(), library.findBooksByToken("unknown"));
+        assertEquals(new ArrayList<>(), library.findBooksByToken(" "));
+        assertEquals(new ArrayList<>(), library.findBooksByToken(null));
+
+        Book book = new Book(ISBN7, "Gabriel García Márquez", "Cien años de soledad", AMOUNT, PICK_PERIOD);
+        library.addBookItem(book);
+        assertEquals(List.of(book), library.findBooksByToken("garcia marquez"));
+        assertEquals(List.of(book), library.findBooksByToken("Años"));
+
+        //Удаленная книга больше не находится
+        library.removeBook(ISBN4);
+        assertEquals(List.of(books[0]), library.findBooksByToken(TITLE + "1"));
+        assertEquals(List.of(books[4]), library.findBooksByToken(AUTHOR2));
+    }
+
+    @Test
+    void testFindBooksByPrefix() {
+        List<Book> all = library.findBooksByPrefix("auth", 100);
+        assertEquals(6, all.size());
+        assertEquals(Set.of(books), Set.copyOf(all));
+        assertEquals(2, library.findBooksByPrefix("auth", 2).size());
+        //Целые слова запроса обязательны, последнее - начало слова
+        assertEquals(Set.of(books[3], books[4]), Set.copyOf(library.findBooksByPrefix(AUTHOR2 + " boo", 10)));
+        assertEquals(List.of(books[5]), library.findBooksByPrefix("Book_Title6 AUTH", 10));
+        assertEquals(new ArrayList<>(), library.findBooksByPrefix("unknown auth", 10));
+        assertEquals(new ArrayList<>(), library.findBooksByPrefix("auth", 0));
+        assertEquals(new ArrayList<>(), library.findBooksByPrefix("", 10));
+
+        library.removeBook(ISBN6);
+        assertEquals(5, library.findBooksByPrefix("auth", 100).size());
+        assertEquals(new ArrayList<>(), library.findBooksByPrefix(AUTHOR3.substring(0, 6) + "3", 10));
+    }
+
     @Test
     void testGetPickedRecordsAtDates() {
         assertEquals(new ArrayList<>(), library.getPickedRecordsAtDates(
@@ -223,6 +580,26 @@ public class LibraryMapsTests {
         assertFalse(actual.contains(new PickRecord(ISBN3, READER_ID2,PICK_DATE2.minusDays(1) )));
     }
 
+    @Test
+    void testStreamAndForEachPickedRecords() {
+        library.pickBook(ISBN1, READER_ID1, PICK_DATE2.minusDays(4));
+        library.pickBook(ISBN2, READER_ID1, PICK_DATE2.minusDays(3));
+        library.pickBook(ISBN1, READER_ID2, PICK_DATE2.minusDays(2));
+        library.pickBook(ISBN3, READER_ID2, PICK_DATE2.minusDays(1));
+
+        List<PickRecord> expected = library.getPickedRecordsAtDates(
+                PICK_DATE2.minusDays(3), PICK_DATE2.minusDays(1));
+        assertEquals(expected, library.streamPickedRecordsAtDates(
+                PICK_DATE2.minusDays(3), PICK_DATE2.minusDays(1)).toList());
+
+        List<PickRecord> visited = new ArrayList<>();
+        library.forEachPickedRecord(PICK_DATE2.minusDays(3), PICK_DATE2.minusDays(1), visited::add);
+        assertEquals(expected, visited);
+
+        assertEquals(0, library.streamPickedRecordsAtDates(
+                PICK_DATE2, PICK_DATE2.minusDays(1)).count());
+    }
+
     //Sprint 3
 
     @Test
@@ -271,6 +648,34 @@ public class LibraryMapsTests {
         assertTrue(actual.contains(rbdBook1));
     }
 
+    @Test
+    void testRemoveAuthorWithHistory() {
+        //Истории выдач книг автора 1 и автора 2 у всех читателей
+        for (Reader reader : readers) {
+            for (Book book : books) {
+                if (book.getAuthor().equals(AUTHOR3)) continue;
+                library.pickBook(book.getIsbn(), reader.getReaderId(), PICK_DATE2);
+                library.returnBook(book.getIsbn(), reader.getReaderId(), PICK_DATE1);
+            }
+        }
+
+        assertEquals(3, library.removeAuthor(AUTHOR1).size());
+
+        for (Reader reader : readers) {
+            List<Book> picked = library.getBooksPickedByReader(reader.getReaderId());
+            assertEquals(2, picked.size());
+            assertTrue(picked.stream().allMatch(b -> b.getAuthor().equals(AUTHOR2)));
+        }
+        List<PickRecord> records = library.getPickedRecordsAtDates(PICK_DATE2, PICK_DATE1);
+        assertEquals(6, records.size());
+        assertTrue(records.stream().allMatch(r -> r.getIsbn() == ISBN4 || r.getIsbn() == ISBN5));
+
+        //Новая книга с тем же isbn не наследует историю удаленной
+        library.addBookItem(new Book(ISBN1, AUTHOR4, TITLE, AMOUNT, PICK_PERIOD));
+        assertEquals(2, library.getBooksPickedByReader(READER_ID1).size());
+        assertTrue(library.getReadersPickedBook(ISBN1).isEmpty());
+    }
+
     @Test
     void testReturnBookNegative() {
         library.pickBook(ISBN1, READER_ID1, PICK_DATE2);
@@ -309,6 +714,31 @@ public class LibraryMapsTests {
         assertEquals(PICK_DATE1, pickRecord.getReturnDate());
     }
 
+    @Test
+    void testPickAndReturnBooksBatch() {
+        library.pickBook(ISBN3, READER_ID1, PICK_DATE2);
+        BatchResult res = library.pickBooks(READER_ID1,
+                List.of(ISBN1, ISBN2, ISBN3, ISBN7), PICK_DATE2);
+
+        assertEquals(OK, res.get(0));
+        assertEquals(OK, res.get(1));
+        assertEquals(READER_READS_IT, res.get(2));
+        assertEquals(NO_BOOK_ITEM, res.get(3));
+        assertEquals(3, library.getReaderOpenLoans(READER_ID1).size());
+
+        //Несуществующий читатель - один и тот же код для всех книг
+        res = library.pickBooks(READER_ID4, List.of(ISBN1, ISBN2), PICK_DATE2);
+        assertEquals(2, res.count(NO_READER));
+
+        List<RemovedBookData> returned = library.returnBooks(READER_ID1,
+                List.of(ISBN1, ISBN2, ISBN4), PICK_DATE1);
+        assertEquals(new RemovedBookData(library.getBookItem(ISBN1), null), returned.get(0));
+        assertEquals(new RemovedBookData(library.getBookItem(ISBN2), null), returned.get(1));
+        assertEquals(new RemovedBookData(null, null), returned.get(2));
+        assertEquals(1, library.getReaderOpenLoans(READER_ID1).size());
+        assertEquals(0, library.getBookItem(ISBN1).getAmountInUse());
+    }
+
     @Test
     void testReturnBookWithRemove() {
         Book book = library.getBookItem(ISBN1);
@@ -394,6 +824,42 @@ public class LibraryMapsTests {
 
     }
 
+    @Test
+    void testPickPeriodChangedWhileOnLoan() {
+        library.pickBook(ISBN1, READER_ID1, PICK_DATE1.minusDays(PICK_PERIOD + 3));
+        library.getBookItem(ISBN1).setPickPeriod(PICK_PERIOD + 10);
+        //Срок выдачи запомнен при выдаче: обе аналитики видят те же 3 дня просрочки
+        ReaderDelay delay = new ReaderDelay(library.getReader(READER_ID1), 3);
+        assertEquals(List.of(delay), library.getReadersDelayingBooks(PICK_DATE1));
+
+        //Возвращенная выдача больше не просрочена, каким бы ни стал срок книги
+        library.returnBook(ISBN1, READER_ID1, PICK_DATE1);
+        assertEquals(List.of(delay), library.getReadersDelayedBooks());
+        assertEquals(3, library.getPickedRecordsAtDates(PICK_DATE1.minusDays(100), PICK_DATE1)
+                .get(0).getDelayDays());
+        assertEquals(new ArrayList<>(), library.getReadersDelayingBooks(PICK_DATE1.plusDays(100)));
+        assertEquals(new ArrayList<>(), library.getReaderOpenLoans(READER_ID1));
+    }
+
+    @Test
+    void testReturnsFromOneDueDate() {
+        //Все выдачи с одним сроком: возвраты в разном порядке убирают только свою выдачу
+        for (int id = 10; id < 20; id++) {
+            library.addReader(new Reader(id, NAME1, PHONE1, BIRTH_DATE1));
+            library.pickBook(ISBN1, id, PICK_DATE2);
+        }
+        for (int id : new int[]{14, 10, 19, 15, 11})
+            library.returnBook(ISBN1, id, PICK_DATE2);
+        Set<Integer> delaying = new HashSet<>();
+        library.getReadersDelayingBooks(PICK_DATE1.plusDays(PICK_PERIOD))
+                .forEach(delay -> delaying.add(delay.getReader().getReaderId()));
+        assertEquals(Set.of(12, 13, 16, 17, 18), delaying);
+
+        for (int id : new int[]{18, 12, 16, 13, 17})
+            library.returnBook(ISBN1, id, PICK_DATE1);
+        assertEquals(new ArrayList<>(), library.getReadersDelayingBooks(PICK_DATE1.plusDays(PICK_PERIOD)));
+    }
+
     @Test
     void testGetReadersDelayedBooks() {
         //Есть актуальная задержка, но книга на руках
@@ -454,6 +920,29 @@ public class LibraryMapsTests {
 
     }
 
+    @Test
+    void testGetMostPopularBooksAfterRemove() {
+        library.pickBook(ISBN1, READER_ID1, PICK_DATE1.minusDays(10));
+        library.returnBook(ISBN1, READER_ID1, PICK_DATE1.minusDays(9));
+        library.pickBook(ISBN1, READER_ID2, PICK_DATE1.minusDays(8));
+        library.returnBook(ISBN1, READER_ID2, PICK_DATE1.minusDays(7));
+        library.pickBook(ISBN2, READER_ID1, PICK_DATE1.minusDays(8));
+
+        assertEquals(List.of(library.getBookItem(ISBN1)), library.getMostPopularBooks(
+                PICK_DATE1.minusDays(10), PICK_DATE1, 0, 100));
+        assertEquals(List.of(library.getReader(READER_ID1)), library.getMostActiveReaders(
+                PICK_DATE1.minusDays(10), PICK_DATE1));
+
+        //Выдачи удаленной книги больше не учитываются
+        library.removeBook(ISBN1);
+        assertEquals(List.of(library.getBookItem(ISBN2)), library.getMostPopularBooks(
+                PICK_DATE1.minusDays(10), PICK_DATE1, 0, 100));
+        assertEquals(List.of(library.getReader(READER_ID1)), library.getMostActiveReaders(
+                PICK_DATE1.minusDays(10), PICK_DATE1));
+        assertEquals(new ArrayList<>(), library.getMostActiveReaders(
+                PICK_DATE1, PICK_DATE1.minusDays(10)));
+    }
+
     @Test
     void testGetMostPopularAuthors() {
         library.pickBook(ISBN1, READER_ID1, PICK_DATE1.minusDays(20)); //Не попадает по сроку
@@ -474,6 +963,33 @@ public class LibraryMapsTests {
 
     }
 
+    @Test
+    void testGetTopAuthors() {
+        assertEquals(new ArrayList<>(), library.getTopAuthors(2));
+
+        library.pickBook(ISBN1, READER_ID1, PICK_DATE2);
+        library.pickBook(ISBN2, READER_ID1, PICK_DATE2);
+        library.pickBook(ISBN3, READER_ID2, PICK_DATE2);
+        library.pickBook(ISBN4, READER_ID1, PICK_DATE2);
+        library.pickBook(ISBN5, READER_ID1, PICK_DATE2);
+        library.pickBook(ISBN6, READER_ID3, PICK_DATE2);
+
+        assertEquals(List.of(AUTHOR1), library.getTopAuthors(1));
+        assertEquals(List.of(AUTHOR1, AUTHOR2), library.getTopAuthors(2));
+        assertEquals(List.of(AUTHOR1, AUTHOR2, AUTHOR3), library.getTopAuthors(10));
+        assertEquals(new ArrayList<>(), library.getTopAuthors(0));
+
+        //Удаленные книги перестают учитываться в популярности
+        library.returnBook(ISBN1, READER_ID1, PICK_DATE1);
+        library.returnBook(ISBN2, READER_ID1, PICK_DATE1);
+        library.removeBook(ISBN1);
+        library.removeBook(ISBN2);
+        assertEquals(List.of(AUTHOR2), library.getMostPopularAuthors());
+        assertEquals(List.of(AUTHOR2), library.getTopAuthors(1));
+        assertEquals(AUTHOR2, library.getTopAuthors(3).get(0));
+        assertEquals(3, library.getTopAuthors(3).size());
+    }
+
     @Test
     void testGetMostActiveReadersNull() {
         library.pickBook(ISBN1, READER_ID1, PICK_DATE2.minusDays(20)); //Не попадает по сроку
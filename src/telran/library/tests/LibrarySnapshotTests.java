@@ -0,0 +1,250 @@
+package telran.library.tests;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.library.entities.enums.BooksReturnCode.*;
+
+import telran.library.entities.*;
+import telran.library.entities.models.*;
+
+public class LibrarySnapshotTests {
+
+    final int BOOKS = 40;
+    final int READERS = 30;
+    final int PICKS = 3_000;
+    final long FIRST_ISBN = 1_000_000_000L;
+    final LocalDate START = LocalDate.of(2023, 1, 1);
+    final LocalDate TODAY = START.plusDays(200);
+
+    private LibraryMaps library;
+
+    @BeforeEach
+    void setUp() {
+        setUp(new LibraryMaps());
+    }
+
+    private void setUp(LibraryMaps library) {
+        this.library = library;
+        for (int i = 0; i < BOOKS; i++)
+            library.addBookItem(new Book(FIRST_ISBN + i, "author" + i % 7, "title" + i, 5, 3 + i % 20));
+        for (int id = 0; id < READERS; id++)
+            library.addReader(new Reader(id, "name" + id, "050" + id,
+                    id % 10 == 0 ? null : LocalDate.of(1950 + id * 2, 1, 1)));
+        play(new Random(1), PICKS);
+        //Удаленные книги с историей: строки помечены, но еще не вычищены
+        library.removeBook(FIRST_ISBN);
+        library.removeBook(FIRST_ISBN + 1);
+    }
+
+    //Выдачи и возвраты по дням, часть книг возвращается с задержкой
+    private void play(Random random, int picks) {
+        for (int i = 0; i < picks; i++) {
+            long isbn = FIRST_ISBN + random.nextInt(BOOKS);
+            int readerId = random.nextInt(READERS);
+            LocalDate day = START.plusDays(i * 200L / picks);
+            if (library.pickBook(isbn, readerId, day) != OK)
+                library.returnBook(isbn, readerId, day.plusDays(random.nextInt(30)));
+        }
+    }
+
+    @Test
+    void testSnapshotAnswersLikeLibrary() {
+        LibrarySnapshot snapshot = library.snapshot();
+        assertLikeLibrary(snapshot);
+        assertEquals(library.getPickedRecordsAtDates(START, TODAY).size(), snapshot.size());
+        assertEquals(library.getBookItem(FIRST_ISBN + 2), snapshot.getBookItem(FIRST_ISBN + 2));
+        assertEquals(library.getBookItem(FIRST_ISBN), snapshot.getBookItem(FIRST_ISBN));
+        assertEquals(library.getReader(5), snapshot.getReader(5));
+    }
+
+    @Test
+    void testSnapshotIsFrozen() {
+        LibrarySnapshot snapshot = library.snapshot();
+        List<PickRecord> records = snapshot.getPickedRecordsAtDates(START, TODAY);
+        List<ReaderDelay> delaying = snapshot.getReadersDelayingBooks(TODAY);
+        List<ReaderDelay> delayed = snapshot.getReadersDelayedBooks();
+        List<String> authors = snapshot.getTopAuthors(7);
+        List<Reader> active = snapshot.getMostActiveReaders(START, TODAY);
+
+        //Возвращаем все, удаляем автора и выдаем заново
+        for (int id = 0; id < READERS; id++)
+            for (PickRecord r : library.getReaderOpenLoans(id))
+                library.returnBook(r.getIsbn(), id, TODAY);
+        library.removeAuthor("author3");
+        library.addReader(new Reader(READERS, "new", "0500000000", LocalDate.of(1990, 1, 1)));
+        play(new Random(2), PICKS);
+
+        assertEquals(records, snapshot.getPickedRecordsAtDates(START, TODAY));
+        assertEquals(delaying, snapshot.getReadersDelayingBooks(TODAY));
+        assertEquals(delayed, snapshot.getReadersDelayedBooks());
+        assertEquals(authors, snapshot.getTopAuthors(7));
+        assertEquals(active, snapshot.getMostActiveReaders(START, TODAY));
+        assertNull(snapshot.getReader(READERS));
+        assertLikeLibrary(library.snapshot());
+    }
+
+    @Test
+    void testRowsCopiedAfterLibraryChanges() {
+        List<PickRecord> records = library.getPickedRecordsAtDates(START, TODAY);
+        List<ReaderDelay> delaying = library.getReadersDelayingBooks(TODAY);
+        List<ReaderDelay> delayed = library.getReadersDelayedBooks();
+        Set<String> authors = set(library.getMostPopularAuthors());
+        //Строки копируются при первом запросе - уже после возвратов, выдач и удалений
+        LibrarySnapshot snapshot = library.snapshot();
+
+        for (int id = 0; id < READERS; id++)
+            for (PickRecord r : library.getReaderOpenLoans(id))
+                library.returnBook(r.getIsbn(), id, TODAY.plusDays(id));
+        play(new Random(5), PICKS);
+        //Больше половины книг с историей: удаленные строки вычищаются из индексов
+        for (int i = 2; i < BOOKS / 2 + 2; i++)
+            library.removeBook(FIRST_ISBN + i);
+
+        assertEquals(records.size(), snapshot.size());
+        assertEquals(records, snapshot.getPickedRecordsAtDates(START, TODAY));
+        assertEquals(delaying, snapshot.getReadersDelayingBooks(TODAY));
+        assertEquals(delayed, snapshot.getReadersDelayedBooks());
+        assertEquals(authors, set(snapshot.getMostPopularAuthors()));
+        assertLikeLibrary(library.snapshot());
+    }
+
+    @Test
+    void testBackdatedPicks() {
+        //Выдачи задним числом: в хранилище даты идут не по порядку
+        long isbn = FIRST_ISBN + BOOKS;
+        library.addBookItem(new Book(isbn, "author1", "late", 2, 10));
+        library.addReader(new Reader(READERS, "late", null, LocalDate.of(1990, 1, 1)));
+        assertEquals(OK, library.pickBook(isbn, READERS, START.plusDays(7)));
+        assertEquals(OK, library.pickBook(isbn, 1, START));
+        assertLikeLibrary(library.snapshot());
+    }
+
+    @Test
+    void testPurgedRowsStayOutOfSnapshot() {
+        //Строки удаленных книг вычищены из индексов до снимка, но остались в хранилище
+        for (int id = 0; id < READERS; id++)
+            for (PickRecord r : library.getReaderOpenLoans(id))
+                library.returnBook(r.getIsbn(), id, TODAY);
+        for (int i = 2; i < BOOKS * 3 / 4; i++)
+            library.removeBook(FIRST_ISBN + i);
+        assertLikeLibrary(library.snapshot());
+        assertEquals(library.getPickedRecordsAtDates(START, TODAY).size(), library.snapshot().size());
+    }
+
+    @Test
+    void testMappedStoreSnapshot() throws IOException {
+        Path file = Files.createTempFile("library", ".rows");
+        MappedPickRecordStore store = new MappedPickRecordStore(file.toString());
+        try {
+            library = new LibraryMaps(store);
+            setUp(library);
+            List<PickRecord> records = library.getPickedRecordsAtDates(START, TODAY);
+            LibrarySnapshot snapshot = library.snapshot();
+            play(new Random(6), PICKS);
+            assertLikeLibrary(library.snapshot());
+            //Вид читает уже отображенные куски и после закрытия хранилища
+            store.close();
+            assertEquals(records, snapshot.getPickedRecordsAtDates(START, TODAY));
+        } finally {
+            store.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testRowsCopiedWhileLibraryChanges() throws Exception {
+        List<PickRecord> expected = library.getPickedRecordsAtDates(START, TODAY);
+        List<ReaderDelay> delayed = library.getReadersDelayedBooks();
+        LibrarySnapshot snapshot = library.snapshot();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> writer = executor.submit(() -> play(new Random(7), PICKS * 10));
+            assertEquals(delayed, snapshot.getReadersDelayedBooks());
+            assertEquals(expected, snapshot.getPickedRecordsAtDates(START, TODAY));
+            writer.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSnapshotReadWhileLibraryChanges() throws Exception {
+        LibrarySnapshot snapshot = library.snapshot();
+        List<PickRecord> expected = snapshot.getPickedRecordsAtDates(START, TODAY);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            //Единственный писатель меняет библиотеку, отчет читает снимок
+            Future<?> writer = executor.submit(() -> play(new Random(3), PICKS * 10));
+            while (!writer.isDone())
+                assertEquals(expected, snapshot.getPickedRecordsAtDates(START, TODAY));
+            writer.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testParallelAnswersLikeSequential() {
+        //Больше SLICE_ROWS строк, чтобы отрезки действительно делились
+        play(new Random(4), PICKS * 100);
+        LibrarySnapshot sequential = library.snapshot();
+        assertTrue(sequential.size() > 1 << 15, "rows: " + sequential.size());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            LibrarySnapshot parallel = sequential.parallel(pool);
+            assertTrue(parallel.isParallel());
+            assertSame(sequential, sequential.sequential());
+            assertEquals(sequential.getReadersDelayedBooks(), parallel.getReadersDelayedBooks());
+            for (LocalDate from = START.minusDays(10); from.isBefore(TODAY); from = from.plusDays(23)) {
+                LocalDate to = from.plusDays(90);
+                assertEquals(sequential.getReadersDelayingBooks(to), parallel.getReadersDelayingBooks(to));
+                assertEquals(sequential.getMostActiveReaders(from, to), parallel.getMostActiveReaders(from, to));
+                assertEquals(sequential.getMostPopularBooks(from, to, 20, 60),
+                        parallel.getMostPopularBooks(from, to, 20, 60));
+                assertEquals(set(library.getMostPopularBooks(from, to, 0, 200)),
+                        set(parallel.getMostPopularBooks(from, to, 0, 200)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testEmptyLibrary() {
+        LibrarySnapshot snapshot = new LibraryMaps().snapshot();
+        assertEquals(0, snapshot.size());
+        assertEquals(new ArrayList<>(), snapshot.getMostPopularAuthors());
+        assertEquals(new ArrayList<>(), snapshot.getMostActiveReaders(START, TODAY));
+        assertEquals(new ArrayList<>(), snapshot.getReadersDelayingBooks(null));
+        assertEquals(new ArrayList<>(), snapshot.getMostPopularBooks(START, null, 0, 100));
+    }
+
+    private void assertLikeLibrary(LibrarySnapshot snapshot) {
+        for (LocalDate from = START.minusDays(10); from.isBefore(TODAY); from = from.plusDays(37)) {
+            LocalDate to = from.plusDays(45);
+            assertEquals(library.getPickedRecordsAtDates(from, to), snapshot.getPickedRecordsAtDates(from, to));
+            assertEquals(library.streamPickedRecordsAtDates(from, to).toList(),
+                    snapshot.streamPickedRecordsAtDates(from, to).toList());
+            assertEquals(set(library.getMostActiveReaders(from, to)),
+                    set(snapshot.getMostActiveReaders(from, to)));
+            assertEquals(set(library.getMostPopularBooks(from, to, 20, 60)),
+                    set(snapshot.getMostPopularBooks(from, to, 20, 60)));
+            assertEquals(library.getReadersDelayingBooks(to), snapshot.getReadersDelayingBooks(to));
+        }
+        assertEquals(library.getReadersDelayedBooks(), snapshot.getReadersDelayedBooks());
+        assertEquals(set(library.getMostPopularAuthors()), set(snapshot.getMostPopularAuthors()));
+        assertEquals(set(library.getTopAuthors(3)), set(snapshot.getTopAuthors(3)));
+        assertEquals(new ArrayList<>(), snapshot.getTopAuthors(0));
+    }
+
+    private static <T> Set<T> set(List<T> list) {
+        return new HashSet<>(list);
+    }
+}
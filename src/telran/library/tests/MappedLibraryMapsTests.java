@@ -0,0 +1,62 @@
+package telran.library.tests;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import telran.library.entities.models.*;
+
+//Все тесты LibraryMapsTests на истории выдач в отображаемом файле
+public class MappedLibraryMapsTests extends LibraryMapsTests {
+
+    private final List<MappedPickRecordStore> stores = new ArrayList<>();
+    private final List<Path> files = new ArrayList<>();
+
+    @Override
+    protected ILibrary createLibrary() {
+        try {
+            Path file = Files.createTempFile("picks", ".rows");
+            MappedPickRecordStore store = new MappedPickRecordStore(file.toString());
+            files.add(file);
+            stores.add(store);
+            return new LibraryMaps(store);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @AfterEach
+    void closeStores() throws IOException {
+        for (MappedPickRecordStore store : stores)
+            store.close();
+        for (Path file : files)
+            Files.deleteIfExists(file);
+        stores.clear();
+        files.clear();
+    }
+
+    @Test
+    void testStoreGrowsAcrossChunks() throws IOException {
+        Path file = Files.createTempFile("picks", ".rows");
+        try (MappedPickRecordStore store = new MappedPickRecordStore(file.toString())) {
+            int rows = (1 << 20) + 10;
+            for (int i = 0; i < rows; i++)
+                assertEquals(i, store.add(i, i % 100, 19_000 + i % 365));
+            store.setReturn(rows - 1, 20_000, 3);
+
+            assertEquals(rows, store.size());
+            assertEquals(rows - 1, store.getIsbn(rows - 1));
+            assertEquals(20_000, store.getReturnDay(rows - 1));
+            assertEquals(3, store.getDelayDays(rows - 1));
+            assertEquals(PickRecordStore.NO_DATE, store.getReturnDay(0));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package telran.library.tests;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.library.entities.enums.BooksReturnCode.*;
+
+import telran.library.entities.*;
+import telran.library.entities.models.*;
+
+//Все тесты LibraryMapsTests через MeteredLibrary плюс проверки метрик
+public class MeteredLibraryTests extends LibraryMapsTests {
+
+    @Override
+    protected ILibrary createLibrary() {
+        return new MeteredLibrary(new LibraryMaps());
+    }
+
+    @Override
+    protected ILibrary reload(String fileName) {
+        ((LibraryMaps) ((MeteredLibrary) library).getLibrary()).save(fileName);
+        return new MeteredLibrary(LibraryMaps.load(fileName));
+    }
+
+    @Test
+    void testCallsAndCodes() {
+        MeteredLibrary metered = (MeteredLibrary) library;
+        library.pickBook(ISBN1, READER_ID1, PICK_DATE2);
+        library.pickBook(ISBN1, READER_ID1, PICK_DATE2);
+        library.pickBook(ISBN1, 100, PICK_DATE2);
+        library.getBookItem(ISBN1);
+
+        LibraryMetrics metrics = metered.snapshot();
+        assertEquals(3, metrics.getCalls(LibraryMethod.PICK_BOOK));
+        assertEquals(1, metrics.getCodeCount(LibraryMethod.PICK_BOOK, OK));
+        assertEquals(1, metrics.getCodeCount(LibraryMethod.PICK_BOOK, READER_READS_IT));
+        assertEquals(1, metrics.getCodeCount(LibraryMethod.PICK_BOOK, NO_READER));
+        assertEquals(6, metrics.getCodeCount(LibraryMethod.ADD_BOOK_ITEM, OK));
+        assertEquals(1, metrics.getCalls(LibraryMethod.GET_BOOK_ITEM));
+        assertEquals(0, metrics.getCalls(LibraryMethod.REMOVE_BOOK));
+        assertEquals(3, metrics.getLatency(LibraryMethod.PICK_BOOK).getCount());
+
+        //Снимок не меняется после новых вызовов
+        library.pickBook(ISBN2, READER_ID1, PICK_DATE2);
+        assertEquals(3, metrics.getCalls(LibraryMethod.PICK_BOOK));
+        assertEquals(4, metered.snapshot().getCalls(LibraryMethod.PICK_BOOK));
+    }
+
+    @Test
+    void testBatchCodes() {
+        MeteredLibrary metered = (MeteredLibrary) library;
+        library.pickBooks(READER_ID1, List.of(ISBN1, ISBN2, ISBN1, ISBN7), PICK_DATE2);
+
+        LibraryMetrics metrics = metered.snapshot();
+        assertEquals(1, metrics.getCalls(LibraryMethod.PICK_BOOKS));
+        assertEquals(0, metrics.getCalls(LibraryMethod.PICK_BOOK));
+        assertEquals(2, metrics.getCodeCount(LibraryMethod.PICK_BOOKS, OK));
+        assertEquals(1, metrics.getCodeCount(LibraryMethod.PICK_BOOKS, READER_READS_IT));
+        assertEquals(1, metrics.getCodeCount(LibraryMethod.PICK_BOOKS, NO_BOOK_ITEM));
+    }
+
+    @Test
+    void testSnapshotsDuringConcurrentCalls() throws Exception {
+        final int threads = 4;
+        final int iterations = 20_000;
+        MeteredLibrary metered = new MeteredLibrary(new ConcurrentLibrary());
+        for (int t = 0; t < threads; t++)
+            metered.addReader(new Reader(100 + t, NAME1, PHONE1, BIRTH_DATE1));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int readerId = 100 + t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < iterations; i++)
+                    metered.pickBook(ISBN1, readerId, PICK_DATE2);
+            }));
+        }
+        long previous = 0;
+        try {
+            //Снимки во время записи: счетчик только растет
+            while (!futures.stream().allMatch(Future::isDone)) {
+                long calls = metered.snapshot().getCalls(LibraryMethod.PICK_BOOK);
+                assertTrue(calls >= previous);
+                previous = calls;
+            }
+            for (Future<?> f : futures)
+                f.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LibraryMetrics metrics = metered.snapshot();
+        assertEquals((long) threads * iterations, metrics.getCalls(LibraryMethod.PICK_BOOK));
+        assertEquals((long) threads * iterations, metrics.getCodeCount(LibraryMethod.PICK_BOOK, NO_BOOK_ITEM));
+    }
+
+    @Test
+    void testJmxAttributes() throws Exception {
+        MeteredLibrary metered = (MeteredLibrary) library;
+        library.pickBook(ISBN1, READER_ID1, PICK_DATE2);
+        ObjectName name = metered.register("tests");
+        try {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            assertNotNull(server.getAttribute(name, "Calls"));
+            Map<String, Long> codes = metered.getReturnCodes();
+            assertEquals(Long.valueOf(1), codes.get("PICK_BOOK.OK"));
+            assertEquals(Long.valueOf(1), metered.getCalls().get("PICK_BOOK"));
+            assertNull(metered.getCalls().get("REMOVE_BOOK"));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+}
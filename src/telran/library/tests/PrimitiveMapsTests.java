@@ -0,0 +1,63 @@
+package telran.library.tests;
+
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import telran.utils.IntMap;
+import telran.utils.LongMap;
+
+public class PrimitiveMapsTests {
+
+    final int OPERATIONS = 200_000;
+    final int KEYS = 5_000;
+
+    @Test
+    void testLongMapMatchesHashMap() {
+        LongMap<String> map = new LongMap<>();
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < OPERATIONS; i++) {
+            //Ключи с одинаковыми младшими битами проверяют цепочки коллизий
+            long key = (long) random.nextInt(KEYS) << 32;
+            String value = "v" + i;
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.put(key, value), map.put(key, value));
+                case 1 -> assertEquals(expected.remove(key), map.remove(key));
+                default -> assertEquals(expected.get(key), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key : expected.keySet())
+            assertEquals(expected.get(key), map.get(key));
+        assertEquals(new HashSet<>(expected.values()), new HashSet<>(map.values()));
+    }
+
+    @Test
+    void testIntMapMatchesHashMap() {
+        IntMap<Integer> map = new IntMap<>(10);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(2);
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(KEYS) - KEYS / 2;
+            if (random.nextBoolean())
+                assertEquals(expected.putIfAbsent(key, i), map.putIfAbsent(key, i));
+            else
+                assertEquals(expected.remove(key), map.remove(key));
+        }
+        assertEquals(expected.size(), map.size());
+        for (int key = -KEYS; key < KEYS; key++) {
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+            assertEquals(expected.getOrDefault(key, -1), map.getOrDefault(key, -1));
+        }
+    }
+
+    @Test
+    void testNullValueRejected() {
+        assertThrows(NullPointerException.class, () -> new LongMap<String>().put(1, null));
+        LongMap<String> map = new LongMap<>();
+        assertNull(map.computeIfAbsent(1, k -> null));
+        assertTrue(map.isEmpty());
+    }
+}
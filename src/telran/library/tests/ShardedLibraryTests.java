@@ -0,0 +1,131 @@
+package telran.library.tests;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.library.entities.enums.BooksReturnCode.*;
+
+import telran.library.entities.*;
+import telran.library.entities.enums.BooksReturnCode;
+import telran.library.entities.models.*;
+
+//Все тесты LibraryMapsTests на четырех секциях плюс проверки слияния по секциям
+public class ShardedLibraryTests extends LibraryMapsTests {
+
+    final int SHARDS = 4;
+    final int THREADS = 4;
+    final int BOOKS = 64;
+    final long FIRST_ISBN = 9000000000L;
+    final String AUTHOR5 = "author5";
+    final LocalDate DATE = LocalDate.of(2024, 3, 1);
+
+    @Override
+    protected ILibrary createLibrary() {
+        return new ShardedLibrary(SHARDS);
+    }
+
+    @Override
+    protected ILibrary reload(String fileName) {
+        ShardedLibrary sharded = (ShardedLibrary) library;
+        sharded.save(fileName);
+        sharded.close();
+        return ShardedLibrary.load(fileName, SHARDS);
+    }
+
+    @AfterEach
+    void closeShards() {
+        ((ShardedLibrary) library).close();
+    }
+
+    @Test
+    void testShardsCountPositive() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedLibrary(0));
+    }
+
+    @Test
+    void testReadersReplicated() {
+        assertEquals(READER_EXISTS, library.addReader(new Reader(READER_ID1, NAME1, PHONE1, BIRTH_DATE1)));
+        //Читатель виден в любой секции: книги всех секций выдаются ему
+        for (int i = 0; i < BOOKS; i++)
+            library.addBookItem(new Book(FIRST_ISBN + i, AUTHOR5, TITLE, AMOUNT, PICK_PERIOD));
+        for (int i = 0; i < BOOKS; i++)
+            assertEquals(OK, library.pickBook(FIRST_ISBN + i, READER_ID2, DATE));
+        assertEquals(BOOKS, library.getBooksPickedByReader(READER_ID2).size());
+        assertEquals(BOOKS, library.getReaderOpenLoans(READER_ID2).size());
+        assertEquals(BOOKS, library.getBooksAuthor(AUTHOR5).size());
+    }
+
+    @Test
+    void testBatchKeepsPositions() {
+        List<Long> isbns = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            library.addBookItem(new Book(FIRST_ISBN + i, AUTHOR5, TITLE, AMOUNT, PICK_PERIOD));
+            isbns.add(FIRST_ISBN + i);
+        }
+        isbns.add(7, ISBN7);
+        //Второй раз тот же isbn уже на руках
+        isbns.add(FIRST_ISBN);
+
+        BatchResult res = library.pickBooks(READER_ID1, isbns, DATE);
+        assertEquals(isbns.size(), res.size());
+        for (int i = 0; i < isbns.size(); i++) {
+            BooksReturnCode expected = i == 7 ? NO_BOOK_ITEM : i == isbns.size() - 1 ? READER_READS_IT : OK;
+            assertEquals(expected, res.get(i));
+        }
+
+        List<RemovedBookData> returned = library.returnBooks(READER_ID1, isbns, DATE.plusDays(1));
+        assertEquals(isbns.size(), returned.size());
+        assertNull(returned.get(7).getBook());
+        assertEquals(Long.valueOf(FIRST_ISBN + 7), Long.valueOf(returned.get(8).getBook().getIsbn()));
+    }
+
+    @Test
+    void testAuthorCountsMergedAcrossShards() {
+        //Книги AUTHOR5 по одной выдаче, но их много и они в разных секциях
+        for (int i = 0; i < SHARDS * 2; i++) {
+            library.addBookItem(new Book(FIRST_ISBN + i, AUTHOR5, TITLE, AMOUNT, PICK_PERIOD));
+            library.pickBook(FIRST_ISBN + i, READER_ID1, DATE);
+        }
+        //У одной книги AUTHOR1 больше выдач, чем у любой книги AUTHOR5
+        library.pickBook(ISBN1, READER_ID1, DATE);
+        library.pickBook(ISBN1, READER_ID2, DATE);
+        library.pickBook(ISBN1, READER_ID3, DATE);
+        library.pickBook(ISBN2, READER_ID2, DATE);
+
+        assertEquals(List.of(AUTHOR5), library.getMostPopularAuthors());
+        assertEquals(List.of(AUTHOR5, AUTHOR1), library.getTopAuthors(2));
+        assertEquals(List.of(library.getReader(READER_ID1)), library.getMostActiveReaders(DATE, DATE.plusDays(1)));
+        assertEquals(List.of(library.getBookItem(ISBN1)), library.getMostPopularBooks(DATE, DATE.plusDays(1), 0, 100));
+        assertEquals(SHARDS * 2 + 4, library.getPickedRecordsAtDates(DATE, DATE.plusDays(1)).size());
+    }
+
+    @Test
+    void testConcurrentPicksAcrossShards() throws Exception {
+        for (int i = 0; i < BOOKS; i++)
+            library.addBookItem(new Book(FIRST_ISBN + i, AUTHOR5, TITLE, 1, PICK_PERIOD));
+
+        //Потоки спорят за одни и те же книги: каждую получает ровно один
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int readerId = t % 3 + 1;
+            futures.add(pool.submit(() -> {
+                int picked = 0;
+                for (int i = 0; i < BOOKS; i++)
+                    if (library.pickBook(FIRST_ISBN + i, readerId, DATE) == OK)
+                        picked++;
+                return picked;
+            }));
+        }
+        int picked = 0;
+        for (Future<Integer> future : futures)
+            picked += future.get();
+        pool.shutdown();
+
+        assertEquals(BOOKS, picked);
+        assertTrue(library.getAvailableBooks().stream().noneMatch(b -> b.getAuthor().equals(AUTHOR5)));
+    }
+}
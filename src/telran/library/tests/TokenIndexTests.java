@@ -0,0 +1,70 @@
+package telran.library.tests;
+
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import telran.utils.TokenIndex;
+
+public class TokenIndexTests {
+
+    TokenIndex<String> index;
+    Map<String, String[]> texts = new HashMap<>();
+
+    private void add(long key, String value, String... valueTexts) {
+        texts.put(value, valueTexts);
+        index.add(key, value);
+    }
+
+    @BeforeEach
+    void setUp() {
+        index = new TokenIndex<>(value -> texts.get(value));
+        add(1, "a", "The Old Man and the Sea", "Ernest Hemingway");
+        add(2, "b", "Old-Fashioned Tales", "Émile Zola");
+        add(3, "c", "The Sea, the Sea", "Iris Murdoch");
+    }
+
+    @Test
+    void testTokens() {
+        assertEquals(List.of("the", "sea", "the", "sea"), TokenIndex.tokens("The Sea, the Sea"));
+        assertEquals(List.of("emile", "zola", "2nd"), TokenIndex.tokens("  Émile\tZOLA (2nd)"));
+        assertEquals(List.of(), TokenIndex.tokens(" ,.- "));
+        assertEquals(List.of(), TokenIndex.tokens(null));
+    }
+
+    @Test
+    void testFind() {
+        assertEquals(Set.of("a", "c"), Set.copyOf(index.find("SEA")));
+        assertEquals(List.of("a"), index.find("old sea"));
+        assertEquals(List.of("b"), index.find("emile"));
+        assertEquals(List.of(), index.find("old murdoch"));
+        assertEquals(List.of(), index.find("--"));
+    }
+
+    @Test
+    void testFindByPrefix() {
+        assertEquals(Set.of("a", "b"), Set.copyOf(index.findByPrefix("e", 10)));
+        //Значение с несколькими подходящими словами попадает один раз
+        add(4, "d", "Seafarers", "Sean Sears");
+        assertEquals(Set.of("a", "c", "d"), Set.copyOf(index.findByPrefix("sea", 10)));
+        assertEquals(3, index.findByPrefix("sea", 10).size());
+        assertEquals(Set.of("a", "c"), Set.copyOf(index.findByPrefix("the s", 10)));
+        assertEquals(1, index.findByPrefix("the s", 1).size());
+        assertEquals(Set.of("a", "b"), Set.copyOf(index.findByPrefix("OLD", 10)));
+        assertEquals(List.of("a"), index.findByPrefix("hemingway m", 10));
+        assertEquals(List.of(), index.findByPrefix("x", 10));
+    }
+
+    @Test
+    void testRemove() {
+        int tokens = index.tokensCount();
+        index.remove(2, "b");
+        assertEquals(tokens - 4, index.tokensCount());
+        assertEquals(List.of("a"), index.find("old"));
+        assertEquals(List.of(), index.findByPrefix("zo", 10));
+        //Повторное удаление ничего не меняет
+        index.remove(2, "b");
+        assertEquals(tokens - 4, index.tokensCount());
+    }
+}
@@ -0,0 +1,89 @@
+package telran.library.tests;
+
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.library.entities.enums.BooksReturnCode.*;
+
+import telran.library.entities.Book;
+import telran.library.entities.Reader;
+import telran.library.entities.models.*;
+import telran.library.workload.*;
+
+public class WorkloadTests {
+
+    final long SEED = 42;
+    final int BOOKS = 2_000;
+    final int READERS = 3_000;
+    final int DAYS = 120;
+    final int PICKS_PER_DAY = 300;
+
+    private WorkloadGenerator generator() {
+        return new WorkloadGenerator(SEED, BOOKS, READERS, DAYS, PICKS_PER_DAY);
+    }
+
+    private List<LibraryOperation> operations(WorkloadGenerator generator) {
+        List<LibraryOperation> res = new ArrayList<>();
+        generator.forEachRemaining(res::add);
+        return res;
+    }
+
+    @Test
+    void testSameSeedSameWorkload() {
+        WorkloadGenerator first = generator();
+        WorkloadGenerator second = generator();
+        assertEquals(first.getBooks(), second.getBooks());
+        assertEquals(first.getReaders().stream().map(Reader::getBirthDay).toList(),
+                second.getReaders().stream().map(Reader::getBirthDay).toList());
+        assertEquals(operations(first), operations(second));
+
+        WorkloadGenerator other = new WorkloadGenerator(SEED + 1, BOOKS, READERS, DAYS, PICKS_PER_DAY);
+        assertNotEquals(operations(generator()), operations(other));
+    }
+
+    @Test
+    void testSequentialReplayMatchesModel() throws InterruptedException {
+        WorkloadGenerator generator = generator();
+        LibraryMaps library = new LibraryMaps();
+        assertTrue(library.addBookItems(generator.getBooks()).isAllOk());
+        assertTrue(library.addReaders(generator.getReaders()).isAllOk());
+
+        ReplayReport report = new ReplayDriver(library, 1).replay(generator);
+
+        //Модель генератора исключает отказы при последовательном проигрывании
+        long picks = report.getCount(OperationType.PICK_BOOK);
+        assertTrue(picks > DAYS * PICKS_PER_DAY / 3);
+        assertEquals(picks, report.getCodeCount(OperationType.PICK_BOOK, OK));
+        assertTrue(report.getCount(OperationType.RETURN_BOOK) > picks / 2);
+        assertTrue(report.getCount(OperationType.GET_MOST_POPULAR_BOOKS) > 0);
+
+        long openLoans = library.streamPickedRecordsAtDates(WorkloadGenerator.START_DATE,
+                        WorkloadGenerator.START_DATE.plusDays(DAYS))
+                .filter(r -> r.getReturnDate() == null)
+                .count();
+        assertEquals(generator.getOpenLoansCount(), openLoans);
+    }
+
+    @Test
+    void testConcurrentReplay() throws InterruptedException {
+        WorkloadGenerator generator = generator();
+        ConcurrentLibrary library = new ConcurrentLibrary();
+        library.addBookItems(generator.getBooks());
+        library.addReaders(generator.getReaders());
+
+        List<LibraryOperation> operations = operations(generator);
+        ReplayReport report = new ReplayDriver(library, 4).replay(operations.iterator());
+
+        assertEquals(operations.size(), report.getTotalCount());
+        long picks = operations.stream().filter(o -> o.getType() == OperationType.PICK_BOOK).count();
+        assertEquals(picks, report.getCount(OperationType.PICK_BOOK));
+        assertTrue(report.getLatency(OperationType.PICK_BOOK).getPercentile(50) > 0);
+        //Ни один экземпляр не выдан сверх наличия
+        for (Book book : generator.getBooks()) {
+            Book actual = library.getBookItem(book.getIsbn());
+            if (actual != null && actual.getAmount() >= 0)
+                assertTrue(actual.getAmountInUse() <= actual.getAmount());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package telran.library.workload;
+
+import telran.library.entities.models.ILibrary;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+//Одна операция сгенерированной нагрузки и ее аргументы
+public class LibraryOperation {
+
+    private final OperationType type;
+    private final long isbn;
+    private final int readerId;
+    private final int amount;
+    private final LocalDate date;
+    private final LocalDate toDate;
+    private final int fromAge;
+    private final int toAge;
+
+    private LibraryOperation(OperationType type, long isbn, int readerId, int amount,
+                             LocalDate date, LocalDate toDate, int fromAge, int toAge) {
+        this.type = type;
+        this.isbn = isbn;
+        this.readerId = readerId;
+        this.amount = amount;
+        this.date = date;
+        this.toDate = toDate;
+        this.fromAge = fromAge;
+        this.toAge = toAge;
+    }
+
+    public static LibraryOperation pickBook(long isbn, int readerId, LocalDate pickDate) {
+        return new LibraryOperation(OperationType.PICK_BOOK, isbn, readerId, 0, pickDate, null, 0, 0);
+    }
+
+    public static LibraryOperation returnBook(long isbn, int readerId, LocalDate returnDate) {
+        return new LibraryOperation(OperationType.RETURN_BOOK, isbn, readerId, 0, returnDate, null, 0, 0);
+    }
+
+    public static LibraryOperation removeBook(long isbn, LocalDate date) {
+        return new LibraryOperation(OperationType.REMOVE_BOOK, isbn, 0, 0, date, null, 0, 0);
+    }
+
+    public static LibraryOperation addBookExemplars(long isbn, int amount, LocalDate date) {
+        return new LibraryOperation(OperationType.ADD_BOOK_EXEMPLARS, isbn, 0, amount, date, null, 0, 0);
+    }
+
+    public static LibraryOperation getBooksPickedByReader(int readerId, LocalDate date) {
+        return new LibraryOperation(OperationType.GET_BOOKS_PICKED_BY_READER, 0, readerId, 0, date, null, 0, 0);
+    }
+
+    public static LibraryOperation getMostPopularBooks(LocalDate from, LocalDate to, int fromAge, int toAge) {
+        return new LibraryOperation(OperationType.GET_MOST_POPULAR_BOOKS, 0, 0, 0, from, to, fromAge, toAge);
+    }
+
+    //Выполняет операцию и возвращает результат вызова ILibrary
+    public Object applyTo(ILibrary library) {
+        return switch (type) {
+            case PICK_BOOK -> library.pickBook(isbn, readerId, date);
+            case RETURN_BOOK -> library.returnBook(isbn, readerId, date);
+            case REMOVE_BOOK -> library.removeBook(isbn);
+            case ADD_BOOK_EXEMPLARS -> library.addBookExemplars(isbn, amount, date);
+            case GET_BOOKS_PICKED_BY_READER -> library.getBooksPickedByReader(readerId);
+            case GET_MOST_POPULAR_BOOKS -> library.getMostPopularBooks(date, toDate, fromAge, toAge);
+        };
+    }
+
+    public OperationType getType() {
+        return type;
+    }
+
+    public long getIsbn() {
+        return isbn;
+    }
+
+    public int getReaderId() {
+        return readerId;
+    }
+
+    public int getAmount() {
+        return amount;
+    }
+
+    //Дата операции по модельному календарю (для отчетов - начало периода)
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public LocalDate getToDate() {
+        return toDate;
+    }
+
+    public int getFromAge() {
+        return fromAge;
+    }
+
+    public int getToAge() {
+        return toAge;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass()) return false;
+        LibraryOperation that = (LibraryOperation) o;
+        return isbn == that.isbn && readerId == that.readerId && amount == that.amount
+                && fromAge == that.fromAge && toAge == that.toAge && type == that.type
+                && Objects.equals(date, that.date) && Objects.equals(toDate, that.toDate);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, isbn, readerId, amount, date, toDate, fromAge, toAge);
+    }
+
+    @Override
+    public String toString() {
+        return "LibraryOperation{" +
+                "type=" + type +
+                ", isbn=" + isbn +
+                ", readerId=" + readerId +
+                ", amount=" + amount +
+                ", date=" + date +
+                ", toDate=" + toDate +
+                ", fromAge=" + fromAge +
+                ", toAge=" + toAge +
+                '}';
+    }
+}
@@ -0,0 +1,10 @@
+package telran.library.workload;
+
+public enum OperationType {
+    PICK_BOOK,
+    RETURN_BOOK,
+    REMOVE_BOOK,
+    ADD_BOOK_EXEMPLARS,
+    GET_BOOKS_PICKED_BY_READER,
+    GET_MOST_POPULAR_BOOKS
+}
@@ -0,0 +1,133 @@
+package telran.library.workload;
+
+import telran.library.entities.enums.BooksReturnCode;
+import telran.library.entities.models.ILibrary;
+import telran.utils.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Проигрывает поток операций на ILibrary в нескольких потоках.
+ * Операции одного читателя (выдача, возврат, его запросы) попадают в один поток
+ * в исходном порядке, списание и пополнение книги - в поток по isbn.
+ * Порядок между потоками не гарантируется, поэтому при threads > 1
+ * реализация должна быть потокобезопасной (ConcurrentLibrary, JournaledLibrary).
+ * Каждый поток пишет задержки в свои гистограммы, они складываются в конце.
+ */
+public class ReplayDriver {
+
+    private static final int BATCH_SIZE = 256;
+    private static final int QUEUE_BATCHES = 64;
+    private static final List<LibraryOperation> END = new ArrayList<>();
+
+    private final ILibrary library;
+    private final int threads;
+
+    public ReplayDriver(ILibrary library, int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        this.library = library;
+        this.threads = threads;
+    }
+
+    public ReplayReport replay(Iterator<LibraryOperation> operations) throws InterruptedException {
+        List<BlockingQueue<List<LibraryOperation>>> queues = new ArrayList<>();
+        List<Worker> workers = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int i = 0; i < threads; i++) {
+            BlockingQueue<List<LibraryOperation>> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+            queues.add(queue);
+            workers.add(new Worker(queue, failure));
+        }
+
+        long start = System.nanoTime();
+        workers.forEach(Thread::start);
+        List<List<LibraryOperation>> batches = new ArrayList<>();
+        for (int i = 0; i < threads; i++)
+            batches.add(new ArrayList<>(BATCH_SIZE));
+        int roundRobin = 0;
+        while (operations.hasNext() && failure.get() == null) {
+            LibraryOperation operation = operations.next();
+            int worker = route(operation, roundRobin++);
+            List<LibraryOperation> batch = batches.get(worker);
+            batch.add(operation);
+            if (batch.size() == BATCH_SIZE) {
+                queues.get(worker).put(batch);
+                batches.set(worker, new ArrayList<>(BATCH_SIZE));
+            }
+        }
+        for (int i = 0; i < threads; i++) {
+            if (!batches.get(i).isEmpty())
+                queues.get(i).put(batches.get(i));
+            queues.get(i).put(END);
+        }
+        for (Worker worker : workers)
+            worker.join();
+        long elapsed = System.nanoTime() - start;
+
+        if (failure.get() != null)
+            throw new IllegalStateException("replay failed", failure.get());
+        ReplayReport report = new ReplayReport(elapsed);
+        workers.forEach(worker -> report.add(worker.latencies, worker.codes));
+        return report;
+    }
+
+    private int route(LibraryOperation operation, int roundRobin) {
+        int key = switch (operation.getType()) {
+            case PICK_BOOK, RETURN_BOOK, GET_BOOKS_PICKED_BY_READER -> operation.getReaderId();
+            case REMOVE_BOOK, ADD_BOOK_EXEMPLARS -> Long.hashCode(operation.getIsbn());
+            case GET_MOST_POPULAR_BOOKS -> roundRobin;
+        };
+        return Math.floorMod(key, threads);
+    }
+
+    private class Worker extends Thread {
+        private final BlockingQueue<List<LibraryOperation>> queue;
+        private final AtomicReference<Throwable> failure;
+        final LatencyHistogram[] latencies = new LatencyHistogram[OperationType.values().length];
+        final long[][] codes = new long[OperationType.values().length][BooksReturnCode.values().length];
+
+        Worker(BlockingQueue<List<LibraryOperation>> queue, AtomicReference<Throwable> failure) {
+            super("replay-worker");
+            this.queue = queue;
+            this.failure = failure;
+            for (int i = 0; i < latencies.length; i++)
+                latencies[i] = new LatencyHistogram();
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<LibraryOperation> batch;
+                while ((batch = queue.take()) != END) {
+                    for (LibraryOperation operation : batch) {
+                        int type = operation.getType().ordinal();
+                        long start = System.nanoTime();
+                        Object result = operation.applyTo(library);
+                        latencies[type].record(System.nanoTime() - start);
+                        if (result instanceof BooksReturnCode code)
+                            codes[type][code.ordinal()]++;
+                    }
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+                //Дочитываем очередь, чтобы диспетчер не застрял на put
+                drain();
+            }
+        }
+
+        private void drain() {
+            try {
+                while (queue.take() != END) {
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
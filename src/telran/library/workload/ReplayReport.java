@@ -0,0 +1,75 @@
+package telran.library.workload;
+
+import telran.library.entities.enums.BooksReturnCode;
+import telran.utils.LatencyHistogram;
+
+import java.io.PrintStream;
+
+//Итог проигрывания: задержки и коды результата по типам операций
+public class ReplayReport {
+
+    private static final OperationType[] TYPES = OperationType.values();
+    private static final BooksReturnCode[] CODES = BooksReturnCode.values();
+
+    private final long elapsedNanos;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[TYPES.length];
+    private final long[][] codes = new long[TYPES.length][CODES.length];
+
+    ReplayReport(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+        for (int i = 0; i < TYPES.length; i++)
+            latencies[i] = new LatencyHistogram();
+    }
+
+    void add(LatencyHistogram[] workerLatencies, long[][] workerCodes) {
+        for (int i = 0; i < TYPES.length; i++) {
+            latencies[i].add(workerLatencies[i]);
+            for (int j = 0; j < CODES.length; j++)
+                codes[i][j] += workerCodes[i][j];
+        }
+    }
+
+    public double getSeconds() {
+        return elapsedNanos / 1e9;
+    }
+
+    public long getCount(OperationType type) {
+        return latencies[type.ordinal()].getCount();
+    }
+
+    public long getTotalCount() {
+        long res = 0;
+        for (LatencyHistogram histogram : latencies)
+            res += histogram.getCount();
+        return res;
+    }
+
+    public LatencyHistogram getLatency(OperationType type) {
+        return latencies[type.ordinal()].copy();
+    }
+
+    //Сколько раз операция вернула код (для операций, возвращающих BooksReturnCode)
+    public long getCodeCount(OperationType type, BooksReturnCode code) {
+        return codes[type.ordinal()][code.ordinal()];
+    }
+
+    public void print(PrintStream out) {
+        out.printf("operations: %,d in %.2f s, %,.0f ops/sec%n",
+                getTotalCount(), getSeconds(), getTotalCount() / getSeconds());
+        out.printf("%-28s %12s %12s %10s %10s %10s %12s %8s%n", "operation", "count", "ops/sec",
+                "p50, ns", "p99, ns", "p99.9, ns", "max, ns", "OK, %");
+        for (OperationType type : TYPES) {
+            LatencyHistogram latency = latencies[type.ordinal()];
+            if (latency.getCount() == 0)
+                continue;
+            long withCode = 0;
+            for (long count : codes[type.ordinal()])
+                withCode += count;
+            out.printf("%-28s %,12d %,12.0f %,10d %,10d %,10d %,12d %8s%n", type, latency.getCount(),
+                    latency.getCount() / getSeconds(), latency.getPercentile(50), latency.getPercentile(99),
+                    latency.getPercentile(99.9), latency.getMax(),
+                    withCode == 0 ? "-" : String.format("%.1f",
+                            100.0 * getCodeCount(type, BooksReturnCode.OK) / withCode));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package telran.library.workload;
+
+import telran.library.entities.Book;
+import telran.library.entities.Reader;
+import telran.utils.ZipfSampler;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Детерминированный генератор нагрузки библиотеки: при одном seed и параметрах
+ * выдает те же книги, читателей и ту же последовательность операций.
+ * Модельные дни идут подряд от START_DATE. За день: возвраты, срок которых наступил,
+ * выдачи (популярность книг и активность читателей - по Ципфу) вперемешку с запросами,
+ * изредка пополнение экземпляров популярных книг и списание книги из хвоста.
+ * Генератор ведет свою модель выдач, поэтому при последовательном проигрывании
+ * выдачи не упираются в занятые экземпляры и повторную выдачу той же книги читателю.
+ */
+public class WorkloadGenerator implements Iterator<LibraryOperation> {
+
+    public static final LocalDate START_DATE = LocalDate.of(2020, 1, 1);
+    public static final long FIRST_ISBN = 1_000_000_000L;
+
+    static final double BOOK_SKEW = 1.1;
+    static final double READER_SKEW = 0.8;
+    static final int BOOKS_PER_AUTHOR = 10;
+    static final int[] PICK_PERIODS = {7, 14, 21};
+    static final int LATE_PERCENT = 15;
+    static final int MEAN_DELAY_DAYS = 10;
+    static final int LOST_PERCENT = 2;
+    static final int READER_QUERIES_PER_PICKS = 20;
+    static final double EXEMPLARS_PER_DAY = 0.05;
+    static final double REMOVALS_PER_DAY = 0.02;
+    static final int REPORT_DAYS = 30;
+
+    private final Random random;
+    private final int booksCount;
+    private final int days;
+    private final int picksPerDay;
+    private final ZipfSampler bookRanks;
+    private final ZipfSampler readerRanks;
+    private final List<Book> books = new ArrayList<>();
+    private final List<Reader> readers = new ArrayList<>();
+
+    //Модель состояния библиотеки по рангу книги
+    private final int[] amounts;
+    private final int[] inUse;
+    private final boolean[] removed;
+    private final Set<Long> openLoans = new HashSet<>();
+    private final Map<Integer, List<LibraryOperation>> scheduledReturns = new HashMap<>();
+
+    private final ArrayDeque<LibraryOperation> pending = new ArrayDeque<>();
+    private int day;
+
+    public WorkloadGenerator(long seed, int booksCount, int readersCount, int days, int picksPerDay) {
+        if (booksCount <= 0 || readersCount <= 0)
+            throw new IllegalArgumentException("books and readers must be positive");
+        this.random = new Random(seed);
+        this.booksCount = booksCount;
+        this.days = days;
+        this.picksPerDay = picksPerDay;
+        bookRanks = new ZipfSampler(booksCount, BOOK_SKEW);
+        readerRanks = new ZipfSampler(readersCount, READER_SKEW);
+        amounts = new int[booksCount];
+        inUse = new int[booksCount];
+        removed = new boolean[booksCount];
+
+        int authors = Math.max(1, booksCount / BOOKS_PER_AUTHOR);
+        for (int rank = 0; rank < booksCount; rank++) {
+            amounts[rank] = rank < booksCount / 100 ? 20 : rank < booksCount / 10 ? 5 : 2;
+            books.add(new Book(isbn(rank), "author" + rank % authors, "title" + rank,
+                    amounts[rank], PICK_PERIODS[random.nextInt(PICK_PERIODS.length)]));
+        }
+        for (int rank = 0; rank < readersCount; rank++)
+            readers.add(new Reader(rank + 1, "name" + rank, "05" + (10_000_000 + rank), birthDay()));
+    }
+
+    //Возраст на начало модели: дети, школьники и студенты, взрослые, пенсионеры; у 1% даты нет
+    private LocalDate birthDay() {
+        double p = random.nextDouble();
+        if (p < 0.01)
+            return null;
+        int age = p < 0.12 ? 6 + random.nextInt(7)
+                : p < 0.37 ? 13 + random.nextInt(13)
+                : p < 0.80 ? 26 + random.nextInt(35)
+                : 61 + random.nextInt(25);
+        return START_DATE.minusYears(age).minusDays(random.nextInt(365));
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    public List<Reader> getReaders() {
+        return readers;
+    }
+
+    //Невозвращенные выдачи в модели на текущий момент генерации
+    public int getOpenLoansCount() {
+        return openLoans.size();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (pending.isEmpty() && day < days)
+            generateDay(day++);
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public LibraryOperation next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return pending.poll();
+    }
+
+    private void generateDay(int dayIndex) {
+        LocalDate date = START_DATE.plusDays(dayIndex);
+        List<LibraryOperation> returns = scheduledReturns.remove(dayIndex);
+        if (returns != null) {
+            for (LibraryOperation operation : returns) {
+                inUse[rank(operation.getIsbn())]--;
+                openLoans.remove(loanKey(operation.getIsbn(), operation.getReaderId()));
+                pending.add(operation);
+            }
+        }
+
+        //По выходным выдач меньше
+        boolean weekend = date.getDayOfWeek().getValue() >= 6;
+        int picks = (int) (picksPerDay * (weekend ? 0.5 : 0.8 + 0.4 * random.nextDouble()));
+        for (int i = 0; i < picks; i++) {
+            generatePick(dayIndex, date);
+            if (random.nextInt(READER_QUERIES_PER_PICKS) == 0)
+                pending.add(LibraryOperation.getBooksPickedByReader(readerId(readerRanks.next(random)), date));
+        }
+        if (dayIndex >= REPORT_DAYS) {
+            int fromAge = 6 + random.nextInt(60);
+            pending.add(LibraryOperation.getMostPopularBooks(date.minusDays(REPORT_DAYS), date,
+                    fromAge, fromAge + 5 + random.nextInt(20)));
+        }
+
+        if (random.nextDouble() < EXEMPLARS_PER_DAY) {
+            int rank = bookRanks.next(random);
+            if (!removed[rank]) {
+                int amount = 1 + random.nextInt(3);
+                amounts[rank] += amount;
+                pending.add(LibraryOperation.addBookExemplars(isbn(rank), amount, date));
+            }
+        }
+        //Списывается книга из менее популярной половины каталога
+        if (random.nextDouble() < REMOVALS_PER_DAY) {
+            int rank = booksCount / 2 + random.nextInt(booksCount - booksCount / 2);
+            if (!removed[rank]) {
+                removed[rank] = true;
+                pending.add(LibraryOperation.removeBook(isbn(rank), date));
+            }
+        }
+    }
+
+    private void generatePick(int dayIndex, LocalDate date) {
+        int rank = bookRanks.next(random);
+        int readerId = readerId(readerRanks.next(random));
+        long isbn = isbn(rank);
+        if (removed[rank] || inUse[rank] >= amounts[rank] || !openLoans.add(loanKey(isbn, readerId)))
+            return;
+        inUse[rank]++;
+        pending.add(LibraryOperation.pickBook(isbn, readerId, date));
+
+        if (random.nextInt(100) < LOST_PERCENT)
+            return;
+        int pickPeriod = books.get(rank).getPickPeriod();
+        int duration = random.nextInt(100) < LATE_PERCENT
+                ? pickPeriod + 1 + geometric(MEAN_DELAY_DAYS)
+                : 1 + random.nextInt(pickPeriod);
+        scheduledReturns.computeIfAbsent(dayIndex + duration, d -> new ArrayList<>())
+                .add(LibraryOperation.returnBook(isbn, readerId, date.plusDays(duration)));
+    }
+
+    private int geometric(int mean) {
+        return (int) (-Math.log(1 - random.nextDouble()) * mean);
+    }
+
+    private static long isbn(int rank) {
+        return FIRST_ISBN + rank;
+    }
+
+    private static int rank(long isbn) {
+        return (int) (isbn - FIRST_ISBN);
+    }
+
+    private static int readerId(int rank) {
+        return rank + 1;
+    }
+
+    private static long loanKey(long isbn, int readerId) {
+        return (long) readerId << 32 | rank(isbn);
+    }
+}
@@ -0,0 +1,108 @@
+package telran.utils;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Индекс по дням: значение дня лежит в массиве по смещению от первого дня.
+ * Массив разбит на куски по CHUNK_DAYS дней, куски создаются при первой записи.
+ * Поиск дня - O(1), обход периода - последовательный проход по массиву.
+ */
+public class DayIndex<V> implements Serializable {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_DAYS = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_DAYS - 1;
+
+    private final long firstDay;
+    private Object[][] chunks = new Object[0][];
+    //Смещение дня, следующего за последним записанным
+    private int endOffset;
+
+    public DayIndex(LocalDate firstDay) {
+        this.firstDay = firstDay.toEpochDay();
+    }
+
+    public V get(LocalDate day) {
+        long offset = offset(day);
+        return offset < 0 || offset >= endOffset ? null : at((int) offset);
+    }
+
+    public V computeIfAbsent(LocalDate day, Supplier<V> supplier) {
+        long offset = offset(day);
+        if (offset < 0 || offset > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("day out of index range: " + day);
+        int index = (int) offset;
+        V value = at(index);
+        if (value == null) {
+            value = Objects.requireNonNull(supplier.get());
+            chunk(index)[index & CHUNK_MASK] = value;
+            endOffset = Math.max(endOffset, index + 1);
+        }
+        return value;
+    }
+
+    public void remove(LocalDate day) {
+        long offset = offset(day);
+        if (offset >= 0 && offset < endOffset)
+            chunks[(int) offset >>> CHUNK_BITS][(int) offset & CHUNK_MASK] = null;
+    }
+
+    //Значения дней [from, to) в порядке дат
+    public void forEach(LocalDate from, LocalDate to, Consumer<V> action) {
+        int end = clamp(offset(to));
+        for (int index = clamp(offset(from)); index < end; index++) {
+            Object[] chunk = chunks[index >>> CHUNK_BITS];
+            if (chunk == null) {
+                index |= CHUNK_MASK;
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            V value = (V) chunk[index & CHUNK_MASK];
+            if (value != null)
+                action.accept(value);
+        }
+    }
+
+    public void forEach(Consumer<V> action) {
+        forEach(LocalDate.ofEpochDay(firstDay), LocalDate.ofEpochDay(firstDay + endOffset), action);
+    }
+
+    //Ленивый поток по дням [from, to)
+    public Stream<V> stream(LocalDate from, LocalDate to) {
+        return IntStream.range(clamp(offset(from)), clamp(offset(to)))
+                .mapToObj(this::at)
+                .filter(Objects::nonNull);
+    }
+
+    private long offset(LocalDate day) {
+        return day.toEpochDay() - firstDay;
+    }
+
+    private int clamp(long offset) {
+        return (int) Math.max(0, Math.min(offset, endOffset));
+    }
+
+    @SuppressWarnings("unchecked")
+    private V at(int index) {
+        int chunkIndex = index >>> CHUNK_BITS;
+        if (chunkIndex >= chunks.length || chunks[chunkIndex] == null)
+            return null;
+        return (V) chunks[chunkIndex][index & CHUNK_MASK];
+    }
+
+    private Object[] chunk(int index) {
+        int chunkIndex = index >>> CHUNK_BITS;
+        if (chunkIndex >= chunks.length)
+            chunks = Arrays.copyOf(chunks, Math.max(chunkIndex + 1, chunks.length * 2));
+        if (chunks[chunkIndex] == null)
+            chunks[chunkIndex] = new Object[CHUNK_DAYS];
+        return chunks[chunkIndex];
+    }
+}
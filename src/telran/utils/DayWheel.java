@@ -0,0 +1,85 @@
+package telran.utils;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Таймерное колесо с шагом в один день: кольцо из SLOTS ячеек, день попадает
+ * в ячейку day % SLOTS. Сроки дальше одного оборота ждут в упорядоченной карте
+ * и переносятся в кольцо, когда до них остается меньше оборота.
+ * Постановка - O(1) (или O(log n) для дальних сроков), срабатывание - O(1) на значение.
+ * Снятие не поддерживается: отмененные значения пропускает тот, кто их получает.
+ */
+public class DayWheel<T> implements Serializable {
+
+    private static final int SLOTS = 64;
+    private static final int MASK = SLOTS - 1;
+
+    private final List<List<T>> slots = new ArrayList<>(SLOTS);
+    private final TreeMap<Long, List<T>> overflow = new TreeMap<>();
+    //Дни раньше current уже обработаны
+    private long current = Long.MIN_VALUE;
+    private int inSlots;
+
+    public DayWheel() {
+        for (int i = 0; i < SLOTS; i++)
+            slots.add(new ArrayList<>());
+    }
+
+    //Срок в уже обработанном прошлом срабатывает при следующем advance.
+    // До первого advance кольцо не привязано к дню, все сроки ждут в карте
+    public void schedule(LocalDate day, T value) {
+        long epochDay = Math.max(day.toEpochDay(), current);
+        if (current != Long.MIN_VALUE && epochDay - current < SLOTS) {
+            slots.get((int) (epochDay & MASK)).add(value);
+            inSlots++;
+        } else {
+            overflow.computeIfAbsent(epochDay, d -> new ArrayList<>()).add(value);
+        }
+    }
+
+    //Отдает все значения со сроком раньше to в порядке сроков
+    public void advance(LocalDate to, Consumer<T> action) {
+        long toDay = to.toEpochDay();
+        while (current < toDay) {
+            if (inSlots == 0) {
+                //Пустое кольцо перепрыгиваем сразу к ближайшему дальнему сроку
+                if (overflow.isEmpty()) {
+                    current = toDay;
+                    return;
+                }
+                current = Math.min(toDay, overflow.firstKey());
+                cascade();
+                continue;
+            }
+            //День закрывается до вызова action: новые сроки из action в него уже не попадут
+            List<T> slot = slots.get((int) (current & MASK));
+            List<T> fired = slot.isEmpty() ? List.of() : new ArrayList<>(slot);
+            slot.clear();
+            inSlots -= fired.size();
+            current++;
+            cascade();
+            fired.forEach(action);
+        }
+    }
+
+    private void cascade() {
+        while (!overflow.isEmpty() && overflow.firstKey() - current < SLOTS) {
+            Map.Entry<Long, List<T>> entry = overflow.pollFirstEntry();
+            slots.get((int) (entry.getKey() & MASK)).addAll(entry.getValue());
+            inSlots += entry.getValue().size();
+        }
+    }
+
+    public int size() {
+        int res = inSlots;
+        for (List<T> values : overflow.values())
+            res += values.size();
+        return res;
+    }
+}
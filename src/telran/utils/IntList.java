@@ -0,0 +1,89 @@
+package telran.utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+//Растущий список int без упаковки элементов
+public class IntList implements Serializable {
+
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntList(int capacity) {
+        values = new int[Math.max(capacity, 1)];
+    }
+
+    public void add(int value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, size + (size >> 1) + 1);
+        values[size++] = value;
+    }
+
+    public int get(int index) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException(index);
+        return values[index];
+    }
+
+    public void set(int index, int value) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException(index);
+        values[index] = value;
+    }
+
+    //Вместе с set - удаление за O(1) без сохранения порядка
+    public int removeLast() {
+        if (size == 0)
+            throw new IndexOutOfBoundsException(0);
+        return values[--size];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //Удаляет первое вхождение значения со сдвигом хвоста
+    public boolean removeValue(int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                System.arraycopy(values, i + 1, values, i, size - i - 1);
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Удаляет все подходящие значения за один проход
+    public boolean removeIf(IntPredicate filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++)
+            if (!filter.test(values[i]))
+                values[kept++] = values[i];
+        boolean removed = kept < size;
+        size = kept;
+        return removed;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++)
+            action.accept(values[i]);
+    }
+
+    public IntStream stream() {
+        return Arrays.stream(values, 0, size);
+    }
+}
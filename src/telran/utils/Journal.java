@@ -0,0 +1,190 @@
+package telran.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал операций только на добавление с групповой фиксацией.
+ * Записи копируются в буфер, фоновый поток пишет накопленную пачку
+ * и делает один fsync на всю пачку. Формат записи: длина, данные, CRC32 данных.
+ */
+public class Journal implements Closeable {
+
+    private static final int HEADER_SIZE = Integer.BYTES;
+    private static final int TRAILER_SIZE = Integer.BYTES;
+    private static final int MAX_ENTRY_SIZE = 1 << 24;
+
+    private final FileChannel channel;
+    private final Thread flusher;
+
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedSeq;
+    private long durableSeq;
+    private long size;
+    private IOException failure;
+    private boolean closed;
+
+    public Journal(String fileName) throws IOException {
+        channel = FileChannel.open(Path.of(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.READ);
+        size = validLength(channel);
+        channel.truncate(size);
+        channel.position(size);
+        flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    //Добавляет запись и возвращает ее номер для sync
+    public synchronized long append(byte[] entry) throws IOException {
+        checkState();
+        CRC32 crc = new CRC32();
+        crc.update(entry);
+        DataOutputStream output = new DataOutputStream(pending);
+        output.writeInt(entry.length);
+        output.write(entry);
+        output.writeInt((int) crc.getValue());
+        size += HEADER_SIZE + entry.length + TRAILER_SIZE;
+        appendedSeq++;
+        notifyAll();
+        return appendedSeq;
+    }
+
+    //Ждет, пока запись с номером seq не будет сброшена на диск
+    public synchronized void sync(long seq) throws IOException {
+        while (durableSeq < seq) {
+            checkState();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for journal sync");
+            }
+        }
+    }
+
+    //Размер журнала в байтах, включая еще не сброшенные записи
+    public synchronized long size() {
+        return size;
+    }
+
+    //Очищает журнал, например после записи нового снимка
+    public synchronized void truncate() throws IOException {
+        sync(appendedSeq);
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+        size = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed)
+                return;
+            if (failure == null)
+                sync(appendedSeq);
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private void checkState() throws IOException {
+        if (failure != null)
+            throw new IOException("journal write failed", failure);
+        if (closed)
+            throw new IOException("journal is closed");
+    }
+
+    private void flushLoop() {
+        while (true) {
+            byte[] batch;
+            long batchSeq;
+            synchronized (this) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0)
+                    return;
+                batch = pending.toByteArray();
+                batchSeq = appendedSeq;
+                pending = new ByteArrayOutputStream(batch.length);
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                channel.force(false);
+                synchronized (this) {
+                    durableSeq = batchSeq;
+                    notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    //Проигрывает все целые записи журнала; оборванный хвост игнорируется
+    public static void replay(String fileName, EntryHandler action) throws IOException {
+        File file = new File(fileName);
+        if (!file.exists())
+            return;
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] entry;
+            while ((entry = readEntry(input)) != null)
+                action.accept(new DataInputStream(new ByteArrayInputStream(entry)));
+        }
+    }
+
+    private static byte[] readEntry(DataInputStream input) throws IOException {
+        try {
+            int length = input.readInt();
+            if (length < 0 || length > MAX_ENTRY_SIZE)
+                return null;
+            byte[] entry = new byte[length];
+            input.readFully(entry);
+            int checksum = input.readInt();
+            CRC32 crc = new CRC32();
+            crc.update(entry);
+            return (int) crc.getValue() == checksum ? entry : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    public interface EntryHandler {
+        void accept(DataInput entry) throws IOException;
+    }
+
+    //Длина журнала до первой испорченной или неполной записи
+    private static long validLength(FileChannel channel) throws IOException {
+        long length = 0;
+        DataInputStream input = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(0))));
+        byte[] entry;
+        while ((entry = readEntry(input)) != null)
+            length += HEADER_SIZE + entry.length + TRAILER_SIZE;
+        return length;
+    }
+}
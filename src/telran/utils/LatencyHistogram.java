@@ -0,0 +1,95 @@
+package telran.utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Гистограмма задержек в духе HdrHistogram: логарифмические интервалы,
+ * каждый поделен на SUB_BUCKETS / 2 равных частей, относительная ошибка
+ * значения не больше 1/64. Память постоянна, запись - O(1) без выделений.
+ * Не потокобезопасна: каждый поток пишет в свою, потом они складываются через add.
+ */
+public class LatencyHistogram implements Serializable {
+
+    private static final int SUB_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS + 1) * HALF + SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++)
+            counts[i] += other.counts[i];
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    //Значение, не меньше которого percentile процентов записей (0..100)
+    public long getPercentile(double percentile) {
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(highestValue(i), max);
+        }
+        return max;
+    }
+
+    public LatencyHistogram copy() {
+        LatencyHistogram res = new LatencyHistogram();
+        res.add(this);
+        return res;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    //Наибольшее значение, попадающее в интервал index
+    private static long highestValue(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = index / HALF - 1;
+        long sub = index - (long) shift * HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+}
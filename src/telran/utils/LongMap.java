@@ -0,0 +1,239 @@
+package telran.utils;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.LongFunction;
+
+/**
+ * Хеш-таблица long -> V с открытой адресацией (линейное пробирование).
+ * Ключи хранятся в long[] без упаковки, на запись не создается узел.
+ * null в качестве значения не допускается - им помечаются свободные ячейки.
+ */
+public class LongMap<V> implements Serializable {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int threshold;
+
+    public LongMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    //expectedSize - сколько записей поместится без перестройки таблицы
+    public LongMap(int expectedSize) {
+        allocate(tableSize(expectedSize));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int slot = find(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    public V getOrDefault(long key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null)
+            throw new NullPointerException("null values are not supported");
+        int slot = slot(key);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                V old = (V) values[slot];
+                values[slot] = value;
+                return old;
+            }
+            slot = next(slot);
+        }
+        insert(slot, key, value);
+        return null;
+    }
+
+    public V putIfAbsent(long key, V value) {
+        V old = get(key);
+        return old != null ? old : put(key, value);
+    }
+
+    public V computeIfAbsent(long key, LongFunction<V> mapping) {
+        V value = get(key);
+        if (value == null) {
+            value = mapping.apply(key);
+            if (value != null)
+                put(key, value);
+        }
+        return value;
+    }
+
+    //Удаление со сдвигом следующих записей цепочки, без "надгробий"
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = find(key);
+        if (slot < 0)
+            return null;
+        V old = (V) values[slot];
+        int gap = slot;
+        int current = next(slot);
+        while (values[current] != null) {
+            int home = slot(keys[current]);
+            if (((current - home) & mask()) >= ((current - gap) & mask())) {
+                keys[gap] = keys[current];
+                values[gap] = values[current];
+                gap = current;
+            }
+            current = next(current);
+        }
+        values[gap] = null;
+        size--;
+        return old;
+    }
+
+    //Заранее расширяет таблицу, чтобы вставка expectedSize записей шла без перестроек
+    public void ensureCapacity(int expectedSize) {
+        int capacity = tableSize(expectedSize);
+        if (capacity > values.length)
+            rehash(capacity);
+    }
+
+    //Копия таблицы двумя копированиями массивов, сами значения общие
+    public LongMap<V> copy() {
+        LongMap<V> res = new LongMap<>();
+        res.keys = keys.clone();
+        res.values = values.clone();
+        res.size = size;
+        res.threshold = threshold;
+        return res;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //Представление значений (без копирования), порядок не определен
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValuesIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    //Обход пар ключ-значение, пока visitor возвращает true; false - обход прерван
+    @SuppressWarnings("unchecked")
+    public boolean forEachEntry(EntryVisitor<V> visitor) {
+        for (int slot = 0; slot < values.length; slot++)
+            if (values[slot] != null && !visitor.visit(keys[slot], (V) values[slot]))
+                return false;
+        return true;
+    }
+
+    public interface EntryVisitor<V> {
+        boolean visit(long key, V value);
+    }
+
+    private int find(long key) {
+        int slot = slot(key);
+        while (values[slot] != null) {
+            if (keys[slot] == key)
+                return slot;
+            slot = next(slot);
+        }
+        return -1;
+    }
+
+    private void insert(int slot, long key, V value) {
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > threshold)
+            rehash(values.length << 1);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null)
+                continue;
+            int slot = slot(oldKeys[i]);
+            while (values[slot] != null)
+                slot = next(slot);
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        threshold = capacity / 3 * 2;
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask();
+    }
+
+    private int next(int slot) {
+        return (slot + 1) & mask();
+    }
+
+    private int mask() {
+        return values.length - 1;
+    }
+
+    //Степень двойки с заполнением не больше 2/3
+    private static int tableSize(int expectedSize) {
+        long needed = Math.max(DEFAULT_CAPACITY, (long) expectedSize * 3 / 2 + 1);
+        if (needed > 1 << 30)
+            throw new IllegalArgumentException("too many entries: " + expectedSize);
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    private class ValuesIterator implements Iterator<V> {
+        private int slot = advance(0);
+
+        private int advance(int from) {
+            while (from < values.length && values[from] == null)
+                from++;
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return slot < values.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            V value = (V) values[slot];
+            slot = advance(slot + 1);
+            return value;
+        }
+    }
+}
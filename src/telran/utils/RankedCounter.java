@@ -0,0 +1,66 @@
+package telran.utils;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Счетчики по ключам, сгруппированные по значению счетчика.
+ * Изменение счетчика - O(log количества различных значений),
+ * лидеры и top-k читаются без сортировки всех ключей.
+ */
+public class RankedCounter<K> implements Serializable {
+
+    private final Map<K, Long> counts = new HashMap<>();
+    private final NavigableMap<Long, Set<K>> ranks = new TreeMap<>();
+
+    //Ключи с неположительным счетчиком не хранятся
+    public void add(K key, long delta) {
+        if (delta == 0)
+            return;
+        long oldCount = getCount(key);
+        if (oldCount > 0) {
+            Set<K> keys = ranks.get(oldCount);
+            keys.remove(key);
+            if (keys.isEmpty())
+                ranks.remove(oldCount);
+        }
+        long newCount = oldCount + delta;
+        if (newCount > 0) {
+            counts.put(key, newCount);
+            ranks.computeIfAbsent(newCount, c -> new HashSet<>()).add(key);
+        } else {
+            counts.remove(key);
+        }
+    }
+
+    public long getCount(K key) {
+        return counts.getOrDefault(key, 0L);
+    }
+
+    //Копия всех счетчиков - например, чтобы сложить счетчики нескольких секций
+    public Map<K, Long> getCounts() {
+        return new HashMap<>(counts);
+    }
+
+    public boolean isEmpty() {
+        return counts.isEmpty();
+    }
+
+    //Все ключи с максимальным счетчиком
+    public List<K> getLeaders() {
+        return ranks.isEmpty() ? new ArrayList<>() : new ArrayList<>(ranks.lastEntry().getValue());
+    }
+
+    //Не более k ключей с наибольшими счетчиками, по убыванию счетчика
+    public List<K> getTop(int k) {
+        List<K> res = new ArrayList<>();
+        for (Set<K> keys : ranks.descendingMap().values()) {
+            for (K key : keys) {
+                if (res.size() >= k)
+                    return res;
+                res.add(key);
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,169 @@
+package telran.utils;
+
+import java.io.Serializable;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Инвертированный индекс слов: слово -> значения, в тексте которых оно встречается.
+ * Слова нормализуются (нижний регистр, без диакритики). Списки значений лежат
+ * в хеш-таблице по слову, а упорядоченный словарь меняется только при появлении
+ * и исчезновении слова - по нему поиск по префиксу обходит только подходящие слова.
+ * Значения слова лежат в LongMap по ключу значения (для книг - isbn),
+ * тексты значения дает функция texts.
+ */
+public class TokenIndex<V> implements Serializable {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final Map<String, LongMap<V>> postings = new HashMap<>();
+    private final NavigableSet<String> dictionary = new TreeSet<>();
+    private final Texts<V> texts;
+
+    //Тексты значения, по словам которых оно ищется (для книги - название и автор)
+    public interface Texts<V> extends Serializable {
+        String[] of(V value);
+    }
+
+    public TokenIndex(Texts<V> texts) {
+        this.texts = texts;
+    }
+
+    public void add(long key, V value) {
+        for (String text : texts.of(value)) {
+            for (String token : tokens(text)) {
+                postings.computeIfAbsent(token, t -> {
+                    dictionary.add(t);
+                    return new LongMap<>();
+                }).put(key, value);
+            }
+        }
+    }
+
+    //Тексты значения не должны меняться с момента add
+    public void remove(long key, V value) {
+        for (String text : texts.of(value)) {
+            for (String token : tokens(text)) {
+                LongMap<V> values = postings.get(token);
+                if (values != null && values.remove(key) != null && values.isEmpty()) {
+                    postings.remove(token);
+                    dictionary.remove(token);
+                }
+            }
+        }
+    }
+
+    //Значения, в тексте которых есть все слова запроса; порядок не определен
+    public List<V> find(String query) {
+        List<LongMap<V>> matches = new ArrayList<>();
+        for (String token : tokens(query)) {
+            LongMap<V> values = postings.get(token);
+            if (values == null)
+                return new ArrayList<>();
+            matches.add(values);
+        }
+        if (matches.isEmpty())
+            return new ArrayList<>();
+        //Обходим самый короткий список, остальные только проверяем
+        matches.sort(Comparator.comparingInt(LongMap::size));
+        LongMap<V> shortest = matches.remove(0);
+        List<V> res = new ArrayList<>();
+        shortest.forEachEntry((key, value) -> {
+            if (containsAll(matches, key))
+                res.add(value);
+            return true;
+        });
+        return res;
+    }
+
+    /**
+     * Подсказки при наборе: последнее слово запроса - префикс, остальные - целые слова.
+     * Не больше limit значений, обход останавливается, как только набрано limit.
+     * Если целые слова есть, проверяются только значения самого короткого из их списков,
+     * иначе слова с префиксом обходятся по алфавиту.
+     */
+    public List<V> findByPrefix(String query, int limit) {
+        List<String> tokens = tokens(query);
+        if (tokens.isEmpty() || limit <= 0)
+            return new ArrayList<>();
+        String prefix = tokens.remove(tokens.size() - 1);
+        List<LongMap<V>> words = new ArrayList<>();
+        for (String token : tokens) {
+            LongMap<V> values = postings.get(token);
+            if (values == null)
+                return new ArrayList<>();
+            words.add(values);
+        }
+
+        List<V> res = new ArrayList<>();
+        if (!words.isEmpty()) {
+            words.sort(Comparator.comparingInt(LongMap::size));
+            LongMap<V> shortest = words.remove(0);
+            shortest.forEachEntry((key, value) -> {
+                if (containsAll(words, key) && hasPrefix(value, prefix))
+                    res.add(value);
+                return res.size() < limit;
+            });
+            return res;
+        }
+
+        LongMap<V> found = new LongMap<>();
+        for (String token : dictionary.tailSet(prefix, true)) {
+            if (!token.startsWith(prefix) || !postings.get(token).forEachEntry((key, value) -> {
+                if (found.putIfAbsent(key, value) == null)
+                    res.add(value);
+                return res.size() < limit;
+            }))
+                break;
+        }
+        return res;
+    }
+
+    private boolean hasPrefix(V value, String prefix) {
+        for (String text : texts.of(value))
+            for (String token : tokens(text))
+                if (token.startsWith(prefix))
+                    return true;
+        return false;
+    }
+
+    public int tokensCount() {
+        return postings.size();
+    }
+
+    private static <V> boolean containsAll(List<LongMap<V>> maps, long key) {
+        for (LongMap<V> map : maps)
+            if (!map.containsKey(key))
+                return false;
+        return true;
+    }
+
+    //Слова - непрерывные последовательности букв и цифр
+    public static List<String> tokens(String text) {
+        List<String> res = new ArrayList<>();
+        if (text == null)
+            return res;
+        String normalized = normalize(text);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                res.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return res;
+    }
+
+    //Для ASCII - только нижний регистр, остальное раскладывается и теряет диакритику
+    private static String normalize(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); i++)
+            if (lower.charAt(i) >= 0x80)
+                return MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFKD)).replaceAll("");
+        return lower;
+    }
+}
@@ -0,0 +1,36 @@
+package telran.utils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Выборка рангов 0..n-1 по закону Ципфа: вероятность ранга k пропорциональна
+ * 1 / (k + 1)^exponent. Ранг 0 - самый популярный.
+ * Таблица накопленных вероятностей считается один раз, выборка - бинарный поиск.
+ */
+public class ZipfSampler {
+
+    private final double[] cumulative;
+
+    public ZipfSampler(int n, double exponent) {
+        if (n <= 0)
+            throw new IllegalArgumentException("n must be positive: " + n);
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++)
+            cumulative[k] /= sum;
+    }
+
+    public int next(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+
+    public int size() {
+        return cumulative.length;
+    }
+}